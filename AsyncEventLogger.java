@@ -0,0 +1,143 @@
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Writes RentalEvent messages to a stream from its own thread. Publishers only claim a slot
+// in a fixed ring of events with a CAS and store the event there; the logger thread takes
+// them in order, builds the lines and prints each batch with a single write. When the ring
+// is full, events are dropped and counted rather than making rentals wait on the console.
+public class AsyncEventLogger implements Consumer<RentalEvent>, Closeable {
+    // Everything RentalSystem used to print; registrations and status changes weren't
+    public static final Set<RentalEvent.Type> DEFAULT_TYPES = EnumSet.complementOf(EnumSet.of(
+            RentalEvent.Type.VEHICLE_ADDED, RentalEvent.Type.CUSTOMER_ADDED, RentalEvent.Type.STATUS_CHANGED));
+
+    private static final int BATCH_CHARS = 8192;
+
+    private final PrintStream out;
+    private final AtomicReferenceArray<RentalEvent> ring;
+    private final int mask;
+    // Next sequence to claim; the slot is ring[sequence & mask]
+    private final AtomicLong tail = new AtomicLong();
+    // Next sequence to log and the first one not yet written out, both only advanced by
+    // the logger thread
+    private volatile long head;
+    private volatile long written;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    // capacity is rounded up to a power of two
+    public AsyncEventLogger(PrintStream out, int capacity) {
+        this.out = out;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.thread = new Thread(this::run, "rental-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Once closed, events are written straight away on the caller's thread
+    @Override
+    public void accept(RentalEvent event) {
+        if (closed) {
+            String message = event.getMessage();
+            if (message != null) {
+                out.println(message);
+            }
+            return;
+        }
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        ring.set((int) sequence & mask, event);
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Events dropped because the ring was full
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Waits until everything published so far has been written
+    public void flush() {
+        long target = tail.get();
+        while (written < target && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    // Writes what is still queued, then stops the thread
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        StringBuilder lines = new StringBuilder(BATCH_CHARS * 2);
+        long reportedDropped = 0;
+        while (true) {
+            long sequence = head;
+            int slot = (int) sequence & mask;
+            RentalEvent event = ring.get(slot);
+            if (event != null) {
+                ring.lazySet(slot, null);
+                head = sequence + 1;
+                String message = event.getMessage();
+                if (message != null) {
+                    lines.append(message).append(System.lineSeparator());
+                }
+                if (lines.length() >= BATCH_CHARS) {
+                    write(lines, sequence + 1);
+                }
+                continue;
+            }
+            // Caught up: write the batch, then sleep until a publisher wakes us
+            long droppedNow = dropped.sum();
+            if (droppedNow > reportedDropped) {
+                lines.append(droppedNow - reportedDropped).append(" log events dropped; the log ring was full.")
+                        .append(System.lineSeparator());
+                reportedDropped = droppedNow;
+            }
+            write(lines, sequence);
+            if (closed && tail.get() == sequence) {
+                return;
+            }
+            waiting = true;
+            if (ring.get(slot) == null && !closed) {
+                LockSupport.parkNanos(this, 100_000_000L);
+            }
+            waiting = false;
+        }
+    }
+
+    private void write(StringBuilder lines, long through) {
+        if (lines.length() > 0) {
+            out.print(lines);
+            out.flush();
+            lines.setLength(0);
+        }
+        written = through;
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Predicate;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Vehicles partitioned by status and by exact class, as bit sets over slot numbers handed
+// out in registration order. Queries walk only the set bits of the partition asked for.
+//
+// Status notifications for one vehicle can arrive out of order when it changes status on
+// several threads at once, so an update re-reads the vehicle's current status rather
+// than trusting the from/to it was given; the last notification always wins correctly.
+public class AvailabilityIndex implements Vehicle.StatusListener {
+    private static final Vehicle.VehicleStatus[] STATUSES = Vehicle.VehicleStatus.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Vehicle> vehiclesBySlot = new ArrayList<>();
+    private final Map<Vehicle, Integer> slots = new IdentityHashMap<>();
+    private final BitSet[] byStatus = new BitSet[STATUSES.length];
+    private final Map<Class<?>, BitSet> byType = new IdentityHashMap<>();
+
+    public AvailabilityIndex() {
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new BitSet();
+        }
+    }
+
+    public void add(Vehicle vehicle) {
+        lock.writeLock().lock();
+        try {
+            if (slots.containsKey(vehicle)) {
+                return;
+            }
+            int slot = vehiclesBySlot.size();
+            vehiclesBySlot.add(vehicle);
+            slots.put(vehicle, slot);
+            byType.computeIfAbsent(vehicle.getClass(), k -> new BitSet()).set(slot);
+            byStatus[vehicle.getStatus().ordinal()].set(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Vehicle> added) {
+        lock.writeLock().lock();
+        try {
+            for (Vehicle vehicle : added) {
+                add(vehicle);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(vehicle);
+            if (slot == null) {
+                return;
+            }
+            Vehicle.VehicleStatus current = vehicle.getStatus();
+            for (Vehicle.VehicleStatus status : STATUSES) {
+                byStatus[status.ordinal()].set(slot, status == current);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to limit vehicles of the given class and status, skipping the first offset matches,
+    // in registration order. A null type or status matches any.
+    public List<Vehicle> find(Class<? extends Vehicle> type, Vehicle.VehicleStatus status, int offset, int limit) {
+        List<Vehicle> page = new ArrayList<>();
+        if (limit <= 0) {
+            return page;
+        }
+        lock.readLock().lock();
+        try {
+            BitSet candidates = status != null ? byStatus[status.ordinal()] : type != null ? byType.get(type) : null;
+            BitSet filter = status != null && type != null ? byType.get(type) : null;
+            if (type != null && byType.get(type) == null) {
+                return page;
+            }
+            int skipped = 0;
+            int end = vehiclesBySlot.size();
+            for (int slot = next(candidates, 0, end); slot >= 0; slot = next(candidates, slot + 1, end)) {
+                if (filter != null && !filter.get(slot)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                page.add(vehiclesBySlot.get(slot));
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit vehicles of the given class in any of the statuses that pass the filter, in
+    // registration order. The filter runs under the index's read lock, so it must not change
+    // any vehicle's status.
+    public List<Vehicle> find(Class<? extends Vehicle> type, EnumSet<Vehicle.VehicleStatus> statuses,
+                              Predicate<Vehicle> filter, int limit) {
+        List<Vehicle> found = new ArrayList<>();
+        if (limit <= 0) {
+            return found;
+        }
+        lock.readLock().lock();
+        try {
+            BitSet typeBits = type == null ? null : byType.get(type);
+            if (type != null && typeBits == null) {
+                return found;
+            }
+            BitSet candidates = new BitSet();
+            for (Vehicle.VehicleStatus status : statuses) {
+                candidates.or(byStatus[status.ordinal()]);
+            }
+            if (typeBits != null) {
+                candidates.and(typeBits);
+            }
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                Vehicle vehicle = vehiclesBySlot.get(slot);
+                if (filter.test(vehicle)) {
+                    found.add(vehicle);
+                    if (found.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Next set bit at or after from, or every slot in turn when there is no set to follow
+    private static int next(BitSet bits, int from, int end) {
+        if (bits == null) {
+            return from < end ? from : -1;
+        }
+        return bits.nextSetBit(from);
+    }
+
+    public int count(Class<? extends Vehicle> type, Vehicle.VehicleStatus status) {
+        lock.readLock().lock();
+        try {
+            BitSet typeBits = type == null ? null : byType.get(type);
+            if (type != null && typeBits == null) {
+                return 0;
+            }
+            if (status == null) {
+                return typeBits == null ? vehiclesBySlot.size() : typeBits.cardinality();
+            }
+            BitSet statusBits = byStatus[status.ordinal()];
+            return typeBits == null ? statusBits.cardinality() : countBoth(statusBits, typeBits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int countBoth(BitSet a, BitSet b) {
+        int count = 0;
+        for (int slot = a.nextSetBit(0); slot >= 0; slot = a.nextSetBit(slot + 1)) {
+            if (b.get(slot)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public List<Class<?>> getTypes() {
+        lock.readLock().lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(byType.keySet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -11,19 +11,17 @@ public class Car extends Vehicle implements Rentable {
     }
 
     @Override
-    public String getInfo() {
-        return super.getInfo() + " | Seats: " + numSeats;
+    protected void appendDetails(StringBuilder info) {
+        info.append(" | Seats: ").append(numSeats);
     }
 
     @Override
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Car " + getLicensePlate() + " has been rented.");
     }
 
     @Override
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Car " + getLicensePlate() + " has been returned.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps each field in its own primitive column, so a record costs about 21 bytes
+// instead of a RentalRecord, a LocalDate and their headers and pointers. Vehicles are
+// stored as slot numbers into a table of distinct vehicles, amounts as whole cents and
+// the record type as an index into a table of distinct types. RentalRecords are only
+// built when get() is called.
+//
+// Columns grow a chunk at a time, so appends never copy the existing rows.
+public class ColumnarHistoryStore implements HistoryStore {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private int[][] vehicleSlots = new int[0][];
+    private int[][] customerIds = new int[0][];
+    private int[][] epochDays = new int[0][];
+    private long[][] amountCents = new long[0][];
+    private byte[][] types = new byte[0][];
+    private int size;
+
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final Map<Vehicle, Integer> vehicleSlotByVehicle = new IdentityHashMap<>();
+    private final IntObjectMap<Customer> customersById = new IntObjectMap<>();
+    private final List<String> typeNames = new ArrayList<>(List.of("RENT", "RETURN"));
+
+    @Override
+    public int append(RentalRecord record) {
+        int row = size;
+        int chunk = row >>> CHUNK_BITS;
+        if (chunk == types.length) {
+            addChunk();
+        }
+        int i = row & CHUNK_MASK;
+        vehicleSlots[chunk][i] = vehicleSlot(record.getVehicle());
+        Customer customer = record.getCustomer();
+        customersById.putIfAbsent(customer.getCustomerId(), customer);
+        customerIds[chunk][i] = customer.getCustomerId();
+        epochDays[chunk][i] = Math.toIntExact(record.getRecordDate().toEpochDay());
+        amountCents[chunk][i] = Math.round(record.getTotalAmount() * 100);
+        types[chunk][i] = typeCode(record.getRecordType());
+        size++;
+        return row;
+    }
+
+    private void addChunk() {
+        int chunks = types.length + 1;
+        vehicleSlots = Arrays.copyOf(vehicleSlots, chunks);
+        customerIds = Arrays.copyOf(customerIds, chunks);
+        epochDays = Arrays.copyOf(epochDays, chunks);
+        amountCents = Arrays.copyOf(amountCents, chunks);
+        types = Arrays.copyOf(types, chunks);
+        vehicleSlots[chunks - 1] = new int[CHUNK_SIZE];
+        customerIds[chunks - 1] = new int[CHUNK_SIZE];
+        epochDays[chunks - 1] = new int[CHUNK_SIZE];
+        amountCents[chunks - 1] = new long[CHUNK_SIZE];
+        types[chunks - 1] = new byte[CHUNK_SIZE];
+    }
+
+    private int vehicleSlot(Vehicle vehicle) {
+        Integer slot = vehicleSlotByVehicle.get(vehicle);
+        if (slot == null) {
+            slot = vehicles.size();
+            vehicles.add(vehicle);
+            vehicleSlotByVehicle.put(vehicle, slot);
+        }
+        return slot;
+    }
+
+    private byte typeCode(String type) {
+        int code = typeNames.indexOf(type);
+        if (code < 0) {
+            if (typeNames.size() == 256) {
+                throw new IllegalStateException("Too many distinct record types");
+            }
+            code = typeNames.size();
+            typeNames.add(type);
+        }
+        return (byte) code;
+    }
+
+    @Override
+    public RentalRecord get(int row) {
+        return new RentalRecord(vehicle(row), customer(row), LocalDate.ofEpochDay(epochDay(row)),
+                amount(row), recordType(row));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        vehicleSlots = new int[0][];
+        customerIds = new int[0][];
+        epochDays = new int[0][];
+        amountCents = new long[0][];
+        types = new byte[0][];
+        size = 0;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public Vehicle vehicle(int row) {
+        checkRow(row);
+        return vehicles.get(vehicleSlots[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+    }
+
+    @Override
+    public Customer customer(int row) {
+        checkRow(row);
+        return customersById.get(customerIds[row >>> CHUNK_BITS][row & CHUNK_MASK]);
+    }
+
+    @Override
+    public long epochDay(int row) {
+        checkRow(row);
+        return epochDays[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    @Override
+    public double amount(int row) {
+        checkRow(row);
+        return amountCents[row >>> CHUNK_BITS][row & CHUNK_MASK] / 100.0;
+    }
+
+    @Override
+    public String recordType(int row) {
+        checkRow(row);
+        return typeNames.get(types[row >>> CHUNK_BITS][row & CHUNK_MASK] & 0xFF);
+    }
+}
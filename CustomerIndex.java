@@ -0,0 +1,457 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Search over customer names as counter staff type them. Names are normalized (lowercased,
+// accents and apostrophes dropped, anything else that isn't a letter or digit splitting
+// words). Customers get slots in registration order, so every posting list below is sorted:
+//   - every prefix of every word (up to MAX_PREFIX letters) maps to the customers with such
+//     a word, and separately to those whose first word has it, for prefix search;
+//   - every distinct word maps to the customers using it, and every form of every word
+//     with one letter deleted maps back to the word, so the words within one edit of a
+//     query word are found without scanning the dictionary, for fuzzy search.
+// Keys are hashed into ints. A collision only adds candidates, since every candidate is
+// checked against the actual name.
+//
+// Safe for concurrent use; searches share a read lock.
+public class CustomerIndex {
+    private static final int MAX_PREFIX = 10;
+    // Words shorter than this have to match exactly in fuzzy search
+    private static final int FUZZY_MIN_LENGTH = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Customer[] customers = new Customer[64];
+    private String[] names = new String[64];
+    private int size;
+    private final IntObjectMap<IntList> slotsByPrefix = new IntObjectMap<>();
+    private final IntObjectMap<IntList> slotsByFirstPrefix = new IntObjectMap<>();
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    private final List<IntList> slotsByWord = new ArrayList<>();
+    private final IntObjectMap<IntList> wordsByDeletion = new IntObjectMap<>();
+
+    public void add(Customer customer) {
+        String name = normalize(customer.getCustomerName());
+        lock.writeLock().lock();
+        try {
+            if (size == customers.length) {
+                customers = Arrays.copyOf(customers, size << 1);
+                names = Arrays.copyOf(names, size << 1);
+            }
+            int slot = size++;
+            customers[slot] = customer;
+            names[slot] = name;
+            for (int start = 0; start < name.length(); start = wordEnd(name, start) + 1) {
+                int end = wordEnd(name, start);
+                for (int length = 1; length <= Math.min(MAX_PREFIX, end - start); length++) {
+                    int key = prefixKey(name, start, length);
+                    post(slotsByPrefix, key, slot);
+                    if (start == 0) {
+                        post(slotsByFirstPrefix, key, slot);
+                    }
+                }
+                post(slotsByWord.get(wordId(name.substring(start, end))), slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Customers with a name word starting with each word of the query, e.g. "jo sm" finds
+    // "John Smith". Names that start with the whole query come first, then the rest, each in
+    // registration order. Each group is an intersection of the query words' posting lists,
+    // walked only until limit customers are found.
+    public List<Customer> search(String query, int limit) {
+        String q = normalize(query);
+        List<Customer> found = new ArrayList<>();
+        if (q.isEmpty() || limit <= 0) {
+            return found;
+        }
+        lock.readLock().lock();
+        try {
+            List<IntList> lists = new ArrayList<>();
+            for (int start = 0; start < q.length(); start = wordEnd(q, start) + 1) {
+                IntList slots = slotsByPrefix.get(prefixKey(q, start, Math.min(MAX_PREFIX, wordEnd(q, start) - start)));
+                if (slots == null) {
+                    return found;
+                }
+                lists.add(slots);
+            }
+            IntList firstWord = slotsByFirstPrefix.get(prefixKey(q, 0, Math.min(MAX_PREFIX, wordEnd(q, 0))));
+            if (firstWord != null) {
+                List<IntList> startsWith = new ArrayList<>(lists);
+                startsWith.set(0, firstWord);
+                Intersection names = new Intersection(startsWith);
+                for (int slot = names.next(); slot >= 0 && found.size() < limit; slot = names.next()) {
+                    if (this.names[slot].startsWith(q)) {
+                        found.add(customers[slot]);
+                    }
+                }
+            }
+            Intersection rest = new Intersection(lists);
+            for (int slot = rest.next(); slot >= 0 && found.size() < limit; slot = rest.next()) {
+                String name = names[slot];
+                if (!name.startsWith(q) && everyWordPrefixes(q, name)) {
+                    found.add(customers[slot]);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Customers with a name word within one edit (a letter added, dropped, changed or two
+    // neighbours swapped) of each query word, e.g. "jhon smtih" finds "John Smith". Words
+    // under four letters must match exactly. Ranked by total edits, then registration order.
+    //
+    // Candidates come from the query word with the fewest customers near it: the customers
+    // of its exact matches first, then of its one-edit matches, each stream merged in slot
+    // order. The walk stops once nothing left in the streams could make the top limit.
+    public List<Customer> searchFuzzy(String query, int limit) {
+        String q = normalize(query);
+        List<Customer> found = new ArrayList<>();
+        if (q.isEmpty() || limit <= 0) {
+            return found;
+        }
+        lock.readLock().lock();
+        try {
+            List<List<IntList>> driver = null;
+            int driverSize = Integer.MAX_VALUE;
+            for (int start = 0; start < q.length(); start = wordEnd(q, start) + 1) {
+                List<List<IntList>> close = closeWords(q, start, wordEnd(q, start));
+                int closeSize = 0;
+                for (List<IntList> byDistance : close) {
+                    for (IntList slots : byDistance) {
+                        closeSize += slots.size();
+                    }
+                }
+                if (closeSize < driverSize) {
+                    driver = close;
+                    driverSize = closeSize;
+                }
+            }
+            // Worst of the best so far on top, as {edits, slot}
+            PriorityQueue<int[]> best = new PriorityQueue<>(
+                    (a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(b[1], a[1]));
+            Set<Integer> seen = new HashSet<>();
+            for (int distance = 0; distance < driver.size(); distance++) {
+                Union stream = new Union(driver.get(distance));
+                for (int slot = stream.next(); slot >= 0; slot = stream.next()) {
+                    // Everything still to come has at least this many edits and a later slot
+                    int[] worst = best.peek();
+                    if (best.size() == limit && (worst[0] < distance || worst[0] == distance && worst[1] < slot)) {
+                        break;
+                    }
+                    int edits = editsToMatch(q, names[slot]);
+                    if (edits < 0 || !seen.add(slot)) {
+                        continue;
+                    }
+                    best.add(new int[] {edits, slot});
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            int[][] ranked = best.toArray(new int[0][]);
+            Arrays.sort(ranked, (a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+            for (int[] hit : ranked) {
+                found.add(customers[hit[1]]);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The customer lists of the dictionary words within reach of q[start, end), split into
+    // exact matches and words one edit away
+    private List<List<IntList>> closeWords(String q, int start, int end) {
+        List<IntList> exact = new ArrayList<>();
+        List<IntList> oneEdit = new ArrayList<>();
+        int[] keys = end - start < FUZZY_MIN_LENGTH
+                ? new int[] {deletionKey(q, start, end, -1)} : deletionKeys(q, start, end);
+        Set<Integer> seen = new HashSet<>();
+        for (int key : keys) {
+            IntList ids = wordsByDeletion.get(key);
+            for (int i = 0; ids != null && i < ids.size(); i++) {
+                int id = ids.get(i);
+                if (!seen.add(id)) {
+                    continue;
+                }
+                int distance = distance(q, start, end, words.get(id), 0, words.get(id).length());
+                if (distance == 0) {
+                    exact.add(slotsByWord.get(id));
+                } else if (distance <= allowedEdits(end - start)) {
+                    oneEdit.add(slotsByWord.get(id));
+                }
+            }
+        }
+        return List.of(exact, oneEdit);
+    }
+
+    // Total edits for every query word to reach some word of the name, or -1 if one can't
+    private static int editsToMatch(String q, String name) {
+        int total = 0;
+        for (int start = 0; start < q.length(); start = wordEnd(q, start) + 1) {
+            int end = wordEnd(q, start);
+            int best = Integer.MAX_VALUE;
+            for (int n = 0; n < name.length() && best > 0; n = wordEnd(name, n) + 1) {
+                best = Math.min(best, distance(q, start, end, name, n, wordEnd(name, n)));
+            }
+            if (best > allowedEdits(end - start)) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static boolean everyWordPrefixes(String q, String name) {
+        for (int start = 0; start < q.length(); start = wordEnd(q, start) + 1) {
+            int end = wordEnd(q, start);
+            boolean matched = false;
+            for (int n = 0; n < name.length() && !matched; n = wordEnd(name, n) + 1) {
+                matched = wordEnd(name, n) - n >= end - start && name.regionMatches(n, q, start, end - start);
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int allowedEdits(int length) {
+        return length < FUZZY_MIN_LENGTH ? 0 : 1;
+    }
+
+    private int wordId(String word) {
+        Integer id = wordIds.get(word);
+        if (id != null) {
+            return id;
+        }
+        id = words.size();
+        wordIds.put(word, id);
+        words.add(word);
+        slotsByWord.add(new IntList(1));
+        int[] keys = word.length() < FUZZY_MIN_LENGTH
+                ? new int[] {deletionKey(word, 0, word.length(), -1)} : deletionKeys(word, 0, word.length());
+        for (int key : keys) {
+            post(wordsByDeletion, key, id);
+        }
+        return id;
+    }
+
+    // The word itself and every form of it with one letter left out
+    private static int[] deletionKeys(String s, int start, int end) {
+        int[] keys = new int[end - start + 1];
+        keys[0] = deletionKey(s, start, end, -1);
+        for (int skip = start; skip < end; skip++) {
+            keys[skip - start + 1] = deletionKey(s, start, end, skip);
+        }
+        return keys;
+    }
+
+    private static int deletionKey(String s, int start, int end, int skip) {
+        int h = end - start - (skip >= 0 ? 1 : 0);
+        for (int i = start; i < end; i++) {
+            if (i != skip) {
+                h = 31 * h + s.charAt(i);
+            }
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static int prefixKey(String s, int start, int length) {
+        int h = length;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Appends the value unless it was the last one added, since values arrive in order
+    private static void post(IntObjectMap<IntList> index, int key, int value) {
+        IntList list = index.get(key);
+        if (list == null) {
+            list = new IntList(1);
+            index.put(key, list);
+        }
+        post(list, value);
+    }
+
+    private static void post(IntList list, int value) {
+        if (list.isEmpty() || list.get(list.size() - 1) != value) {
+            list.add(value);
+        }
+    }
+
+    private static int wordEnd(String s, int start) {
+        int end = s.indexOf(' ', start);
+        return end < 0 ? s.length() : end;
+    }
+
+    // Edit distance between a[aStart, aEnd) and b[bStart, bEnd), counting an adjacent swap as
+    // one edit, exact up to 1; anything further apart comes back as 2
+    private static int distance(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        int aLength = aEnd - aStart;
+        int bLength = bEnd - bStart;
+        if (Math.abs(aLength - bLength) > 1) {
+            return 2;
+        }
+        int i = 0;
+        while (i < aLength && i < bLength && a.charAt(aStart + i) == b.charAt(bStart + i)) {
+            i++;
+        }
+        if (i == aLength && i == bLength) {
+            return 0;
+        }
+        if (aLength == bLength) {
+            if (a.regionMatches(aStart + i + 1, b, bStart + i + 1, aLength - i - 1)) {
+                return 1;
+            }
+            boolean swapped = i + 1 < aLength && a.charAt(aStart + i) == b.charAt(bStart + i + 1)
+                    && a.charAt(aStart + i + 1) == b.charAt(bStart + i)
+                    && a.regionMatches(aStart + i + 2, b, bStart + i + 2, aLength - i - 2);
+            return swapped ? 1 : 2;
+        }
+        // One letter more in the longer word, at the first difference
+        if (aLength > bLength) {
+            return a.regionMatches(aStart + i + 1, b, bStart + i, bLength - i) ? 1 : 2;
+        }
+        return a.regionMatches(aStart + i, b, bStart + i + 1, aLength - i) ? 1 : 2;
+    }
+
+    // Lowercase words separated by single spaces, with accents and apostrophes dropped
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                name = Normalizer.normalize(name, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean gap = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                gap = false;
+            } else if (c != '\'' && c != '\u2019' && Character.getType(c) != Character.NON_SPACING_MARK) {
+                gap = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    // Slots present in every list, in order. Each step takes the largest of the lists'
+    // current slots and gallops the others forward to it.
+    private static final class Intersection {
+        private final IntList[] lists;
+        private final int[] positions;
+
+        Intersection(List<IntList> lists) {
+            this.lists = lists.toArray(new IntList[0]);
+            this.positions = new int[this.lists.length];
+        }
+
+        int next() {
+            int target = 0;
+            int agreed = 0;
+            for (int i = 0; agreed < lists.length; i = (i + 1) % lists.length) {
+                positions[i] = seek(lists[i], positions[i], target);
+                if (positions[i] == lists[i].size()) {
+                    return -1;
+                }
+                int slot = lists[i].get(positions[i]);
+                if (slot == target) {
+                    agreed++;
+                } else {
+                    target = slot;
+                    agreed = 1;
+                }
+            }
+            for (int i = 0; i < positions.length; i++) {
+                positions[i]++;
+            }
+            return target;
+        }
+
+        // First position at or after from holding a slot of at least target
+        private static int seek(IntList list, int from, int target) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < list.size() && list.get(high) < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, list.size());
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (list.get(mid) < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Slots present in any of the lists, in order, without duplicates
+    private static final class Union {
+        private final IntList[] lists;
+        private final int[] positions;
+        private int last = -1;
+
+        Union(List<IntList> lists) {
+            this.lists = lists.toArray(new IntList[0]);
+            this.positions = new int[this.lists.length];
+        }
+
+        int next() {
+            int smallest = -1;
+            int from = -1;
+            for (int i = 0; i < lists.length; i++) {
+                while (positions[i] < lists[i].size() && lists[i].get(positions[i]) <= last) {
+                    positions[i]++;
+                }
+                if (positions[i] < lists[i].size() && (smallest < 0 || lists[i].get(positions[i]) < smallest)) {
+                    smallest = lists[i].get(positions[i]);
+                    from = i;
+                }
+            }
+            if (from < 0) {
+                return -1;
+            }
+            positions[from]++;
+            last = smallest;
+            return smallest;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Background writer that batches rental records into the journal: one write and one
+// fsync per batch. A batch is flushed when maxBatchSize entries are waiting or
+// maxDelayMillis has passed since the first one arrived, whichever comes first. With a
+// delay of 0 the writer takes whatever is queued as soon as the previous fsync finishes,
+// so batches grow naturally with load without adding latency when it is quiet.
+//
+// Other journal entries (vehicles, statuses, reservations) go through the same queue, so
+// everything reaches the journal in the order it was submitted. Replay depends on that:
+// a STATUS written ahead of the RETURN before it would be undone by the RETURN.
+public class GroupCommitWriter implements Closeable {
+    // A journal write other than a rental record, run on the writer thread
+    public interface Entry {
+        void appendTo(RentalJournal journal) throws IOException;
+    }
+
+    private static final class Pending {
+        final RentalRecord record;
+        final Entry entry;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+        final long enqueuedNanos = System.nanoTime();
+
+        Pending(RentalRecord record, Entry entry) {
+            this.record = record;
+            this.entry = entry;
+        }
+    }
+
+    private static final Pending POISON = new Pending(null, null);
+
+    private final RentalJournal journal;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Thread worker;
+    private volatile boolean closed;
+    // Hears about failed batches when set; callers only see their own futures fail
+    private volatile RentalEventBus events;
+
+    // Stats, readable while running
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public GroupCommitWriter(RentalJournal journal, int queueCapacity, int maxBatchSize, long maxDelayMillis) {
+        if (queueCapacity <= 0 || maxBatchSize <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be > 0, delay must be >= 0");
+        }
+        this.journal = journal;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.worker = new Thread(this::run, "rental-group-commit");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void setEvents(RentalEventBus events) {
+        this.events = events;
+    }
+
+    // Queues the record and returns a future that completes once it has been fsynced.
+    // Blocks while the queue is full, which throttles callers to the disk's pace.
+    public CompletableFuture<Void> submit(RentalRecord record) {
+        return enqueue(new Pending(record, null));
+    }
+
+    // Queues any other journal write behind everything submitted so far
+    public CompletableFuture<Void> submit(Entry entry) {
+        return enqueue(new Pending(null, entry));
+    }
+
+    // Waits until everything submitted before the call is in the journal and fsynced
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        try {
+            enqueue(new Pending(null, null)).join();
+        } catch (RuntimeException e) {
+            // The failed entries were already reported through their own futures
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Pending pending) {
+        if (closed) {
+            throw new IllegalStateException("Group commit writer is closed");
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.durable.completeExceptionally(e);
+        }
+        return pending.durable;
+    }
+
+    // Stops accepting records and waits until everything queued has been written
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(POISON);
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Anything that raced in behind the shutdown marker is never written
+        List<Pending> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (Pending pending : leftovers) {
+            pending.durable.completeExceptionally(new IllegalStateException("Group commit writer is closed"));
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        List<RentalRecord> records = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize && !batch.contains(POISON)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (batch.remove(POISON)) {
+                stopping = true;
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch, records);
+            }
+            batch.clear();
+            records.clear();
+        }
+    }
+
+    // Runs of consecutive records go out as one append; other entries are written in between
+    // them in queue order. One fsync covers the whole batch.
+    private void writeBatch(List<Pending> batch, List<RentalRecord> records) {
+        int written = 0;
+        try {
+            for (Pending pending : batch) {
+                if (pending.record != null) {
+                    records.add(pending.record);
+                    written++;
+                } else if (pending.entry != null) {
+                    appendRecords(records);
+                    pending.entry.appendTo(journal);
+                    written++;
+                }
+            }
+            appendRecords(records);
+            journal.sync();
+        } catch (IOException | RuntimeException e) {
+            RentalEventBus events = this.events;
+            if (events != null) {
+                events.persistenceError("Error saving " + batch.size() + " journal entries", e);
+            }
+            for (Pending pending : batch) {
+                pending.durable.completeExceptionally(e);
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            if (pending.record != null || pending.entry != null) {
+                long latency = now - pending.enqueuedNanos;
+                totalLatencyNanos.addAndGet(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+            pending.durable.complete(null);
+        }
+        recordsWritten.addAndGet(written);
+        batchesWritten.incrementAndGet();
+    }
+
+    private void appendRecords(List<RentalRecord> records) throws IOException {
+        if (!records.isEmpty()) {
+            journal.appendRecords(records);
+            records.clear();
+        }
+    }
+
+    // Records and other entries written
+    public long getRecordsWritten() {
+        return recordsWritten.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchesWritten.get();
+        return batches == 0 ? 0 : (double) recordsWritten.get() / batches;
+    }
+
+    // Average time from submit() to the record being durable
+    public double getAverageLatencyMicros() {
+        long records = recordsWritten.get();
+        return records == 0 ? 0 : totalLatencyNanos.get() / 1000.0 / records;
+    }
+
+    public double getMaxLatencyMicros() {
+        return maxLatencyNanos.get() / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("records=%d batches=%d avgBatch=%.1f avgLatency=%.1fus maxLatency=%.1fus",
+                getRecordsWritten(), getBatchesWritten(), getAverageBatchSize(),
+                getAverageLatencyMicros(), getMaxLatencyMicros());
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Least-recently-used cache of the record lists answered for plate and customer-name
+// queries, bounded by an estimate of the memory the lists hold. Entries are dropped as
+// soon as a record is added that the query would match, so a hit is always current.
+//
+// Safe for concurrent use; every method synchronizes on the cache.
+public class HistoryCache {
+    // Rough heap cost of an entry apart from its records and key: map node, key string and
+    // array headers
+    private static final long ENTRY_BYTES = 112;
+    // Per record: just the array slot when the records are live anyway, otherwise also the
+    // RentalRecord and LocalDate the store built for this entry alone
+    static final long LIVE_RECORD_BYTES = 4;
+    static final long MATERIALIZED_RECORD_BYTES = LIVE_RECORD_BYTES + 40 + 24;
+
+    private final long maxBytes;
+    private final long recordBytes;
+    private final LinkedHashMap<String, RentalRecord[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Cached customer queries, lowercased, for invalidation
+    private final Set<String> customerQueries = new HashSet<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    // A budget of 0 turns caching off
+    public HistoryCache(long maxBytes) {
+        this(maxBytes, LIVE_RECORD_BYTES);
+    }
+
+    public HistoryCache(long maxBytes, long recordBytes) {
+        this.maxBytes = maxBytes;
+        this.recordBytes = recordBytes;
+    }
+
+    static String vehicleKey(String plateUpper) {
+        return "V" + plateUpper;
+    }
+
+    static String customerKey(String queryLower) {
+        return "C" + queryLower;
+    }
+
+    // The cached records, or null if there are none; counts a hit or a miss
+    public synchronized RentalRecord[] get(String key) {
+        RentalRecord[] records = entries.get(key);
+        if (records == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return records;
+    }
+
+    public synchronized void put(String key, RentalRecord[] records) {
+        long size = size(key, records);
+        if (size > maxBytes) {
+            return;
+        }
+        RentalRecord[] replaced = entries.put(key, records);
+        if (replaced != null) {
+            bytes -= size(key, replaced);
+        } else if (key.charAt(0) == 'C') {
+            customerQueries.add(key.substring(1));
+        }
+        bytes += size;
+        Iterator<Map.Entry<String, RentalRecord[]>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes) {
+            Map.Entry<String, RentalRecord[]> entry = eldest.next();
+            forget(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Drops whatever a new record for this plate and customer name makes stale
+    public synchronized void recordAdded(String plateUpper, String customerName) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (plateUpper != null) {
+            invalidate(vehicleKey(plateUpper));
+        }
+        if (customerName == null || customerQueries.isEmpty()) {
+            return;
+        }
+        String name = customerName.toLowerCase();
+        // Stale customer queries are the substrings of the name; look those up directly
+        // unless fewer queries are cached than the name has substrings
+        int substrings = name.length() * (name.length() + 1) / 2 + 1;
+        if (customerQueries.size() <= substrings) {
+            for (String query : customerQueries.toArray(new String[0])) {
+                if (name.contains(query)) {
+                    invalidate(customerKey(query));
+                }
+            }
+        } else {
+            invalidate(customerKey(""));
+            for (int start = 0; start < name.length(); start++) {
+                for (int end = start + 1; end <= name.length(); end++) {
+                    invalidate(customerKey(name.substring(start, end)));
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        customerQueries.clear();
+        bytes = 0;
+    }
+
+    private void invalidate(String key) {
+        RentalRecord[] records = entries.remove(key);
+        if (records != null) {
+            forget(key, records);
+            invalidations++;
+        }
+    }
+
+    private void forget(String key, RentalRecord[] records) {
+        bytes -= size(key, records);
+        if (key.charAt(0) == 'C') {
+            customerQueries.remove(key.substring(1));
+        }
+    }
+
+    private long size(String key, RentalRecord[] records) {
+        return ENTRY_BYTES + 2L * key.length() + recordBytes * records.length;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
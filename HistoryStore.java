@@ -0,0 +1,45 @@
+// Storage engine behind RentalHistory: records live at dense row numbers in append
+// order. Implementations are not thread-safe; RentalHistory guards every call.
+public interface HistoryStore {
+    // Stores the record and returns its row number
+    int append(RentalRecord record);
+
+    // The record at the row, possibly a freshly materialized copy
+    RentalRecord get(int row);
+
+    int size();
+
+    void clear();
+
+    // Per-field access, so scans can skip materializing whole records
+
+    Vehicle vehicle(int row);
+
+    Customer customer(int row);
+
+    long epochDay(int row);
+
+    double amount(int row);
+
+    String recordType(int row);
+
+    default int customerId(int row) {
+        return customer(row).getCustomerId();
+    }
+
+    default int plateCode(int row) {
+        return PlateCodec.encode(vehicle(row).getLicensePlate());
+    }
+
+    // Whether RentalHistory should keep heap indexes of row numbers; stores that don't
+    // want them are scanned instead
+    default boolean isIndexed() {
+        return true;
+    }
+
+    // Whether get() builds a new RentalRecord rather than returning one already on the heap;
+    // RentalHistory's cache charges the copies it keeps against its budget
+    default boolean materializesRecords() {
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// What a bulk import did with each item it was given, in the order they were looked at
+public class ImportReport {
+    public enum Outcome { ADDED, DUPLICATE, INVALID }
+
+    public static final class Item {
+        private final String key;
+        private final Outcome outcome;
+        private final String message;
+
+        Item(String key, Outcome outcome, String message) {
+            this.key = key;
+            this.outcome = outcome;
+            this.message = message;
+        }
+
+        // The plate or customer id, or the line number for lines that couldn't be read
+        public String getKey() { return key; }
+
+        public Outcome getOutcome() { return outcome; }
+
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return message == null ? key + ": " + outcome : key + ": " + outcome + " (" + message + ")";
+        }
+    }
+
+    private final List<Item> items = new ArrayList<>();
+    private final int[] counts = new int[Outcome.values().length];
+
+    void add(String key, Outcome outcome, String message) {
+        items.add(new Item(key, outcome, message));
+        counts[outcome.ordinal()]++;
+    }
+
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    public int getCount(Outcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    public String getSummary() {
+        return getCount(Outcome.ADDED) + " added, " + getCount(Outcome.DUPLICATE) + " duplicates, "
+                + getCount(Outcome.INVALID) + " invalid";
+    }
+}
@@ -0,0 +1,133 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+// Open-addressing hash map keyed by primitive ints, so lookups don't box the key.
+// Null values are not allowed (null marks an empty slot).
+//
+// Not thread-safe for writers, but get() may run without a lock while one thread at a time
+// writes: a slot's key is stored before its value is published, and a resize builds the
+// new arrays aside and swaps them in together.
+public class IntObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final class Table {
+        final int[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private int size;
+
+    public IntObjectMap() {
+        this(16);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int i = hash(key) & t.mask;
+        Object value;
+        while ((value = SLOT.getAcquire(t.values, i)) != null) {
+            if (t.keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    // Returns the previous value, or null if the key was not present
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        Table t = table;
+        int i = hash(key) & t.mask;
+        Object existing;
+        while ((existing = t.values[i]) != null) {
+            if (t.keys[i] == key) {
+                SLOT.setRelease(t.values, i, value);
+                return (V) existing;
+            }
+            i = (i + 1) & t.mask;
+        }
+        t.keys[i] = key;
+        SLOT.setRelease(t.values, i, value);
+        if (++size > t.values.length * LOAD_FACTOR) {
+            resize(t.values.length << 1);
+        }
+        return null;
+    }
+
+    // Returns the existing value if present, otherwise stores the new one and returns null
+    public V putIfAbsent(int key, V value) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        table = new Table(table.values.length);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : table.values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    private void resize(int newCapacity) {
+        Table old = table;
+        Table grown = new Table(newCapacity);
+        for (int j = 0; j < old.values.length; j++) {
+            Object value = old.values[j];
+            if (value != null) {
+                int i = hash(old.keys[j]) & grown.mask;
+                while (grown.values[i] != null) {
+                    i = (i + 1) & grown.mask;
+                }
+                grown.keys[i] = old.keys[j];
+                grown.values[i] = value;
+            }
+        }
+        table = grown;
+    }
+}
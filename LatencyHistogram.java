@@ -0,0 +1,130 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Latency histogram with log-linear buckets in the style of HdrHistogram: every power of two
+// is split into 32 buckets, so any value is reported within about 3% of what was recorded.
+// Values are nanoseconds, clamped to about 68 seconds.
+//
+// Recording is lock-free. Threads record into one of a few stripes picked by thread id, so
+// they rarely touch the same counters; reads merge the stripes. Stripes rather than one
+// recorder per thread, because server connections each get their own (virtual) thread.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 35;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+    // Per stripe: sum and max ahead of the buckets. The count is the buckets' total.
+    private static final int SUM = 0;
+    private static final int MAX = 1;
+    private static final int FIRST_BUCKET = 2;
+
+    // Created on first use, since most operations only ever run on a few threads
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        AtomicLongArray stripe = stripe();
+        stripe.getAndAdd(SUM, value);
+        stripe.getAndIncrement(FIRST_BUCKET + bucket(value));
+        long max = stripe.get(MAX);
+        while (value > max && !stripe.compareAndSet(MAX, max, value)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (int) (Thread.currentThread().getId() * 0x9E3779B9L >>> 16) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(FIRST_BUCKET + BUCKETS));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int top = (int) (value >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + top - SUB_BUCKETS;
+    }
+
+    // Largest value that lands in the bucket
+    static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // The stripes merged as they stand; recording carries on meanwhile, so the figures may
+    // be off by the few values recorded while reading
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+            for (int b = 0; b < BUCKETS; b++) {
+                long c = stripe.get(FIRST_BUCKET + b);
+                counts[b] += c;
+                count += c;
+            }
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        // Value at or below which the given share (0 to 1) of the recorded values fall
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return Math.min(highestIn(b), max);
+                }
+            }
+            return max;
+        }
+    }
+}
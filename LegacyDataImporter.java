@@ -0,0 +1,191 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+// One-time converter from the old vehicles.txt / customers.txt / rental_records.txt
+// CSV files into the binary rental journal.
+public class LegacyDataImporter {
+    public static final String VEHICLES_FILE = "vehicles.txt";
+    public static final String CUSTOMERS_FILE = "customers.txt";
+    public static final String RECORDS_FILE = "rental_records.txt";
+
+    private static final int RECORD_BATCH = 4096;
+
+    private final RentalEventBus events;
+
+    // Keyed by PlateCodec code
+    private final IntObjectMap<Vehicle> vehicles = new IntObjectMap<>();
+    private final IntObjectMap<Customer> customers = new IntObjectMap<>();
+    private int importedVehicles;
+    private int importedCustomers;
+    private int importedRecords;
+
+    // Lines that can't be imported are reported as WARNING events
+    public LegacyDataImporter(RentalEventBus events) {
+        this.events = events;
+    }
+
+    public static boolean hasLegacyData(Path dataDir) {
+        return Files.exists(dataDir.resolve(VEHICLES_FILE))
+                || Files.exists(dataDir.resolve(CUSTOMERS_FILE))
+                || Files.exists(dataDir.resolve(RECORDS_FILE));
+    }
+
+    public void importInto(Path dataDir, RentalJournal journal) throws IOException {
+        importVehicles(dataDir.resolve(VEHICLES_FILE), journal);
+        importCustomers(dataDir.resolve(CUSTOMERS_FILE), journal);
+        importRecords(dataDir.resolve(RECORDS_FILE), journal);
+        journal.sync();
+    }
+
+    public int getImportedVehicles() { return importedVehicles; }
+
+    public int getImportedCustomers() { return importedCustomers; }
+
+    public int getImportedRecords() { return importedRecords; }
+
+    private void importVehicles(Path file, RentalJournal journal) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Vehicle vehicle;
+                try {
+                    vehicle = parseVehicle(line);
+                } catch (IllegalArgumentException e) {
+                    events.warn("Skipping vehicle line \"" + line + "\"", e);
+                    continue;
+                }
+                if (vehicles.putIfAbsent(PlateCodec.encode(vehicle.getLicensePlate()), vehicle) == null) {
+                    journal.appendVehicle(vehicle);
+                    importedVehicles++;
+                }
+            }
+        }
+    }
+
+    private void importCustomers(Path file, RentalJournal journal) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Customer customer;
+                try {
+                    customer = parseCustomer(line);
+                } catch (IllegalArgumentException e) {
+                    events.warn("Skipping customer line \"" + line + "\"", e);
+                    continue;
+                }
+                if (customers.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                    journal.appendCustomer(customer);
+                    importedCustomers++;
+                }
+            }
+        }
+    }
+
+    private void importRecords(Path file, RentalJournal journal) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        RentalRecordParser parser = new RentalRecordParser();
+        List<RentalRecord> batch = new ArrayList<>(RECORD_BATCH);
+        try {
+            parser.parse(file, (plateCode, customerId, date, amount, recordType) -> {
+                Vehicle vehicle = vehicles.get(plateCode);
+                Customer customer = customers.get(customerId);
+                if (vehicle != null && customer != null) {
+                    batch.add(new RentalRecord(vehicle, customer, date, amount, recordType));
+                    if (batch.size() == RECORD_BATCH) {
+                        appendBatch(journal, batch);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        appendBatch(journal, batch);
+        if (parser.getSkippedLines() > 0) {
+            events.warn("Skipped " + parser.getSkippedLines() + " malformed lines in " + file, null);
+        }
+    }
+
+    private void appendBatch(RentalJournal journal, List<RentalRecord> batch) {
+        try {
+            journal.appendRecords(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        importedRecords += batch.size();
+        batch.clear();
+    }
+
+    // A vehicles.txt line: plate,make,model,year,type. Throws IllegalArgumentException
+    // saying what is wrong with the line.
+    static Vehicle parseVehicle(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException("Expected plate,make,model,year,type");
+        }
+        Vehicle vehicle = createVehicle(parts[4], parts[1], parts[2], Integer.parseInt(parts[3]));
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Unknown vehicle type: " + parts[4]);
+        }
+        vehicle.setLicensePlate(parts[0]);
+        return vehicle;
+    }
+
+    // A customers.txt line: id,name
+    static Customer parseCustomer(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected id,name");
+        }
+        return new Customer(Integer.parseInt(parts[0]), parts[1]);
+    }
+
+    // Same defaults the CSV loader used, since the old files don't store type-specific fields
+    static Vehicle createVehicle(String type, String make, String model, int year) {
+        switch (type) {
+            case "Car":
+                return new Car(make, model, year, 5);
+            case "SportCar":
+                return new SportCar(make, model, year, 2, 300, false);
+            case "Motorcycle":
+                return new Motorcycle(make, model, year, false);
+            case "Truck":
+                return new Truck(make, model, year, 1000);
+            default:
+                return null;
+        }
+    }
+
+    // Usage: java LegacyDataImporter [dataDir]
+    public static void main(String[] args) throws IOException {
+        Path dataDir = Paths.get(args.length > 0 ? args[0] : "");
+        Path journalFile = dataDir.resolve(RentalSystem.JOURNAL_FILE);
+        if (Files.exists(journalFile) && Files.size(journalFile) > 0) {
+            System.out.println("Journal " + journalFile + " already exists; not importing again.");
+            return;
+        }
+        RentalEventBus events = new RentalEventBus();
+        events.subscribe(EnumSet.of(RentalEvent.Type.WARNING), event -> System.out.println(event.getMessage()));
+        LegacyDataImporter importer = new LegacyDataImporter(events);
+        try (RentalJournal journal = new RentalJournal(journalFile, RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            importer.importInto(dataDir, journal);
+        }
+        System.out.println("Imported " + importer.getImportedVehicles() + " vehicles, "
+                + importer.getImportedCustomers() + " customers and "
+                + importer.getImportedRecords() + " rental records into " + journalFile);
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// When each vehicle was last serviced, how many times it has been rented since, and at
+// most one pending timer per vehicle. The timers are a single binary heap ordered by due
+// time whose entries remember their own slot in it, so scheduling, moving and cancelling a
+// timer are all O(log n) and a pending timer costs nothing beyond the vehicle's entry.
+//
+// One daemon thread sleeps until the earliest timer is due and passes the due vehicles to
+// the handler, outside this object's lock, so the handler may schedule new timers.
+public class MaintenanceScheduler {
+    private static final class Entry {
+        final Vehicle vehicle;
+        long lastServiceMillis;
+        int rentalsSinceService;
+        long dueMillis;
+        // Position in the heap, -1 when no timer is pending
+        int slot = -1;
+
+        Entry(Vehicle vehicle, long lastServiceMillis) {
+            this.vehicle = vehicle;
+            this.lastServiceMillis = lastServiceMillis;
+        }
+    }
+
+    private final Consumer<Vehicle> handler;
+    // Hears about handlers that throw when set
+    private volatile RentalEventBus events;
+    private final Map<Vehicle, Entry> entries = new IdentityHashMap<>();
+    private Entry[] heap = new Entry[64];
+    private int size;
+    private Thread thread;
+    private boolean closed;
+
+    public MaintenanceScheduler(Consumer<Vehicle> handler) {
+        this.handler = handler;
+    }
+
+    public void setEvents(RentalEventBus events) {
+        this.events = events;
+    }
+
+    public synchronized void start() {
+        if (thread != null || closed) {
+            return;
+        }
+        thread = new Thread(this::run, "rental-maintenance");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Stops the thread without interrupting it, since a handler may be writing the journal
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    // Vehicles not seen before count as serviced at the time they are first mentioned
+    private Entry entry(Vehicle vehicle) {
+        return entries.computeIfAbsent(vehicle, v -> new Entry(v, System.currentTimeMillis()));
+    }
+
+    public synchronized void setService(Vehicle vehicle, long lastServiceMillis, int rentalsSinceService) {
+        Entry entry = entry(vehicle);
+        entry.lastServiceMillis = lastServiceMillis;
+        entry.rentalsSinceService = rentalsSinceService;
+    }
+
+    public synchronized long getLastService(Vehicle vehicle) {
+        return entry(vehicle).lastServiceMillis;
+    }
+
+    public synchronized int getRentalsSinceService(Vehicle vehicle) {
+        return entry(vehicle).rentalsSinceService;
+    }
+
+    // Returns the vehicle's rentals since its last service, including these
+    public synchronized int addRentals(Vehicle vehicle, int rentals) {
+        Entry entry = entry(vehicle);
+        entry.rentalsSinceService += rentals;
+        return entry.rentalsSinceService;
+    }
+
+    // Sets the vehicle's timer, replacing any it already had
+    public synchronized void schedule(Vehicle vehicle, long dueMillis) {
+        Entry entry = entry(vehicle);
+        entry.dueMillis = dueMillis;
+        if (entry.slot < 0) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size << 1);
+            }
+            entry.slot = size;
+            heap[size++] = entry;
+        }
+        siftUp(entry.slot);
+        siftDown(entry.slot);
+        if (heap[0] == entry) {
+            notifyAll();
+        }
+    }
+
+    public synchronized void cancel(Vehicle vehicle) {
+        Entry entry = entries.get(vehicle);
+        if (entry != null && entry.slot >= 0) {
+            removeAt(entry.slot);
+        }
+    }
+
+    // When the vehicle's timer is due, or -1 if it has none
+    public synchronized long getDue(Vehicle vehicle) {
+        Entry entry = entries.get(vehicle);
+        return entry == null || entry.slot < 0 ? -1 : entry.dueMillis;
+    }
+
+    public synchronized int getPending() {
+        return size;
+    }
+
+    // Fires every timer due at or before nowMillis and returns how many fired. The
+    // scheduler's own thread calls this with the current time.
+    public int runDue(long nowMillis) {
+        List<Vehicle> due = new ArrayList<>();
+        synchronized (this) {
+            while (size > 0 && heap[0].dueMillis <= nowMillis) {
+                due.add(heap[0].vehicle);
+                removeAt(0);
+            }
+        }
+        for (Vehicle vehicle : due) {
+            try {
+                handler.accept(vehicle);
+            } catch (RuntimeException e) {
+                RentalEventBus events = this.events;
+                if (events != null) {
+                    events.warn("Error in maintenance timer for " + vehicle.getLicensePlate(), e);
+                }
+            }
+        }
+        return due.size();
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (!closed) {
+                        long wait = size == 0 ? 0 : heap[0].dueMillis - System.currentTimeMillis();
+                        if (size > 0 && wait <= 0) {
+                            break;
+                        }
+                        wait(wait);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            runDue(System.currentTimeMillis());
+        }
+    }
+
+    private void removeAt(int slot) {
+        Entry removed = heap[slot];
+        removed.slot = -1;
+        Entry last = heap[--size];
+        heap[size] = null;
+        if (slot < size) {
+            heap[slot] = last;
+            last.slot = slot;
+            siftUp(slot);
+            siftDown(last.slot);
+        }
+    }
+
+    private void siftUp(int slot) {
+        Entry entry = heap[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (heap[parent].dueMillis <= entry.dueMillis) {
+                break;
+            }
+            place(heap[parent], slot);
+            slot = parent;
+        }
+        place(entry, slot);
+    }
+
+    private void siftDown(int slot) {
+        Entry entry = heap[slot];
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].dueMillis < heap[child].dueMillis) {
+                child++;
+            }
+            if (entry.dueMillis <= heap[child].dueMillis) {
+                break;
+            }
+            place(heap[child], slot);
+            slot = child;
+        }
+        place(entry, slot);
+    }
+
+    private void place(Entry entry, int slot) {
+        heap[slot] = entry;
+        entry.slot = slot;
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Keeps the history in a memory-mapped file of fixed-width slots, so it survives restarts
+// without being replayed and takes no heap per record. Vehicles and customers are stored
+// by plate code and id and resolved through the given lookups when a record is read.
+//
+// Layout: a 4 KB header, then 24-byte slots
+//   [int plateCode][int customerId][int epochDay][int typeCode][long amountCents]
+// in segments of SEGMENT_SLOTS slots, each mapped on first use. The header holds the
+// record count, the journal offset the slots are in sync with, the extra record type
+// names, and whether the file was closed cleanly; a file that was not is rebuilt by
+// RentalSystem from the journal.
+//
+// RentalHistory keeps no heap indexes over this store (isIndexed is false) and scans the
+// mapped slots instead.
+public class MappedHistoryStore implements HistoryStore, Closeable {
+    private static final long MAGIC = 0x524E544849535431L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4096;
+    private static final int CLEAN_AT = 12;
+    private static final int SIZE_AT = 16;
+    private static final int JOURNAL_OFFSET_AT = 24;
+    private static final int TYPE_COUNT_AT = 32;
+    private static final int TYPES_AT = 36;
+
+    private static final int SLOT_BYTES = 24;
+    private static final int SEGMENT_BITS = 20;
+    private static final int SEGMENT_SLOTS = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SLOTS - 1;
+    private static final long SEGMENT_BYTES = (long) SEGMENT_SLOTS * SLOT_BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final IntFunction<Vehicle> vehicleByPlateCode;
+    private final IntFunction<Customer> customerById;
+    private final List<String> typeNames = new ArrayList<>(List.of("RENT", "RETURN"));
+    private final boolean closedCleanly;
+    private final boolean startedOver;
+    private int size;
+    private boolean closed;
+
+    public MappedHistoryStore(Path file, IntFunction<Vehicle> vehicleByPlateCode,
+                              IntFunction<Customer> customerById) throws IOException {
+        this.vehicleByPlateCode = vehicleByPlateCode;
+        this.customerById = customerById;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < HEADER_BYTES;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        startedOver = !fresh && (header.getLong(0) != MAGIC || header.getInt(8) != VERSION);
+        if (fresh || startedOver) {
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putLong(SIZE_AT, 0);
+            header.putLong(JOURNAL_OFFSET_AT, 0);
+            header.putInt(TYPE_COUNT_AT, 0);
+            closedCleanly = false;
+        } else {
+            closedCleanly = header.getInt(CLEAN_AT) == 1;
+            size = (int) header.getLong(SIZE_AT);
+            readTypeNames();
+        }
+        // Map every segment holding rows now, so readers never have to
+        if (size > 0) {
+            mapSegment((size - 1) >>> SEGMENT_BITS);
+        }
+        // Marked clean again only by close()
+        header.putInt(CLEAN_AT, 0);
+        header.force();
+    }
+
+    // Whether the previous owner closed the file, so its slots match getJournalOffset()
+    public boolean wasClosedCleanly() {
+        return closedCleanly;
+    }
+
+    // Whether the file held something other than a history of this version and was reset
+    public boolean wasStartedOver() {
+        return startedOver;
+    }
+
+    // Logical journal offset the slots were in sync with when the file was last closed
+    public long getJournalOffset() {
+        return header.getLong(JOURNAL_OFFSET_AT);
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return false;
+    }
+
+    @Override
+    public int append(RentalRecord record) {
+        int plateCode = PlateCodec.encode(record.getVehicle().getLicensePlate());
+        if (plateCode == PlateCodec.INVALID) {
+            throw new IllegalArgumentException("Cannot store a record for plate " + record.getVehicle().getLicensePlate());
+        }
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("History file is full");
+        }
+        int row = size;
+        ByteBuffer segment = mapSegment(row >>> SEGMENT_BITS);
+        int at = (row & SEGMENT_MASK) * SLOT_BYTES;
+        segment.putInt(at, plateCode);
+        segment.putInt(at + 4, record.getCustomer().getCustomerId());
+        segment.putInt(at + 8, Math.toIntExact(record.getRecordDate().toEpochDay()));
+        segment.putInt(at + 12, typeCode(record.getRecordType()));
+        segment.putLong(at + 16, Math.round(record.getTotalAmount() * 100));
+        size++;
+        header.putLong(SIZE_AT, size);
+        return row;
+    }
+
+    // Maps segments up to the index as needed; only append and the constructor do this
+    private MappedByteBuffer mapSegment(int index) {
+        while (segments.size() <= index) {
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_BYTES + segments.size() * SEGMENT_BYTES, SEGMENT_BYTES));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map history segment: " + e.getMessage(), e);
+            }
+        }
+        return segments.get(index);
+    }
+
+    private int typeCode(String type) {
+        int code = typeNames.indexOf(type);
+        if (code >= 0) {
+            return code;
+        }
+        byte[] name = type.getBytes(StandardCharsets.UTF_8);
+        int at = TYPES_AT;
+        for (int i = 2; i < typeNames.size(); i++) {
+            at += 2 + header.getShort(at);
+        }
+        if (at + 2 + name.length > HEADER_BYTES) {
+            throw new IllegalStateException("Too many distinct record types");
+        }
+        header.putShort(at, (short) name.length);
+        header.put(at + 2, name);
+        typeNames.add(type);
+        header.putInt(TYPE_COUNT_AT, typeNames.size() - 2);
+        return typeNames.size() - 1;
+    }
+
+    private void readTypeNames() {
+        int count = header.getInt(TYPE_COUNT_AT);
+        int at = TYPES_AT;
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[header.getShort(at)];
+            header.get(at + 2, name);
+            typeNames.add(new String(name, StandardCharsets.UTF_8));
+            at += 2 + name.length;
+        }
+    }
+
+    // Byte offset of the row's slot within its segment
+    private int slotAt(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+        return (row & SEGMENT_MASK) * SLOT_BYTES;
+    }
+
+    // The already mapped segment holding a row that slotAt has accepted
+    private MappedByteBuffer segmentOf(int row) {
+        return segments.get(row >>> SEGMENT_BITS);
+    }
+
+    @Override
+    public RentalRecord get(int row) {
+        return new RentalRecord(vehicle(row), customer(row), LocalDate.ofEpochDay(epochDay(row)),
+                amount(row), recordType(row));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        header.putLong(SIZE_AT, 0);
+    }
+
+    @Override
+    public int plateCode(int row) {
+        int at = slotAt(row);
+        return segmentOf(row).getInt(at);
+    }
+
+    @Override
+    public int customerId(int row) {
+        int at = slotAt(row);
+        return segmentOf(row).getInt(at + 4);
+    }
+
+    @Override
+    public Vehicle vehicle(int row) {
+        return vehicleByPlateCode.apply(plateCode(row));
+    }
+
+    @Override
+    public Customer customer(int row) {
+        return customerById.apply(customerId(row));
+    }
+
+    @Override
+    public long epochDay(int row) {
+        int at = slotAt(row);
+        return segmentOf(row).getInt(at + 8);
+    }
+
+    @Override
+    public double amount(int row) {
+        int at = slotAt(row);
+        return segmentOf(row).getLong(at + 16) / 100.0;
+    }
+
+    @Override
+    public String recordType(int row) {
+        int at = slotAt(row);
+        return typeNames.get(segmentOf(row).getInt(at + 12));
+    }
+
+    // Flushes every slot and marks the file clean and in sync with the journal offset
+    public void close(long journalOffset) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        header.putLong(JOURNAL_OFFSET_AT, journalOffset);
+        header.putInt(CLEAN_AT, 1);
+        header.force();
+        channel.close();
+    }
+
+    // Closes without marking the file clean, so the next open rebuilds it
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.close();
+    }
+}
@@ -11,19 +11,17 @@ public class Motorcycle extends Vehicle implements Rentable {
     }
 
     @Override
-    public String getInfo() {
-        return super.getInfo() + " | Sidecar: " + (hasSidecar ? "Yes" : "No");
+    protected void appendDetails(StringBuilder info) {
+        info.append(" | Sidecar: ").append(hasSidecar ? "Yes" : "No");
     }
 
     @Override
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Motorcycle " + getLicensePlate() + " has been rented.");
     }
 
     @Override
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Motorcycle " + getLicensePlate() + " has been returned.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Keeps the RentalRecord objects themselves
+public class ObjectHistoryStore implements HistoryStore {
+    private final List<RentalRecord> records = new ArrayList<>();
+
+    @Override
+    public int append(RentalRecord record) {
+        records.add(record);
+        return records.size() - 1;
+    }
+
+    @Override
+    public RentalRecord get(int row) {
+        return records.get(row);
+    }
+
+    @Override
+    public boolean materializesRecords() {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public void clear() {
+        records.clear();
+    }
+
+    @Override
+    public Vehicle vehicle(int row) {
+        return records.get(row).getVehicle();
+    }
+
+    @Override
+    public Customer customer(int row) {
+        return records.get(row).getCustomer();
+    }
+
+    @Override
+    public long epochDay(int row) {
+        return records.get(row).getRecordDate().toEpochDay();
+    }
+
+    @Override
+    public double amount(int row) {
+        return records.get(row).getTotalAmount();
+    }
+
+    @Override
+    public String recordType(int row) {
+        return records.get(row).getRecordType();
+    }
+}
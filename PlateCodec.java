@@ -0,0 +1,68 @@
+import java.nio.ByteBuffer;
+
+// Packs an AAA000-style licence plate into a single int (0 .. 17,575,999), so plates
+// can be compared, hashed and stored without keeping a String around. Codes follow
+// plate order: AAA000 is 0, AAA001 is 1, ..., ZZZ999 is the largest.
+public final class PlateCodec {
+    public static final int INVALID = -1;
+    public static final int PLATE_COUNT = 26 * 26 * 26 * 1000;
+
+    private PlateCodec() {
+    }
+
+    // Lower-case letters are accepted and folded to upper case; anything else is INVALID
+    public static int encode(CharSequence plate) {
+        if (plate == null || plate.length() != 6) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = 0; i < 6; i++) {
+            code = step(code, i, plate.charAt(i));
+            if (code < 0) {
+                return INVALID;
+            }
+        }
+        return code;
+    }
+
+    // Same as encode(CharSequence) for the ASCII bytes in [from, to)
+    public static int encode(ByteBuffer bytes, int from, int to) {
+        if (to - from != 6) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = 0; i < 6; i++) {
+            code = step(code, i, (char) (bytes.get(from + i) & 0xFF));
+            if (code < 0) {
+                return INVALID;
+            }
+        }
+        return code;
+    }
+
+    private static int step(int code, int position, char c) {
+        if (position < 3) {
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            return c >= 'A' && c <= 'Z' ? code * 26 + (c - 'A') : INVALID;
+        }
+        return c >= '0' && c <= '9' ? code * 10 + (c - '0') : INVALID;
+    }
+
+    public static String decode(int code) {
+        if (code < 0 || code >= PLATE_COUNT) {
+            throw new IllegalArgumentException("Not a plate code: " + code);
+        }
+        int letters = code / 1000;
+        int digits = code % 1000;
+        char[] chars = new char[6];
+        chars[0] = (char) ('A' + letters / (26 * 26));
+        chars[1] = (char) ('A' + (letters / 26) % 26);
+        chars[2] = (char) ('A' + letters % 26);
+        chars[3] = (char) ('0' + digits / 100);
+        chars[4] = (char) ('0' + (digits / 10) % 10);
+        chars[5] = (char) ('0' + digits % 10);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,158 @@
+// Prices a rental from the vehicle, the number of days and how much of the vehicle's type is
+// currently rented out. The daily rate is
+//
+//   base rate for the kind of vehicle
+//     x attribute tier (seats, horsepower and turbo, cargo capacity, sidecar)
+//     x length discount (longer rentals are cheaper per day)
+//     x utilization surge (busier fleets are dearer)
+//
+// The length discount applies to the whole rental, so just short of a threshold a rental
+// would cost more than one reaching it. A quote is capped at the price of the shortest rental
+// in each longer bucket, which keeps totals from dropping as days are added.
+//
+// The rules below are compiled once into a flat table holding the daily rate before surge
+// for every vehicle class and length bucket, so a quote is a couple of short threshold
+// scans and a few array reads; nothing is allocated per call. Safe for concurrent use.
+public class PricingEngine {
+    // Rows of the rule tables
+    private static final int CAR = 0;
+    private static final int SPORT_CAR = 1;
+    private static final int TRUCK = 2;
+    private static final int MOTORCYCLE = 3;
+    private static final int OTHER = 4;
+    private static final int KINDS = 5;
+
+    private static final double[] BASE_DAILY = {45, 120, 80, 30, 40};
+
+    // Tier i applies from THRESHOLDS[i - 1] (inclusive) up to THRESHOLDS[i]
+    private static final double[][] ATTRIBUTE_THRESHOLDS = {
+            {5, 7},             // car seats
+            {300, 450, 600},    // sport car horsepower
+            {1000, 2000, 5000}, // truck cargo capacity
+            {1},                // motorcycle sidecar
+            {}
+    };
+    private static final double[][] ATTRIBUTE_FACTORS = {
+            {1.0, 1.15, 1.3},
+            {1.0, 1.2, 1.4, 1.7},
+            {1.0, 1.15, 1.35, 1.6},
+            {1.0, 1.2},
+            {1.0}
+    };
+    private static final double TURBO_FACTOR = 1.1;
+
+    private static final int[] DAY_THRESHOLDS = {3, 7, 14, 30};
+    private static final double[] DAY_FACTORS = {1.0, 0.95, 0.88, 0.8, 0.7};
+    private static final int DAY_BUCKETS = DAY_FACTORS.length;
+
+    private static final double[] UTILIZATION_THRESHOLDS = {0.5, 0.75, 0.9};
+    private static final double[] UTILIZATION_FACTORS = {1.0, 1.1, 1.25, 1.5};
+
+    // First price class of each kind; a sport car's classes come in pairs, without and with turbo
+    private final int[] firstClass = new int[KINDS];
+    // Daily rate before surge, by price class * DAY_BUCKETS + day bucket
+    private final double[] dailyRates;
+
+    public PricingEngine() {
+        int classes = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            firstClass[kind] = classes;
+            classes += ATTRIBUTE_FACTORS[kind].length * (kind == SPORT_CAR ? 2 : 1);
+        }
+        dailyRates = new double[classes * DAY_BUCKETS];
+        for (int kind = 0; kind < KINDS; kind++) {
+            for (int tier = 0; tier < ATTRIBUTE_FACTORS[kind].length; tier++) {
+                for (int turbo = 0; turbo < (kind == SPORT_CAR ? 2 : 1); turbo++) {
+                    int priceClass = firstClass[kind] + tier * (kind == SPORT_CAR ? 2 : 1) + turbo;
+                    for (int bucket = 0; bucket < DAY_BUCKETS; bucket++) {
+                        dailyRates[priceClass * DAY_BUCKETS + bucket] = BASE_DAILY[kind] * ATTRIBUTE_FACTORS[kind][tier]
+                                * (turbo == 1 ? TURBO_FACTOR : 1) * DAY_FACTORS[bucket];
+                    }
+                }
+            }
+        }
+    }
+
+    // Total for the rental, in whole cents; days under one count as one
+    public double quote(Vehicle vehicle, int days, double utilization) {
+        int billedDays = Math.max(1, days);
+        int row = priceClass(vehicle) * DAY_BUCKETS;
+        int bucket = tier(DAY_THRESHOLDS, billedDays);
+        double surge = UTILIZATION_FACTORS[tier(UTILIZATION_THRESHOLDS, utilization)];
+        double total = dailyRates[row + bucket] * surge * billedDays;
+        // Bucket next + 1 starts at DAY_THRESHOLDS[next]
+        for (int next = bucket; next < DAY_THRESHOLDS.length; next++) {
+            total = Math.min(total, dailyRates[row + next + 1] * surge * DAY_THRESHOLDS[next]);
+        }
+        return Math.round(total * 100) / 100.0;
+    }
+
+    public double dailyRate(Vehicle vehicle, int days, double utilization) {
+        return dailyRates[priceClass(vehicle) * DAY_BUCKETS + tier(DAY_THRESHOLDS, days)]
+                * UTILIZATION_FACTORS[tier(UTILIZATION_THRESHOLDS, utilization)];
+    }
+
+    // The same rate worked out from the rules on every call, without the compiled table
+    double dailyRateFromRules(Vehicle vehicle, int days, double utilization) {
+        int kind = kind(vehicle);
+        double rate = BASE_DAILY[kind] * ATTRIBUTE_FACTORS[kind][tier(ATTRIBUTE_THRESHOLDS[kind], attribute(vehicle, kind))];
+        if (kind == SPORT_CAR && ((SportCar) vehicle).hasTurbo()) {
+            rate *= TURBO_FACTOR;
+        }
+        return rate * DAY_FACTORS[tier(DAY_THRESHOLDS, days)] * UTILIZATION_FACTORS[tier(UTILIZATION_THRESHOLDS, utilization)];
+    }
+
+    private int priceClass(Vehicle vehicle) {
+        int kind = kind(vehicle);
+        int tier = tier(ATTRIBUTE_THRESHOLDS[kind], attribute(vehicle, kind));
+        if (kind == SPORT_CAR) {
+            return firstClass[kind] + tier * 2 + (((SportCar) vehicle).hasTurbo() ? 1 : 0);
+        }
+        return firstClass[kind] + tier;
+    }
+
+    private static int kind(Vehicle vehicle) {
+        if (vehicle instanceof SportCar) {
+            return SPORT_CAR;
+        } else if (vehicle instanceof Car) {
+            return CAR;
+        } else if (vehicle instanceof Truck) {
+            return TRUCK;
+        } else if (vehicle instanceof Motorcycle) {
+            return MOTORCYCLE;
+        }
+        return OTHER;
+    }
+
+    // The value the kind's tiers are picked by
+    private static double attribute(Vehicle vehicle, int kind) {
+        switch (kind) {
+            case CAR:
+                return ((Car) vehicle).getNumSeats();
+            case SPORT_CAR:
+                return ((SportCar) vehicle).getHorsepower();
+            case TRUCK:
+                return ((Truck) vehicle).getCargoCapacity();
+            case MOTORCYCLE:
+                return ((Motorcycle) vehicle).hasSidecar() ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private static int tier(double[] thresholds, double value) {
+        int tier = 0;
+        while (tier < thresholds.length && value >= thresholds[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+
+    private static int tier(int[] thresholds, int value) {
+        int tier = 0;
+        while (tier < thresholds.length && value >= thresholds[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+}
@@ -0,0 +1,115 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running revenue totals and fleet status counts, kept up to date as records are added
+// and vehicles change status, so none of the queries walk the history. Revenue is the
+// sum of every record's total amount, RENT and RETURN alike, kept in whole cents.
+//
+// Safe for concurrent use. RentalSystem feeds it and rebuilds it while loading.
+public class RentalAggregates implements Vehicle.StatusListener {
+    private static final int STATUSES = Vehicle.VehicleStatus.values().length;
+
+    private final LongAdder totalCents = new LongAdder();
+    private final Map<LocalDate, LongAdder> centsByDay = new ConcurrentHashMap<>();
+    private final Map<YearMonth, LongAdder> centsByMonth = new ConcurrentHashMap<>();
+    private final Map<Class<?>, LongAdder> centsByType = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> centsByCustomer = new ConcurrentHashMap<>();
+
+    private final AtomicIntegerArray statusCounts = new AtomicIntegerArray(STATUSES);
+    private final Map<Class<?>, AtomicIntegerArray> statusCountsByType = new ConcurrentHashMap<>();
+
+    public void recordAdded(Vehicle vehicle, int customerId, LocalDate date, double amount) {
+        long cents = Math.round(amount * 100);
+        totalCents.add(cents);
+        centsByDay.computeIfAbsent(date, k -> new LongAdder()).add(cents);
+        centsByMonth.computeIfAbsent(YearMonth.from(date), k -> new LongAdder()).add(cents);
+        centsByType.computeIfAbsent(vehicle.getClass(), k -> new LongAdder()).add(cents);
+        centsByCustomer.computeIfAbsent(customerId, k -> new LongAdder()).add(cents);
+    }
+
+    public void recordAdded(RentalRecord record) {
+        recordAdded(record.getVehicle(), record.getCustomer().getCustomerId(), record.getRecordDate(),
+                record.getTotalAmount());
+    }
+
+    // Counts the vehicle in its current status; later changes arrive through statusChanged
+    public void vehicleAdded(Vehicle vehicle) {
+        int status = vehicle.getStatus().ordinal();
+        statusCounts.incrementAndGet(status);
+        countsFor(vehicle.getClass()).incrementAndGet(status);
+    }
+
+    @Override
+    public void statusChanged(Vehicle vehicle, Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        AtomicIntegerArray typeCounts = countsFor(vehicle.getClass());
+        statusCounts.decrementAndGet(from.ordinal());
+        typeCounts.decrementAndGet(from.ordinal());
+        statusCounts.incrementAndGet(to.ordinal());
+        typeCounts.incrementAndGet(to.ordinal());
+    }
+
+    private AtomicIntegerArray countsFor(Class<?> type) {
+        return statusCountsByType.computeIfAbsent(type, k -> new AtomicIntegerArray(STATUSES));
+    }
+
+    // Forgets all revenue; status counts are left alone
+    public void clearRevenue() {
+        totalCents.reset();
+        centsByDay.clear();
+        centsByMonth.clear();
+        centsByType.clear();
+        centsByCustomer.clear();
+    }
+
+    public double getTotalRevenue() {
+        return totalCents.sum() / 100.0;
+    }
+
+    public double getRevenue(LocalDate day) {
+        return cents(centsByDay.get(day));
+    }
+
+    public double getRevenue(YearMonth month) {
+        return cents(centsByMonth.get(month));
+    }
+
+    public double getRevenueForType(Class<? extends Vehicle> type) {
+        return cents(centsByType.get(type));
+    }
+
+    public double getRevenueForCustomer(int customerId) {
+        return cents(centsByCustomer.get(customerId));
+    }
+
+    private static double cents(LongAdder adder) {
+        return adder == null ? 0 : adder.sum() / 100.0;
+    }
+
+    public int getCount(Vehicle.VehicleStatus status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    public int getCount(Class<? extends Vehicle> type, Vehicle.VehicleStatus status) {
+        AtomicIntegerArray counts = statusCountsByType.get(type);
+        return counts == null ? 0 : counts.get(status.ordinal());
+    }
+
+    public int getFleetSize(Class<? extends Vehicle> type) {
+        AtomicIntegerArray counts = statusCountsByType.get(type);
+        int total = 0;
+        for (int i = 0; counts != null && i < STATUSES; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // Fraction of the type's vehicles that are rented, 0 when there are none
+    public double getUtilization(Class<? extends Vehicle> type) {
+        int fleet = getFleetSize(type);
+        return fleet == 0 ? 0 : (double) getCount(type, Vehicle.VehicleStatus.RENTED) / fleet;
+    }
+}
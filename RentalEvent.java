@@ -0,0 +1,85 @@
+// Something that happened in a RentalSystem, published on its RentalEventBus. An event holds
+// the objects involved rather than text; the log line is only built when getMessage is
+// called, which the AsyncEventLogger does on its own thread.
+public class RentalEvent {
+    public enum Type {
+        VEHICLE_ADDED, CUSTOMER_ADDED, DUPLICATE_VEHICLE, DUPLICATE_CUSTOMER,
+        VEHICLE_RENTED, VEHICLE_RETURNED, RENT_REJECTED, RETURN_REJECTED, RESERVATION_REJECTED,
+        MAINTENANCE_STARTED, STATUS_CHANGED, PERSISTENCE_ERROR, WARNING
+    }
+
+    private final Type type;
+    private final long timeMillis = System.currentTimeMillis();
+    private final Vehicle vehicle;
+    private final Customer customer;
+    private final String detail;
+    private final Throwable error;
+    private final Vehicle.VehicleStatus from;
+    private final Vehicle.VehicleStatus to;
+
+    RentalEvent(Type type, Vehicle vehicle, Customer customer, String detail, Throwable error) {
+        this(type, vehicle, customer, detail, error, null, null);
+    }
+
+    RentalEvent(Type type, Vehicle vehicle, Customer customer, String detail, Throwable error,
+                Vehicle.VehicleStatus from, Vehicle.VehicleStatus to) {
+        this.type = type;
+        this.vehicle = vehicle;
+        this.customer = customer;
+        this.detail = detail;
+        this.error = error;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Type getType() { return type; }
+
+    public long getTimeMillis() { return timeMillis; }
+
+    // Null when the event isn't about a particular vehicle or customer
+    public Vehicle getVehicle() { return vehicle; }
+
+    public Customer getCustomer() { return customer; }
+
+    // Why a request was turned down, or what was being done when an error happened
+    public String getDetail() { return detail; }
+
+    public Throwable getError() { return error; }
+
+    // For STATUS_CHANGED
+    public Vehicle.VehicleStatus getFrom() { return from; }
+
+    public Vehicle.VehicleStatus getTo() { return to; }
+
+    // The line RentalSystem used to print for this event
+    public String getMessage() {
+        switch (type) {
+            case VEHICLE_ADDED:
+                return "Vehicle " + vehicle.getLicensePlate() + " added.";
+            case CUSTOMER_ADDED:
+                return "Customer " + customer.getCustomerId() + " added.";
+            case DUPLICATE_VEHICLE:
+                return "Vehicle with license plate " + vehicle.getLicensePlate() + " already exists.";
+            case DUPLICATE_CUSTOMER:
+                return "Customer with ID " + customer.getCustomerId() + " already exists.";
+            case VEHICLE_RENTED:
+                return "Vehicle rented to " + customer.getCustomerName();
+            case VEHICLE_RETURNED:
+                return "Vehicle returned by " + customer.getCustomerName();
+            case MAINTENANCE_STARTED:
+                return "Vehicle " + vehicle.getLicensePlate() + " is due for service and has gone into maintenance.";
+            case STATUS_CHANGED:
+                return vehicle.getClass().getSimpleName() + " " + vehicle.getLicensePlate() + " went from " + from + " to " + to + ".";
+            case PERSISTENCE_ERROR:
+            case WARNING:
+                return error == null ? detail : detail + ": " + error.getMessage();
+            default:
+                return detail;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + ": " + getMessage();
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Hands each RentalEvent to the subscribers that asked for its type, on the publishing
+// thread. Subscribers run on the rental hot path, often under a vehicle's lock, so they have
+// to be quick; anything slow (like writing a log) belongs behind an AsyncEventLogger.
+//
+// Publishers check wants(type) first, so events nobody subscribed to are never built.
+public class RentalEventBus {
+    private static final class Subscription {
+        final Set<RentalEvent.Type> types;
+        final Consumer<RentalEvent> subscriber;
+
+        Subscription(Set<RentalEvent.Type> types, Consumer<RentalEvent> subscriber) {
+            this.types = types;
+            this.subscriber = subscriber;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Bit per type with at least one subscriber
+    private volatile int wanted;
+
+    public void subscribe(Consumer<RentalEvent> subscriber) {
+        subscribe(EnumSet.allOf(RentalEvent.Type.class), subscriber);
+    }
+
+    public synchronized void subscribe(Set<RentalEvent.Type> types, Consumer<RentalEvent> subscriber) {
+        subscriptions.add(new Subscription(EnumSet.copyOf(types), subscriber));
+        updateWanted();
+    }
+
+    public synchronized void unsubscribe(Consumer<RentalEvent> subscriber) {
+        subscriptions.removeIf(s -> s.subscriber == subscriber);
+        updateWanted();
+    }
+
+    private void updateWanted() {
+        int bits = 0;
+        for (Subscription subscription : subscriptions) {
+            for (RentalEvent.Type type : subscription.types) {
+                bits |= 1 << type.ordinal();
+            }
+        }
+        wanted = bits;
+    }
+
+    public boolean wants(RentalEvent.Type type) {
+        return (wanted & 1 << type.ordinal()) != 0;
+    }
+
+    // A subscriber that throws doesn't stop the others or the publisher
+    public void publish(RentalEvent event) {
+        if (!wants(event.getType())) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.types.contains(event.getType())) {
+                try {
+                    subscription.subscriber.accept(event);
+                } catch (RuntimeException e) {
+                    subscriberFailed(subscription, event, e);
+                }
+            }
+        }
+    }
+
+    // Shorthands for the components that only ever report problems
+
+    public void persistenceError(String doing, Throwable error) {
+        if (wants(RentalEvent.Type.PERSISTENCE_ERROR)) {
+            publish(new RentalEvent(RentalEvent.Type.PERSISTENCE_ERROR, null, null, doing, error));
+        }
+    }
+
+    public void warn(String message, Throwable error) {
+        if (wants(RentalEvent.Type.WARNING)) {
+            publish(new RentalEvent(RentalEvent.Type.WARNING, null, null, message, error));
+        }
+    }
+
+    // Tells the other WARNING subscribers. Not the one that failed, and a failure while
+    // reporting a failure is dropped, so a subscriber that always throws can't loop.
+    private void subscriberFailed(Subscription failed, RentalEvent event, RuntimeException e) {
+        if (event.getType() == RentalEvent.Type.WARNING && event.getError() != null) {
+            return;
+        }
+        RentalEvent warning = new RentalEvent(RentalEvent.Type.WARNING, null, null, "Error in rental event subscriber", e);
+        for (Subscription subscription : subscriptions) {
+            if (subscription != failed && subscription.types.contains(RentalEvent.Type.WARNING)) {
+                try {
+                    subscription.subscriber.accept(warning);
+                } catch (RuntimeException nested) {
+                    // nowhere left to report it
+                }
+            }
+        }
+    }
+}
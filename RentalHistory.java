@@ -1,34 +1,619 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.time.LocalDate;
 
+// Safe for concurrent use: appends take the write lock, queries and views the read lock.
+// Records are kept by a HistoryStore; the indexes below hold row numbers into it. Stores
+// that are not indexed (see HistoryStore.isIndexed) are scanned instead. The lists built by
+// getRentalRecordsByVehicle and getRentalRecordsByCustomer are kept in a HistoryCache.
 public class RentalHistory {
-    private List<RentalRecord> rentalRecords = new ArrayList<>();
+    public static final long DEFAULT_CACHE_BYTES = 8L << 20;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HistoryStore store;
+    private final boolean indexed;
+    private final HistoryCache cache;
+    // Bumped whenever existing rows are renumbered, so scan results cached by views are dropped
+    private int generation;
+    // The last findRecords query that had to be sorted; see findRecords
+    private volatile SortedRows lastSorted;
+
+    // Secondary indexes, holding row numbers into the store
+    private Map<String, IntList> rowsByPlate = new HashMap<>();
+    private IntObjectMap<IntList> rowsByCustomer = new IntObjectMap<>();
+    private NavigableMap<LocalDate, IntList> rowsByDate = new TreeMap<>();
+
+    public RentalHistory() {
+        this(new ObjectHistoryStore());
+    }
+
+    public RentalHistory(HistoryStore store) {
+        this(store, DEFAULT_CACHE_BYTES);
+    }
+
+    public RentalHistory(HistoryStore store, long cacheBytes) {
+        this.store = store;
+        this.indexed = store.isIndexed();
+        this.cache = new HistoryCache(cacheBytes, store.materializesRecords()
+                ? HistoryCache.MATERIALIZED_RECORD_BYTES : HistoryCache.LIVE_RECORD_BYTES);
+    }
 
     public void addRecord(RentalRecord record) {
-        rentalRecords.add(record);
+        lock.writeLock().lock();
+        try {
+            index(record);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
+    // Appends the records in order under a single lock acquisition
+    public void addRecords(List<RentalRecord> records) {
+        lock.writeLock().lock();
+        try {
+            for (RentalRecord record : records) {
+                index(record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Inserts older records ahead of everything already in the history, rebuilding the indexes
+    public void prependRecords(List<RentalRecord> olderRecords) {
+        if (olderRecords.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            List<RentalRecord> newer = new ArrayList<>(store.size());
+            for (int row = 0; row < store.size(); row++) {
+                newer.add(store.get(row));
+            }
+            store.clear();
+            generation++;
+            cache.clear();
+            rowsByPlate = new HashMap<>();
+            rowsByCustomer = new IntObjectMap<>();
+            rowsByDate = new TreeMap<>();
+            for (RentalRecord record : olderRecords) {
+                index(record);
+            }
+            for (RentalRecord record : newer) {
+                index(record);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(RentalRecord record) {
+        int row = store.append(record);
+        String plate = record.getVehicle().getLicensePlate();
+        String plateKey = plate == null ? null : plate.toUpperCase(Locale.ROOT);
+        cache.recordAdded(plateKey, record.getCustomer().getCustomerName());
+        if (!indexed) {
+            return;
+        }
+
+        if (plateKey != null) {
+            rowsByPlate.computeIfAbsent(plateKey, k -> new IntList()).add(row);
+        }
+        int customerId = record.getCustomer().getCustomerId();
+        IntList customerRows = rowsByCustomer.get(customerId);
+        if (customerRows == null) {
+            customerRows = new IntList();
+            rowsByCustomer.put(customerId, customerRows);
+        }
+        customerRows.add(row);
+        if (record.getRecordDate() != null) {
+            rowsByDate.computeIfAbsent(record.getRecordDate(), k -> new IntList()).add(row);
+        }
+    }
+
+    // Read-only view of every record, in insertion order
     public List<RentalRecord> getRentalHistory() {
-        return rentalRecords;
+        return new AllRowsView();
     }
 
+    // Records of every customer whose name contains customerName, ignoring case
     public List<RentalRecord> getRentalRecordsByCustomer(String customerName) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getCustomer().toString().toLowerCase().contains(customerName.toLowerCase())) {
-                result.add(record);
+        String needle = customerName.toLowerCase();
+        String key = HistoryCache.customerKey(needle);
+        lock.readLock().lock();
+        try {
+            RentalRecord[] cached = cache.get(key);
+            if (cached == null) {
+                List<RentalRecord> found = new ArrayList<>();
+                for (int row = 0; row < store.size(); row++) {
+                    String name = store.customer(row).getCustomerName();
+                    if (name != null && name.toLowerCase().contains(needle)) {
+                        found.add(store.get(row));
+                    }
+                }
+                cached = found.toArray(new RentalRecord[0]);
+                // Cached before the read lock is released, so no append can slip in between
+                cache.put(key, cached);
             }
+            return new ArrayList<>(Arrays.asList(cached));
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
     public List<RentalRecord> getRentalRecordsByVehicle(String licensePlate) {
-        List<RentalRecord> result = new ArrayList<>();
-        for (RentalRecord record : rentalRecords) {
-            if (record.getVehicle().getLicensePlate().equalsIgnoreCase(licensePlate)) {
-                result.add(record);
+        if (licensePlate == null) {
+            return new ArrayList<>();
+        }
+        String key = HistoryCache.vehicleKey(licensePlate.toUpperCase(Locale.ROOT));
+        lock.readLock().lock();
+        try {
+            RentalRecord[] cached = cache.get(key);
+            if (cached == null) {
+                cached = getRecordsForVehicle(licensePlate).toArray(new RentalRecord[0]);
+                cache.put(key, cached);
+            }
+            return new ArrayList<>(Arrays.asList(cached));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Hit, miss and eviction counts of the cache behind the two queries above
+    public HistoryCache getCache() {
+        return cache;
+    }
+
+    // Read-only view of every record for the plate, in insertion order
+    public List<RentalRecord> getRecordsForVehicle(String licensePlate) {
+        if (licensePlate == null) {
+            return Collections.emptyList();
+        }
+        if (!indexed) {
+            int plateCode = PlateCodec.encode(licensePlate);
+            return plateCode == PlateCodec.INVALID
+                    ? Collections.emptyList()
+                    : new RowView(new ScanSource(row -> store.plateCode(row) == plateCode));
+        }
+        String key = licensePlate.toUpperCase(Locale.ROOT);
+        return new RowView(new IndexSource(() -> rowsByPlate.get(key)));
+    }
+
+    // Read-only view of every record for the customer id, in insertion order
+    public List<RentalRecord> getRecordsForCustomer(int customerId) {
+        if (!indexed) {
+            return new RowView(new ScanSource(row -> store.customerId(row) == customerId));
+        }
+        return new RowView(new IndexSource(() -> rowsByCustomer.get(customerId)));
+    }
+
+    // Read-only view of records dated between from and to (both inclusive), ordered by date
+    public Collection<RentalRecord> getRecordsBetween(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return Collections.emptyList();
+        }
+        return new RangeView(from, to);
+    }
+
+    public enum SortKey { DATE, PLATE }
+
+    // One page of a findRecords query, with the number of records matching it in total
+    public static class Page {
+        private final List<RentalRecord> records;
+        private final int total;
+
+        Page(List<RentalRecord> records, int total) {
+            this.records = records;
+            this.total = total;
+        }
+
+        public List<RentalRecord> getRecords() {
+            return records;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    // Up to limit records for the plate dated between from and to (inclusive), sorted by
+    // the key with ties broken by insertion order, after skipping the first offset. Null filters
+    // match anything. Only the records on the page are materialized.
+    //
+    // Date-sorted queries without a plate walk the date index and stop once the page is
+    // full. Anything else is found and sorted as packed longs, and the sorted rows are kept
+    // until the history changes, so paging through the same query only sorts once.
+    public Page findRecords(String licensePlate, LocalDate from, LocalDate to, SortKey sort, boolean descending,
+                            int offset, int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return new Page(Collections.emptyList(), 0);
+        }
+        String plateKey = licensePlate == null ? null : licensePlate.toUpperCase(Locale.ROOT);
+        long fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        long toDay = to == null ? Long.MAX_VALUE : to.toEpochDay();
+        lock.readLock().lock();
+        try {
+            if (indexed && plateKey == null && sort == SortKey.DATE) {
+                return pageByDate(from, to, descending, offset, limit);
+            }
+            SortedRows sorted = lastSorted;
+            if (sorted == null || !sorted.answers(plateKey, fromDay, toDay, sort, generation, store.size())) {
+                sorted = sortRows(plateKey, fromDay, toDay, sort);
+                lastSorted = sorted;
+            }
+            long[] matches = sorted.matches;
+            int count = matches.length;
+            int first = Math.min(Math.max(offset, 0), count);
+            int pageSize = (int) Math.min(Math.max(limit, 0), (long) count - first);
+            List<RentalRecord> page = new ArrayList<>(pageSize);
+            for (int i = first; i < first + pageSize; i++) {
+                long match = descending ? matches[count - 1 - i] : matches[i];
+                page.add(store.get((int) match));
+            }
+            return new Page(page, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called with the read lock held. Only the page's rows are touched; the total is summed
+    // from the sizes of the days in range.
+    private Page pageByDate(LocalDate from, LocalDate to, boolean descending, int offset, int limit) {
+        NavigableMap<LocalDate, IntList> days = rowsByDate;
+        if (from != null) {
+            days = days.tailMap(from, true);
+        }
+        if (to != null) {
+            days = days.headMap(to, true);
+        }
+        if (descending) {
+            days = days.descendingMap();
+        }
+        int skip = Math.max(offset, 0);
+        int wanted = Math.max(limit, 0);
+        List<RentalRecord> page = new ArrayList<>(Math.min(wanted, 1024));
+        int total = 0;
+        for (IntList rows : days.values()) {
+            int size = rows.size();
+            total += size;
+            if (page.size() == wanted) {
+                continue;
+            }
+            if (skip >= size) {
+                skip -= size;
+                continue;
+            }
+            for (int i = skip; i < size && page.size() < wanted; i++) {
+                page.add(store.get(rows.get(descending ? size - 1 - i : i)));
+            }
+            skip = 0;
+        }
+        return new Page(page, total);
+    }
+
+    // Matching rows packed as sort key << 32 | row, in ascending order. Called with the read
+    // lock held.
+    private SortedRows sortRows(String plateKey, long fromDay, long toDay, SortKey sort) {
+        long[] matches = new long[16];
+        int count = 0;
+        IntList candidates = null;
+        int plateCode = PlateCodec.INVALID;
+        if (plateKey != null) {
+            if (indexed) {
+                candidates = rowsByPlate.get(plateKey);
+                if (candidates == null) {
+                    candidates = new IntList();
+                }
+            } else {
+                plateCode = PlateCodec.encode(plateKey);
+                if (plateCode == PlateCodec.INVALID) {
+                    candidates = new IntList();
+                }
+            }
+        }
+        int end = candidates == null ? store.size() : candidates.size();
+        for (int i = 0; i < end; i++) {
+            int row = candidates == null ? i : candidates.get(i);
+            if (plateCode != PlateCodec.INVALID && store.plateCode(row) != plateCode) {
+                continue;
+            }
+            long day = store.epochDay(row);
+            if (day < fromDay || day > toDay) {
+                continue;
+            }
+            if (count == matches.length) {
+                matches = Arrays.copyOf(matches, count << 1);
+            }
+            // Plate codes and days since 1970 both fit in the upper 32 bits
+            long key = sort == SortKey.PLATE ? store.plateCode(row) + 1 : day;
+            matches[count++] = key << 32 | row;
+        }
+        matches = Arrays.copyOf(matches, count);
+        Arrays.sort(matches);
+        return new SortedRows(plateKey, fromDay, toDay, sort, generation, store.size(), matches);
+    }
+
+    // A sorted findRecords result and the state of the history it was taken from
+    private static final class SortedRows {
+        final String plateKey;
+        final long fromDay;
+        final long toDay;
+        final SortKey sort;
+        final int generation;
+        final int size;
+        final long[] matches;
+
+        SortedRows(String plateKey, long fromDay, long toDay, SortKey sort, int generation, int size, long[] matches) {
+            this.plateKey = plateKey;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.sort = sort;
+            this.generation = generation;
+            this.size = size;
+            this.matches = matches;
+        }
+
+        boolean answers(String plateKey, long fromDay, long toDay, SortKey sort, int generation, int size) {
+            return Objects.equals(this.plateKey, plateKey) && this.fromDay == fromDay && this.toDay == toDay
+                    && this.sort == sort && this.generation == generation && this.size == size;
+        }
+    }
+
+    public interface RecordVisitor {
+        void visit(Vehicle vehicle, int customerId, long epochDay, double amount, String recordType);
+    }
+
+    // Visits every record's fields in insertion order without materializing RentalRecords.
+    // Holds the read lock throughout, so appends wait until the scan is done.
+    public void scan(RecordVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < store.size(); row++) {
+                visitor.visit(store.vehicle(row), store.customerId(row), store.epochDay(row), store.amount(row),
+                        store.recordType(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return store.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Row numbers behind a RowView; both methods are called with the read lock held
+    private interface RowSource {
+        int size();
+
+        int row(int index);
+    }
+
+    private interface RowFilter {
+        boolean matches(int row);
+    }
+
+    private interface IndexLookup {
+        // Null means no rows
+        IntList rows();
+    }
+
+    private static class IndexSource implements RowSource {
+        private final IndexLookup lookup;
+
+        IndexSource(IndexLookup lookup) {
+            this.lookup = lookup;
+        }
+
+        @Override
+        public int size() {
+            IntList rows = lookup.rows();
+            return rows == null ? 0 : rows.size();
+        }
+
+        @Override
+        public int row(int index) {
+            IntList rows = lookup.rows();
+            if (rows == null) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+            }
+            return rows.get(index);
+        }
+    }
+
+    // Finds matching rows by scanning the store. Rows appended since the last call are
+    // scanned incrementally, so the view stays live without rescanning everything.
+    private class ScanSource implements RowSource {
+        private final RowFilter filter;
+        private IntList rows = new IntList();
+        private int scanned;
+        private int scannedGeneration = generation;
+
+        ScanSource(RowFilter filter) {
+            this.filter = filter;
+        }
+
+        // Readers share the read lock, so catching up is synchronized on the source
+        private synchronized IntList catchUp() {
+            if (scannedGeneration != generation) {
+                rows = new IntList();
+                scanned = 0;
+                scannedGeneration = generation;
+            }
+            int size = store.size();
+            for (; scanned < size; scanned++) {
+                if (filter.matches(scanned)) {
+                    rows.add(scanned);
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public synchronized int size() {
+            return catchUp().size();
+        }
+
+        @Override
+        public synchronized int row(int index) {
+            return catchUp().get(index);
+        }
+    }
+
+    private class RowView extends AbstractList<RentalRecord> implements RandomAccess {
+        private final RowSource source;
+
+        RowView(RowSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public RentalRecord get(int index) {
+            lock.readLock().lock();
+            try {
+                return store.get(source.row(index));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            lock.readLock().lock();
+            try {
+                return source.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private class AllRowsView extends AbstractList<RentalRecord> implements RandomAccess {
+        @Override
+        public RentalRecord get(int index) {
+            lock.readLock().lock();
+            try {
+                return store.get(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return RentalHistory.this.size();
+        }
+    }
+
+    private class RangeView extends AbstractCollection<RentalRecord> {
+        private final LocalDate from;
+        private final LocalDate to;
+
+        RangeView(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        // The matching row numbers are captured up front so iteration is unaffected by
+        // concurrent appends; records themselves are only fetched as the caller advances
+        @Override
+        public Iterator<RentalRecord> iterator() {
+            IntList rows = new IntList();
+            lock.readLock().lock();
+            try {
+                if (indexed) {
+                    for (IntList dayRows : rowsByDate.subMap(from, true, to, true).values()) {
+                        for (int i = 0; i < dayRows.size(); i++) {
+                            rows.add(dayRows.get(i));
+                        }
+                    }
+                } else {
+                    for (long dayAndRow : scanByDate()) {
+                        rows.add((int) dayAndRow);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return new Iterator<RentalRecord>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return position < rows.size();
+                }
+
+                @Override
+                public RentalRecord next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int row = rows.get(position++);
+                    lock.readLock().lock();
+                    try {
+                        return store.get(row);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            lock.readLock().lock();
+            try {
+                if (!indexed) {
+                    return scanByDate().length;
+                }
+                int total = 0;
+                for (IntList rows : rowsByDate.subMap(from, true, to, true).values()) {
+                    total += rows.size();
+                }
+                return total;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Matching rows packed as epoch day << 32 | row, sorted by date then row
+        private long[] scanByDate() {
+            long fromDay = from.toEpochDay();
+            long toDay = to.toEpochDay();
+            long[] matches = new long[16];
+            int count = 0;
+            for (int row = 0; row < store.size(); row++) {
+                long day = store.epochDay(row);
+                if (day >= fromDay && day <= toDay) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count << 1);
+                    }
+                    matches[count++] = day << 32 | row;
+                }
             }
+            matches = Arrays.copyOf(matches, count);
+            Arrays.sort(matches);
+            return matches;
         }
-        return result;
     }
 }
\ No newline at end of file
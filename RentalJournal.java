@@ -0,0 +1,960 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+// Append-only binary journal of vehicle, customer and rental events.
+//
+// Each entry is laid out as [int length][int crc32][byte type][payload], where length
+// covers the type byte and payload. A torn entry at the end of the file (crash mid-write)
+// is detected on open and truncated away.
+//
+// Offsets handed out by position() and taken by replay() are logical: once a journal has
+// been compacted its file starts with a HEADER entry holding the logical offset of the
+// first entry that follows, so offsets stored in snapshots stay valid across compaction.
+public class RentalJournal implements Closeable {
+    public enum FsyncPolicy { EVERY_WRITE, INTERVAL, ON_CLOSE }
+
+    // Receives journal entries in file order during replay
+    public interface Listener {
+        void onVehicle(Vehicle vehicle);
+        void onCustomer(Customer customer);
+        void onRecord(String plate, int customerId, LocalDate date, double amount, String recordType);
+
+        default void onStatus(String plate, Vehicle.VehicleStatus status) { }
+
+        default void onReservation(long id, String plate, int customerId, LocalDate startDate, LocalDate endDate) { }
+
+        // The reservation was cancelled, picked up or expired
+        default void onReservationEnd(long id) { }
+
+        // When the vehicle was last serviced and how many rentals it has had since
+        default void onService(String plate, long lastServiceMillis, int rentalsSinceService) { }
+
+        // Only present in snapshot files, see writeSnapshot
+        default void onCheckpoint(long journalOffset, long archiveLength, long archivedThrough) { }
+
+        // Something was skipped while replaying: an unreadable entry, or entries compacted away
+        default void onWarning(String message) { }
+    }
+
+    static final byte VEHICLE = 1;
+    static final byte CUSTOMER = 2;
+    static final byte RECORD = 3;
+    static final byte STATUS = 4;
+    static final byte CHECKPOINT = 5;
+    static final byte HEADER = 6;
+    static final byte RESERVE = 7;
+    static final byte RESERVATION_END = 8;
+    static final byte SERVICE = 9;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int FILE_HEADER_SIZE = HEADER_SIZE + 1 + 8;
+    private static final int WRITE_CHUNK = 1 << 16;
+    private static final int MAX_ENTRY_SIZE = 1 << 20;
+    // Bounds on the size of one parallel replay chunk
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 26;
+
+    private static final byte RECORD_RENT = 0;
+    private static final byte RECORD_RETURN = 1;
+    private static final byte RECORD_OTHER = 2;
+
+    private final Path file;
+    private FileChannel channel;
+    // Logical offset of the first entry after the file header, and that header's size
+    private long baseOffset;
+    private int fileHeaderSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final ScheduledExecutorService syncer;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private boolean dirty;
+    private boolean closed;
+    // Times writes and fsyncs when set
+    private RentalMetrics metrics;
+    // Hears about background fsync failures when set
+    private RentalEventBus events;
+
+    public RentalJournal(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this(file, fsyncPolicy, fsyncIntervalMillis, replay(file, 0, null));
+    }
+
+    private RentalJournal(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long validEnd) throws IOException {
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        readFileHeader();
+        long physicalEnd = validEnd - baseOffset + fileHeaderSize;
+        if (physicalEnd < channel.size()) {
+            channel.truncate(physicalEnd);
+        }
+        channel.position(physicalEnd);
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rental-journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncIfDirty, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    // Replays the journal from the logical offset into the listener, then opens it for appending
+    public static RentalJournal open(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                                     long fromOffset, Listener listener) throws IOException {
+        long validEnd = replay(file, fromOffset, listener);
+        return new RentalJournal(file, fsyncPolicy, fsyncIntervalMillis, validEnd);
+    }
+
+    // Opens a journal the caller has already replayed up to the logical offset validEnd,
+    // e.g. with replayParallel, truncating anything after it
+    public static RentalJournal openReplayed(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                                             long validEnd) throws IOException {
+        return new RentalJournal(file, fsyncPolicy, fsyncIntervalMillis, validEnd);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Logical offset at which the next entry will be written
+    public synchronized long position() throws IOException {
+        return channel.position() - fileHeaderSize + baseOffset;
+    }
+
+    public synchronized void appendVehicle(Vehicle vehicle) throws IOException {
+        buffer.clear();
+        int start = beginEntry(VEHICLE);
+        encodeVehicle(vehicle);
+        endEntry(start);
+        flush();
+    }
+
+    public synchronized void appendCustomer(Customer customer) throws IOException {
+        buffer.clear();
+        int start = beginEntry(CUSTOMER);
+        encodeCustomer(customer);
+        endEntry(start);
+        flush();
+    }
+
+    // Writes a bulk import as one append, flushed once
+    public synchronized void appendVehicles(Collection<Vehicle> vehicles) throws IOException {
+        buffer.clear();
+        for (Vehicle vehicle : vehicles) {
+            int start = beginEntry(VEHICLE);
+            encodeVehicle(vehicle);
+            endEntry(start);
+            writeBufferIfFull();
+        }
+        flush();
+    }
+
+    public synchronized void appendCustomers(Collection<Customer> customers) throws IOException {
+        buffer.clear();
+        for (Customer customer : customers) {
+            int start = beginEntry(CUSTOMER);
+            encodeCustomer(customer);
+            endEntry(start);
+            writeBufferIfFull();
+        }
+        flush();
+    }
+
+    public synchronized void appendRecord(RentalRecord record) throws IOException {
+        buffer.clear();
+        int start = beginEntry(RECORD);
+        encodeRecord(record);
+        endEntry(start);
+        flush();
+    }
+
+    public synchronized void appendStatus(Vehicle vehicle) throws IOException {
+        buffer.clear();
+        int start = beginEntry(STATUS);
+        encodeStatus(vehicle, vehicle.getStatus());
+        endEntry(start);
+        flush();
+    }
+
+    // A status change along with the service state it leaves the vehicle in, in one write
+    public synchronized void appendStatus(Vehicle vehicle, long lastServiceMillis, int rentalsSinceService)
+            throws IOException {
+        appendStatus(vehicle, vehicle.getStatus(), lastServiceMillis, rentalsSinceService);
+    }
+
+    // Same, with the status as it was when the change was made rather than as it is now
+    public synchronized void appendStatus(Vehicle vehicle, Vehicle.VehicleStatus status, long lastServiceMillis,
+                                          int rentalsSinceService) throws IOException {
+        buffer.clear();
+        int start = beginEntry(STATUS);
+        encodeStatus(vehicle, status);
+        endEntry(start);
+        start = beginEntry(SERVICE);
+        encodeService(vehicle, lastServiceMillis, rentalsSinceService);
+        endEntry(start);
+        flush();
+    }
+
+    public synchronized void appendReservation(Reservation reservation) throws IOException {
+        buffer.clear();
+        int start = beginEntry(RESERVE);
+        encodeReservation(reservation);
+        endEntry(start);
+        flush();
+    }
+
+    public synchronized void appendReservationEnd(long id) throws IOException {
+        buffer.clear();
+        int start = beginEntry(RESERVATION_END);
+        ensureCapacity(8);
+        buffer.putLong(id);
+        endEntry(start);
+        flush();
+    }
+
+    // Writes all records with a single channel write. Does not fsync; callers that
+    // need the batch durable follow up with sync().
+    public synchronized void appendRecords(List<RentalRecord> records) throws IOException {
+        buffer.clear();
+        for (RentalRecord record : records) {
+            int start = beginEntry(RECORD);
+            encodeRecord(record);
+            endEntry(start);
+        }
+        writeBuffer();
+        dirty = true;
+    }
+
+    // Writes a snapshot of the current state to file, replacing any previous snapshot
+    // atomically. The snapshot is itself a journal: a CHECKPOINT entry, then every
+    // vehicle followed by its status and service state, then every customer, then every
+    // open reservation. The service state is left out when maintenance is null.
+    public static void writeSnapshot(Path file, long journalOffset, long archiveLength, long archivedThrough,
+                                     Iterable<Vehicle> vehicles, Iterable<Customer> customers,
+                                     Iterable<Reservation> reservations, MaintenanceScheduler maintenance)
+            throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(tmp);
+        try (RentalJournal snapshot = new RentalJournal(tmp, FsyncPolicy.ON_CLOSE, 0)) {
+            snapshot.writeSnapshotEntries(journalOffset, archiveLength, archivedThrough, vehicles, customers,
+                    reservations, maintenance);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void writeSnapshotEntries(long journalOffset, long archiveLength, long archivedThrough,
+                                                   Iterable<Vehicle> vehicles, Iterable<Customer> customers,
+                                                   Iterable<Reservation> reservations,
+                                                   MaintenanceScheduler maintenance) throws IOException {
+        buffer.clear();
+        int start = beginEntry(CHECKPOINT);
+        ensureCapacity(24);
+        buffer.putLong(journalOffset);
+        buffer.putLong(archiveLength);
+        buffer.putLong(archivedThrough);
+        endEntry(start);
+        for (Vehicle vehicle : vehicles) {
+            start = beginEntry(VEHICLE);
+            encodeVehicle(vehicle);
+            endEntry(start);
+            start = beginEntry(STATUS);
+            encodeStatus(vehicle, vehicle.getStatus());
+            endEntry(start);
+            if (maintenance != null) {
+                start = beginEntry(SERVICE);
+                encodeService(vehicle, maintenance.getLastService(vehicle), maintenance.getRentalsSinceService(vehicle));
+                endEntry(start);
+            }
+            writeBufferIfFull();
+        }
+        for (Customer customer : customers) {
+            start = beginEntry(CUSTOMER);
+            encodeCustomer(customer);
+            endEntry(start);
+            writeBufferIfFull();
+        }
+        for (Reservation reservation : reservations) {
+            start = beginEntry(RESERVE);
+            encodeReservation(reservation);
+            endEntry(start);
+            writeBufferIfFull();
+        }
+        writeBuffer();
+        dirty = true;
+    }
+
+    // Appends the RECORD entries of source whose logical offsets fall in [from, to),
+    // copying the encoded bytes as they are. Returns this journal's new position.
+    public synchronized long copyRecords(Path source, long from, long to) throws IOException {
+        buffer.clear();
+        scan(source, from, null, (offset, type, frame, payload) -> {
+            if (offset >= to) {
+                return false;
+            }
+            if (type == RECORD) {
+                ensureCapacity(frame.remaining());
+                buffer.put(frame);
+                writeBufferIfFull();
+            }
+            return true;
+        });
+        writeBuffer();
+        dirty = true;
+        return position();
+    }
+
+    // Drops everything before the logical offset from the file. The remaining entries keep
+    // their logical offsets. Appends are blocked while the file is rewritten.
+    public synchronized void compactTo(long offset) throws IOException {
+        long end = position();
+        if (offset <= baseOffset) {
+            return;
+        }
+        if (offset > end) {
+            throw new IllegalArgumentException("Cannot compact past the end of the journal: " + offset + " > " + end);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            int start = beginEntry(HEADER);
+            buffer.putLong(offset);
+            endEntry(start);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+            long from = offset - baseOffset + fileHeaderSize;
+            long to = channel.position();
+            while (from < to) {
+                from += channel.transferTo(from, to - from, out);
+            }
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        readFileHeader();
+        channel.position(channel.size());
+        dirty = false;
+    }
+
+    // Cuts the journal back to the logical offset, discarding anything after it
+    public synchronized void truncate(long offset) throws IOException {
+        long physical = offset - baseOffset + fileHeaderSize;
+        if (physical < channel.size()) {
+            channel.truncate(physical);
+            channel.position(physical);
+            channel.force(false);
+        }
+    }
+
+    public synchronized void setMetrics(RentalMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public synchronized void setEvents(RentalEventBus events) {
+        this.events = events;
+    }
+
+    // Forces everything written so far to disk, regardless of the fsync policy
+    public synchronized void sync() throws IOException {
+        force();
+        dirty = false;
+    }
+
+    private void force() throws IOException {
+        long start = RentalMetrics.start();
+        channel.force(false);
+        if (metrics != null) {
+            metrics.record(RentalMetrics.Operation.JOURNAL_FSYNC, start);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private synchronized void syncIfDirty() {
+        if (dirty && !closed) {
+            try {
+                sync();
+            } catch (IOException e) {
+                if (events != null) {
+                    events.persistenceError("Error syncing journal", e);
+                }
+            }
+        }
+    }
+
+    // Entry framing into the shared write buffer
+
+    private int beginEntry(byte type) {
+        ensureCapacity(HEADER_SIZE + 1);
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.put(type);
+        return start;
+    }
+
+    private void endEntry(int start) {
+        int end = buffer.position();
+        int length = end - start - HEADER_SIZE;
+        crc.reset();
+        crc.update(buffer.array(), start + HEADER_SIZE, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void flush() throws IOException {
+        long start = RentalMetrics.start();
+        writeBuffer();
+        if (metrics != null) {
+            metrics.record(RentalMetrics.Operation.JOURNAL_WRITE, start);
+        }
+        if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+            force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeBufferIfFull() throws IOException {
+        if (buffer.position() >= WRITE_CHUNK) {
+            writeBuffer();
+        }
+    }
+
+    // Reads the optional HEADER entry at the start of the file
+    private void readFileHeader() throws IOException {
+        long[] header = readFileHeader(channel);
+        baseOffset = header[0];
+        fileHeaderSize = (int) header[1];
+    }
+
+    private static long[] readFileHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        while (header.hasRemaining() && in.read(header, header.position()) > 0) {
+            // keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() == FILE_HEADER_SIZE && header.getInt(0) == 9 && header.get(HEADER_SIZE) == HEADER) {
+            CRC32 check = new CRC32();
+            check.update(header.array(), HEADER_SIZE, 9);
+            if ((int) check.getValue() == header.getInt(4)) {
+                return new long[] {header.getLong(HEADER_SIZE + 1), FILE_HEADER_SIZE};
+            }
+        }
+        return new long[] {0, 0};
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffer.remaining() < extra) {
+            int needed = buffer.position() + extra;
+            int capacity = buffer.capacity();
+            while (capacity < needed) {
+                capacity <<= 1;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureCapacity(2);
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for journal: " + bytes.length + " bytes");
+        }
+        ensureCapacity(2 + bytes.length);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void encodeVehicle(Vehicle vehicle) {
+        putString(vehicle.getClass().getSimpleName());
+        putString(vehicle.getLicensePlate());
+        putString(vehicle.getMake());
+        putString(vehicle.getModel());
+        ensureCapacity(4 + 4 + 4 + 1);
+        buffer.putInt(vehicle.getYear());
+        if (vehicle instanceof SportCar) {
+            SportCar sportCar = (SportCar) vehicle;
+            buffer.putInt(sportCar.getNumSeats());
+            buffer.putInt(sportCar.getHorsepower());
+            buffer.put((byte) (sportCar.hasTurbo() ? 1 : 0));
+        } else if (vehicle instanceof Car) {
+            buffer.putInt(((Car) vehicle).getNumSeats());
+        } else if (vehicle instanceof Motorcycle) {
+            buffer.put((byte) (((Motorcycle) vehicle).hasSidecar() ? 1 : 0));
+        } else if (vehicle instanceof Truck) {
+            ensureCapacity(8);
+            buffer.putDouble(((Truck) vehicle).getCargoCapacity());
+        }
+    }
+
+    private void encodeStatus(Vehicle vehicle, Vehicle.VehicleStatus status) {
+        putString(vehicle.getLicensePlate());
+        ensureCapacity(1);
+        buffer.put((byte) status.ordinal());
+    }
+
+    private void encodeService(Vehicle vehicle, long lastServiceMillis, int rentalsSinceService) {
+        putString(vehicle.getLicensePlate());
+        ensureCapacity(8 + 4);
+        buffer.putLong(lastServiceMillis);
+        buffer.putInt(rentalsSinceService);
+    }
+
+    private void encodeCustomer(Customer customer) {
+        ensureCapacity(4);
+        buffer.putInt(customer.getCustomerId());
+        putString(customer.getCustomerName());
+    }
+
+    private void encodeReservation(Reservation reservation) {
+        ensureCapacity(8);
+        buffer.putLong(reservation.getId());
+        putString(reservation.getVehicle().getLicensePlate());
+        ensureCapacity(4 + 8 + 8);
+        buffer.putInt(reservation.getCustomer().getCustomerId());
+        buffer.putLong(reservation.getStartDate().toEpochDay());
+        buffer.putLong(reservation.getEndDate().toEpochDay());
+    }
+
+    private void encodeRecord(RentalRecord record) {
+        putString(record.getVehicle().getLicensePlate());
+        ensureCapacity(4 + 8 + 8 + 1);
+        buffer.putInt(record.getCustomer().getCustomerId());
+        buffer.putLong(record.getRecordDate().toEpochDay());
+        buffer.putDouble(record.getTotalAmount());
+        String type = record.getRecordType();
+        if ("RENT".equals(type)) {
+            buffer.put(RECORD_RENT);
+        } else if ("RETURN".equals(type)) {
+            buffer.put(RECORD_RETURN);
+        } else {
+            buffer.put(RECORD_OTHER);
+            putString(type);
+        }
+    }
+
+    // Reading
+
+    // Replays entries starting at the logical offset fromOffset and returns the logical
+    // offset just past the last intact entry. A null listener only validates the file.
+    public static long replay(Path file, long fromOffset, Listener listener) throws IOException {
+        return replay(file, fromOffset, Long.MAX_VALUE, listener);
+    }
+
+    // Same as above, but stops before the first entry at or past toOffset
+    public static long replay(Path file, long fromOffset, long toOffset, Listener listener) throws IOException {
+        return scan(file, fromOffset, listener, (offset, type, frame, payload) -> {
+            if (offset >= toOffset) {
+                return false;
+            }
+            if (listener != null) {
+                try {
+                    decode(type, payload, listener);
+                } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    listener.onWarning(unreadable(offset, e));
+                }
+            }
+            return true;
+        });
+    }
+
+    // Replays the entries from fromOffset in parallel. The entries are split into chunks of
+    // whole entries; each chunk is CRC-checked and decoded on the pool into its own listener
+    // from the factory. As with replay, everything from the first damaged entry on is
+    // dropped, so the listeners returned may cover less than the whole file.
+    public static <L extends Listener> ParallelReplay<L> replayParallel(Path file, long fromOffset, ForkJoinPool pool,
+                                                                        Supplier<L> listeners) throws IOException {
+        List<ChunkTask<L>> tasks = new ArrayList<>();
+        String compacted = null;
+        if (Files.exists(file)) {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                long[] header = readFileHeader(in);
+                long base = header[0];
+                long headerSize = header[1];
+                if (fromOffset < base) {
+                    compacted = compactedAway(base);
+                    fromOffset = base;
+                }
+                long start = fromOffset - base + headerSize;
+                long chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, (in.size() - start) / (4L * pool.getParallelism())));
+                for (long[] chunk : splitIntoChunks(in, start, chunkSize)) {
+                    tasks.add(new ChunkTask<>(file, chunk[0], chunk[1], chunk[0] - headerSize + base, listeners.get()));
+                }
+            }
+        }
+        if (compacted != null && !tasks.isEmpty()) {
+            tasks.get(0).listener.onWarning(compacted);
+        }
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<L> chunks = new ArrayList<>();
+        long end = fromOffset;
+        for (ChunkTask<L> task : tasks) {
+            chunks.add(task.listener);
+            end = task.validEnd;
+            if (task.damaged) {
+                break;
+            }
+        }
+        return new ParallelReplay<>(chunks, end);
+    }
+
+    public static class ParallelReplay<L extends Listener> {
+        private final List<L> listeners;
+        private final long end;
+
+        ParallelReplay(List<L> listeners, long end) {
+            this.listeners = listeners;
+            this.end = end;
+        }
+
+        // One listener per chunk, in file order
+        public List<L> getListeners() {
+            return listeners;
+        }
+
+        // Logical offset just past the last intact entry
+        public long getEnd() {
+            return end;
+        }
+    }
+
+    // Walks the entry lengths from the physical position start and cuts the file into
+    // [start, end) ranges of whole entries, each at least chunkSize long except the last.
+    // Stops at the first entry whose length is implausible or runs past the end of the file.
+    private static List<long[]> splitIntoChunks(FileChannel in, long start, long chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = in.size();
+        in.position(start);
+        ByteBuffer window = ByteBuffer.allocate(1 << 20);
+        window.flip();
+        long position = start;
+        long chunkStart = start;
+        while (fill(in, window, HEADER_SIZE)) {
+            int length = window.getInt(window.position());
+            if (length <= 0 || length > MAX_ENTRY_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            int frameLength = HEADER_SIZE + length;
+            if (window.remaining() >= frameLength) {
+                window.position(window.position() + frameLength);
+            } else {
+                in.position(in.position() + frameLength - window.remaining());
+                window.position(window.limit());
+            }
+            position += frameLength;
+            if (position - chunkStart >= chunkSize) {
+                chunks.add(new long[] {chunkStart, position});
+                chunkStart = position;
+            }
+        }
+        if (position > chunkStart) {
+            chunks.add(new long[] {chunkStart, position});
+        }
+        return chunks;
+    }
+
+    private static class ChunkTask<L extends Listener> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final long physicalStart;
+        private final long physicalEnd;
+        private final long logicalStart;
+        final L listener;
+        long validEnd;
+        boolean damaged;
+
+        ChunkTask(Path file, long physicalStart, long physicalEnd, long logicalStart, L listener) {
+            this.file = file;
+            this.physicalStart = physicalStart;
+            this.physicalEnd = physicalEnd;
+            this.logicalStart = logicalStart;
+            this.listener = listener;
+        }
+
+        @Override
+        protected void compute() {
+            ByteBuffer chunk = ByteBuffer.allocate((int) (physicalEnd - physicalStart));
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (chunk.hasRemaining()) {
+                    if (in.read(chunk, physicalStart + chunk.position()) < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunk.flip();
+            CRC32 check = new CRC32();
+            long offset = logicalStart;
+            while (chunk.remaining() >= HEADER_SIZE) {
+                int frameStart = chunk.position();
+                int length = chunk.getInt(frameStart);
+                int expectedCrc = chunk.getInt(frameStart + 4);
+                if (length <= 0 || chunk.remaining() < HEADER_SIZE + length) {
+                    damaged = true;
+                    break;
+                }
+                check.reset();
+                check.update(chunk.array(), frameStart + HEADER_SIZE, length);
+                if ((int) check.getValue() != expectedCrc) {
+                    damaged = true;
+                    break;
+                }
+                byte type = chunk.get(frameStart + HEADER_SIZE);
+                ByteBuffer payload = chunk.slice(frameStart + HEADER_SIZE + 1, length - 1);
+                try {
+                    decode(type, payload, listener);
+                } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    listener.onWarning(unreadable(offset, e));
+                }
+                chunk.position(frameStart + HEADER_SIZE + length);
+                offset += HEADER_SIZE + length;
+            }
+            validEnd = offset;
+        }
+    }
+
+    private static String unreadable(long offset, RuntimeException e) {
+        return "Skipping unreadable journal entry at " + offset + ": " + e.getMessage();
+    }
+
+    private static String compactedAway(long base) {
+        return "Journal entries before offset " + base + " were compacted away; replaying from there.";
+    }
+
+    private interface EntryVisitor {
+        // frame spans the whole entry including its header, payload starts after the type byte.
+        // Returning false stops the scan.
+        boolean visit(long offset, byte type, ByteBuffer frame, ByteBuffer payload) throws IOException;
+    }
+
+    // Warnings go to the listener, if there is one
+    private static long scan(Path file, long fromOffset, Listener listener, EntryVisitor visitor) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] header = readFileHeader(in);
+            long base = header[0];
+            long headerSize = header[1];
+            if (fromOffset < base) {
+                if (listener != null) {
+                    listener.onWarning(compactedAway(base));
+                }
+                fromOffset = base;
+            }
+            in.position(fromOffset - base + headerSize);
+            ByteBuffer window = ByteBuffer.allocate(1 << 16);
+            window.flip();
+            long offset = fromOffset;
+            CRC32 check = new CRC32();
+            while (true) {
+                if (!fill(in, window, HEADER_SIZE)) {
+                    return offset;
+                }
+                int frameStart = window.position();
+                int length = window.getInt(frameStart);
+                int expectedCrc = window.getInt(frameStart + 4);
+                if (length <= 0 || length > MAX_ENTRY_SIZE) {
+                    return offset;
+                }
+                int frameLength = HEADER_SIZE + length;
+                if (window.capacity() < frameLength) {
+                    ByteBuffer bigger = ByteBuffer.allocate(Integer.highestOneBit(frameLength) << 1);
+                    bigger.put(window);
+                    bigger.flip();
+                    window = bigger;
+                    frameStart = 0;
+                }
+                if (!fill(in, window, frameLength)) {
+                    return offset;
+                }
+                frameStart = window.position();
+                check.reset();
+                check.update(window.array(), window.arrayOffset() + frameStart + HEADER_SIZE, length);
+                if ((int) check.getValue() != expectedCrc) {
+                    return offset;
+                }
+                ByteBuffer frame = window.slice();
+                frame.limit(frameLength);
+                ByteBuffer payload = window.slice();
+                payload.position(HEADER_SIZE + 1).limit(frameLength);
+                payload = payload.slice();
+                byte type = window.get(frameStart + HEADER_SIZE);
+                window.position(frameStart + frameLength);
+                if (!visitor.visit(offset, type, frame, payload)) {
+                    return offset;
+                }
+                offset += frameLength;
+            }
+        }
+    }
+
+    // Makes sure at least n bytes are readable in window, compacting and reading more if needed
+    private static boolean fill(FileChannel in, ByteBuffer window, int n) throws IOException {
+        if (window.remaining() >= n) {
+            return true;
+        }
+        window.compact();
+        while (window.position() < n) {
+            if (in.read(window) < 0) {
+                window.flip();
+                return false;
+            }
+        }
+        window.flip();
+        return true;
+    }
+
+    private static void decode(byte type, ByteBuffer entry, Listener listener) {
+        switch (type) {
+            case VEHICLE:
+                Vehicle vehicle = decodeVehicle(entry);
+                if (vehicle != null) {
+                    listener.onVehicle(vehicle);
+                }
+                break;
+            case CUSTOMER:
+                int id = entry.getInt();
+                listener.onCustomer(new Customer(id, getString(entry)));
+                break;
+            case RECORD:
+                String plate = getString(entry);
+                int customerId = entry.getInt();
+                LocalDate date = LocalDate.ofEpochDay(entry.getLong());
+                double amount = entry.getDouble();
+                byte kind = entry.get();
+                String recordType = kind == RECORD_RENT ? "RENT" : kind == RECORD_RETURN ? "RETURN" : getString(entry);
+                listener.onRecord(plate, customerId, date, amount, recordType);
+                break;
+            case STATUS:
+                String statusPlate = getString(entry);
+                listener.onStatus(statusPlate, Vehicle.VehicleStatus.values()[entry.get()]);
+                break;
+            case CHECKPOINT:
+                listener.onCheckpoint(entry.getLong(), entry.getLong(), entry.getLong());
+                break;
+            case RESERVE:
+                long reservationId = entry.getLong();
+                String reservedPlate = getString(entry);
+                int reservedBy = entry.getInt();
+                LocalDate startDate = LocalDate.ofEpochDay(entry.getLong());
+                listener.onReservation(reservationId, reservedPlate, reservedBy, startDate,
+                        LocalDate.ofEpochDay(entry.getLong()));
+                break;
+            case RESERVATION_END:
+                listener.onReservationEnd(entry.getLong());
+                break;
+            case SERVICE:
+                String servicedPlate = getString(entry);
+                long lastServiceMillis = entry.getLong();
+                listener.onService(servicedPlate, lastServiceMillis, entry.getInt());
+                break;
+            default:
+                // Unknown entry types are skipped so older readers tolerate newer journals
+                break;
+        }
+    }
+
+    private static Vehicle decodeVehicle(ByteBuffer entry) {
+        String type = getString(entry);
+        String plate = getString(entry);
+        String make = getString(entry);
+        String model = getString(entry);
+        int year = entry.getInt();
+        Vehicle vehicle;
+        switch (type) {
+            case "Car":
+                vehicle = new Car(make, model, year, entry.getInt());
+                break;
+            case "SportCar":
+                vehicle = new SportCar(make, model, year, entry.getInt(), entry.getInt(), entry.get() != 0);
+                break;
+            case "Motorcycle":
+                vehicle = new Motorcycle(make, model, year, entry.get() != 0);
+                break;
+            case "Truck":
+                vehicle = new Truck(make, model, year, entry.getDouble());
+                break;
+            default:
+                return null;
+        }
+        vehicle.setLicensePlate(plate);
+        return vehicle;
+    }
+
+    private static String getString(ByteBuffer entry) {
+        short length = entry.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        entry.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
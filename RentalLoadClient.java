@@ -0,0 +1,141 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Load generator for RentalServer: opens N connections that each send a mix of RENT,
+// RETURN and AVAILABLE requests, then reports requests/sec and latency percentiles.
+//
+// Usage: java RentalLoadClient [host] [port] [connections] [requestsPerConnection] [vehicles]
+public class RentalLoadClient {
+    private static final int CUSTOMER_BASE = 900000;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : RentalServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        int vehicles = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        seed(host, port, connections, vehicles);
+
+        ExecutorService pool = RentalServer.newConnectionExecutor();
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int customerId = CUSTOMER_BASE + c;
+            results.add(pool.submit(() -> run(host, port, customerId, requests, vehicles)));
+        }
+        long[] latencies = new long[connections * requests];
+        int n = 0;
+        for (Future<long[]> result : results) {
+            long[] part = result.get();
+            System.arraycopy(part, 0, latencies, n, part.length);
+            n += part.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("%d requests over %d connections in %.2f s: %.0f req/s%n",
+                n, connections, elapsed / 1e9, n / (elapsed / 1e9));
+        System.out.printf("latency p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus%n",
+                percentile(latencies, n, 0.50), percentile(latencies, n, 0.99),
+                percentile(latencies, n, 0.999), latencies[n - 1] / 1000.0);
+    }
+
+    // Makes sure the customers and vehicles the load refers to exist
+    private static void seed(String host, int port, int connections, int vehicles) throws IOException {
+        try (Connection conn = new Connection(host, port)) {
+            for (int c = 0; c < connections; c++) {
+                conn.request("ADD_CUSTOMER " + (CUSTOMER_BASE + c) + " Load Client " + c);
+            }
+            for (int v = 0; v < vehicles; v++) {
+                conn.request("ADD_VEHICLE Car " + plate(v) + " Load Test 2024 5");
+            }
+        }
+    }
+
+    private static long[] run(String host, int port, int customerId, int requests, int vehicles) throws IOException {
+        long[] latencies = new long[requests];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (Connection conn = new Connection(host, port)) {
+            for (int i = 0; i < requests; i++) {
+                int pick = random.nextInt(10);
+                String request;
+                if (pick < 4) {
+                    request = "RENT " + plate(random.nextInt(vehicles)) + " " + customerId + " 50";
+                } else if (pick < 8) {
+                    request = "RETURN " + plate(random.nextInt(vehicles)) + " " + customerId + " 0";
+                } else {
+                    request = "AVAILABLE 0 20";
+                }
+                long begin = System.nanoTime();
+                conn.request(request);
+                latencies[i] = System.nanoTime() - begin;
+            }
+        }
+        return latencies;
+    }
+
+    private static String plate(int n) {
+        return "L" + (char) ('A' + (n / 1000) % 26) + "T" + String.format("%03d", n % 1000);
+    }
+
+    private static double percentile(long[] sorted, int n, double p) {
+        int index = (int) Math.min(n - 1, Math.ceil(p * n) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    private static class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        // Sends one request and reads the whole response, returning its first line
+        String request(String line) throws IOException {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            String status = in.readLine();
+            if (status == null) {
+                throw new IOException("Server closed the connection");
+            }
+            if (status.startsWith("OK ")) {
+                String count = status.substring(3);
+                if (!count.isEmpty() && count.chars().allMatch(Character::isDigit)) {
+                    int rows = Integer.parseInt(count);
+                    for (int i = 0; i < rows; i++) {
+                        in.readLine();
+                    }
+                }
+            }
+            return status;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write("QUIT\n");
+            out.flush();
+            in.readLine();
+            socket.close();
+        }
+    }
+}
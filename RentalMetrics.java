@@ -0,0 +1,109 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Call counts, failure counts and latency histograms for each RentalSystem operation and
+// each journal call. Timed code does
+//
+//     long start = RentalMetrics.start();
+//     ...
+//     metrics.record(RentalMetrics.Operation.RENT, start, rented);
+//
+// Setting rental.metrics=false turns all of it off. ENABLED is a static final, so the JIT
+// folds the checks away and nothing is timed or recorded.
+public class RentalMetrics {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("rental.metrics", "true"));
+
+    public enum Operation {
+        RENT, RETURN, RESERVE, SAVE_RECORD, LOAD_DATA, SNAPSHOT,
+        FIND_VEHICLE, FIND_CUSTOMER, SEARCH_CUSTOMERS, FIND_AVAILABLE,
+        JOURNAL_WRITE, JOURNAL_FSYNC;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p999"};
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] failures = new LongAdder[Operation.values().length];
+
+    public RentalMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public void record(Operation operation, long start) {
+        if (ENABLED) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    // Failed calls are timed like the rest and also counted separately
+    public void record(Operation operation, long start, boolean succeeded) {
+        if (ENABLED) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+            if (!succeeded) {
+                failures[operation.ordinal()].increment();
+            }
+        }
+    }
+
+    public LatencyHistogram.Snapshot getLatency(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    public long getFailures(Operation operation) {
+        return failures[operation.ordinal()].sum();
+    }
+
+    // One line per operation that has run, with latencies in microseconds
+    public String toText() {
+        StringBuilder text = new StringBuilder(String.format("%-17s %9s %7s %9s", "operation", "count", "failed", "mean"));
+        for (String label : PERCENTILE_LABELS) {
+            text.append(String.format(" %9s", label));
+        }
+        text.append(String.format(" %9s%n", "max"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot latency = getLatency(operation);
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format(Locale.ROOT, "%-17s %9d %7d %9.1f", operation.label, latency.getCount(),
+                    getFailures(operation), latency.getMeanNanos() / 1000));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.ROOT, " %9.1f", latency.getPercentileNanos(percentile) / 1000.0));
+            }
+            text.append(String.format(Locale.ROOT, " %9.1f%n", latency.getMaxNanos() / 1000.0));
+        }
+        return text.toString();
+    }
+
+    // A single JSON object keyed by operation, with latencies in microseconds
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot latency = getLatency(operation);
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(operation.label).append("\":{\"count\":").append(latency.getCount())
+                    .append(",\"failed\":").append(getFailures(operation))
+                    .append(String.format(Locale.ROOT, ",\"meanMicros\":%.1f", latency.getMeanNanos() / 1000));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                json.append(String.format(Locale.ROOT, ",\"%sMicros\":%.1f", PERCENTILE_LABELS[i],
+                        latency.getPercentileNanos(PERCENTILES[i]) / 1000.0));
+            }
+            json.append(String.format(Locale.ROOT, ",\"maxMicros\":%.1f}", latency.getMaxNanos() / 1000.0));
+        }
+        return json.append('}').toString();
+    }
+}
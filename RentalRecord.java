@@ -22,12 +22,26 @@ public class RentalRecord {
     public Vehicle getVehicle(){
     	return vehicle;
     }
+
+    public LocalDate getRecordDate(){
+    	return recordDate;
+    }
+
+    public double getTotalAmount(){
+    	return totalAmount;
+    }
+
+    public String getRecordType(){
+    	return recordType;
+    }
     
     @Override
     public String toString() {
-        return recordType + " | Plate: " + vehicle.getLicensePlate() + 
-               " | Customer: " + customer.getCustomerName() + 
-               " | Date: " + recordDate + 
-               " | Amount: $" + totalAmount;
+        return new StringBuilder(80).append(recordType)
+                .append(" | Plate: ").append(vehicle.getLicensePlate())
+                .append(" | Customer: ").append(customer.getCustomerName())
+                .append(" | Date: ").append(recordDate)
+                .append(" | Amount: $").append(totalAmount)
+                .toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+// Parser for the legacy rental_records.txt format (plate,customerId,yyyy-mm-dd,amount,type).
+// The file is memory-mapped and scanned byte by byte: numbers and dates are parsed in
+// place, plates come out as PlateCodec codes, dates are shared per distinct day and the
+// usual RENT/RETURN types are constants, so a well-formed line allocates nothing.
+//
+// Lines that don't have exactly five well-formed fields are skipped and counted.
+// Not thread-safe; use one parser per thread.
+public class RentalRecordParser {
+    public interface Handler {
+        void onRecord(int plateCode, int customerId, LocalDate date, double amount, String recordType);
+    }
+
+    public static final String RENT = "RENT";
+    public static final String RETURN = "RETURN";
+
+    // Mapped window size; lines straddling a window boundary are picked up by the next one
+    private static final int WINDOW = 1 << 28;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[MAX_FAST_DIGITS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Keyed by yyyymmdd
+    private final IntObjectMap<LocalDate> dates = new IntObjectMap<>();
+    private long parsedRecords;
+    private long skippedLines;
+
+    // Scratch state for the line being parsed
+    private ByteBuffer bytes;
+    private int lineEnd;
+    private boolean malformed;
+
+    public void parse(Path file, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            while (offset < size) {
+                int length = (int) Math.min(WINDOW, size - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                int consumed = parse(window, 0, length, offset + length == size, handler);
+                if (consumed == 0) {
+                    throw new IOException("Line longer than " + WINDOW + " bytes at offset " + offset + " in " + file);
+                }
+                offset += consumed;
+            }
+        }
+    }
+
+    // Parses the complete lines in [from, to) and returns the number of bytes consumed.
+    // A trailing line without a newline is only parsed when atEnd is set.
+    public int parse(ByteBuffer buffer, int from, int to, boolean atEnd, Handler handler) {
+        bytes = buffer;
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(lineStart, i, handler);
+                lineStart = i + 1;
+            }
+        }
+        if (atEnd && lineStart < to) {
+            parseLine(lineStart, to, handler);
+            lineStart = to;
+        }
+        bytes = null;
+        return lineStart - from;
+    }
+
+    public long getParsedRecords() {
+        return parsedRecords;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    private void parseLine(int start, int end, Handler handler) {
+        if (end > start && bytes.get(end - 1) == '\r') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        lineEnd = end;
+        malformed = false;
+
+        int plateEnd = fieldEnd(start);
+        int plateCode = PlateCodec.encode(bytes, start, plateEnd);
+        int customerEnd = fieldEnd(plateEnd + 1);
+        int customerId = parseInt(plateEnd + 1, customerEnd);
+        int dateEnd = fieldEnd(customerEnd + 1);
+        LocalDate date = parseDate(customerEnd + 1, dateEnd);
+        int amountEnd = fieldEnd(dateEnd + 1);
+        double amount = parseDouble(dateEnd + 1, amountEnd);
+        int typeEnd = fieldEnd(amountEnd + 1);
+        String type = parseType(amountEnd + 1, typeEnd);
+
+        if (malformed || plateCode == PlateCodec.INVALID || typeEnd != lineEnd) {
+            skippedLines++;
+            return;
+        }
+        parsedRecords++;
+        handler.onRecord(plateCode, customerId, date, amount, type);
+    }
+
+    // Index of the next comma at or after from, or the line end; marks the line
+    // malformed when a field is missing
+    private int fieldEnd(int from) {
+        if (from > lineEnd) {
+            malformed = true;
+            return lineEnd;
+        }
+        for (int i = from; i < lineEnd; i++) {
+            if (bytes.get(i) == ',') {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    private int parseInt(int from, int to) {
+        if (malformed || from >= to) {
+            malformed = true;
+            return 0;
+        }
+        boolean negative = bytes.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 10) {
+            malformed = true;
+            return 0;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                malformed = true;
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            malformed = true;
+            return 0;
+        }
+        return (int) value;
+    }
+
+    private LocalDate parseDate(int from, int to) {
+        if (malformed || to - from != 10 || bytes.get(from + 4) != '-' || bytes.get(from + 7) != '-') {
+            malformed = true;
+            return null;
+        }
+        int year = digits(from, from + 4);
+        int month = digits(from + 5, from + 7);
+        int day = digits(from + 8, from + 10);
+        if (malformed) {
+            return null;
+        }
+        int key = year * 10000 + month * 100 + day;
+        LocalDate date = dates.get(key);
+        if (date == null) {
+            try {
+                date = LocalDate.of(year, month, day);
+            } catch (DateTimeException e) {
+                malformed = true;
+                return null;
+            }
+            dates.put(key, date);
+        }
+        return date;
+    }
+
+    private int digits(int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                malformed = true;
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Plain decimals with up to 15 significant digits are exact as long / 10^n, which is
+    // what Double.parseDouble returns for them too; anything else takes the slow path
+    private double parseDouble(int from, int to) {
+        if (malformed || from >= to) {
+            malformed = true;
+            return 0;
+        }
+        boolean negative = bytes.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            byte b = bytes.get(i);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (++digitCount > MAX_FAST_DIGITS) {
+                    return parseDoubleSlow(from, to);
+                }
+            } else {
+                return parseDoubleSlow(from, to);
+            }
+        }
+        if (digitCount == 0) {
+            malformed = true;
+            return 0;
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int from, int to) {
+        try {
+            return Double.parseDouble(string(from, to));
+        } catch (NumberFormatException e) {
+            malformed = true;
+            return 0;
+        }
+    }
+
+    private String parseType(int from, int to) {
+        if (malformed || from >= to) {
+            malformed = true;
+            return null;
+        }
+        if (matches(from, to, RENT)) {
+            return RENT;
+        }
+        if (matches(from, to, RETURN)) {
+            return RETURN;
+        }
+        return string(from, to);
+    }
+
+    private boolean matches(int from, int to, String ascii) {
+        if (to - from != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (bytes.get(from + i) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String string(int from, int to) {
+        byte[] raw = new byte[to - from];
+        bytes.get(from, raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
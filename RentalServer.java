@@ -0,0 +1,301 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Line-based TCP front end so many branch terminals can share one RentalSystem.
+//
+// Each request is one line of space-separated fields; each response starts with
+// "OK" or "ERR <message>". Listing commands answer "OK <n>" followed by n lines.
+//
+//   PING
+//   ADD_CUSTOMER <id> <name...>
+//   ADD_VEHICLE <Car|SportCar|Motorcycle|Truck> <plate> <make> <model> <year> <extra>
+//       extra is seats, sidecar (true/false), cargo capacity, or seats,hp,turbo
+//   RENT <plate> <customerId> <amount> [yyyy-mm-dd]
+//   RETURN <plate> <customerId> <fees> [yyyy-mm-dd]
+//   AVAILABLE [offset] [limit]
+//   HISTORY VEHICLE <plate> | HISTORY CUSTOMER <id>
+//   FIND_CUSTOMER <name...>     up to 20 customers whose names match what was typed
+//   QUOTE <plate> <days>        price of renting the vehicle for that many days
+//   METRICS [JSON]              call counts and latencies per operation (see RentalMetrics)
+//   QUIT
+//
+// Every connection is served on its own virtual thread when the JVM supports them
+// (Java 21+), otherwise on a cached platform thread pool.
+public class RentalServer implements Closeable {
+    public static final int DEFAULT_PORT = 7070;
+
+    private final RentalSystem rentalSystem;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    public RentalServer(RentalSystem rentalSystem, int port) throws IOException {
+        this.rentalSystem = rentalSystem;
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.connections = newConnectionExecutor();
+        this.acceptor = new Thread(this::acceptLoop, "rental-server-accept");
+        this.acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "rental-server-connection");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    rentalSystem.getEvents().warn("Error accepting connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder response = new StringBuilder(256);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equalsIgnoreCase("QUIT")) {
+                    out.write("OK bye\n");
+                    out.flush();
+                    return;
+                }
+                response.setLength(0);
+                handle(line, response);
+                out.append(response);
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // client went away
+        } catch (IOException e) {
+            rentalSystem.getEvents().warn("Error serving connection", e);
+        }
+    }
+
+    // Runs one request line and appends the full response, including trailing newlines
+    void handle(String line, StringBuilder response) {
+        String[] parts = line.trim().split("\\s+");
+        try {
+            switch (parts[0].toUpperCase()) {
+                case "PING":
+                    response.append("OK pong\n");
+                    break;
+                case "ADD_CUSTOMER":
+                    addCustomer(parts, line, response);
+                    break;
+                case "ADD_VEHICLE":
+                    addVehicle(parts, response);
+                    break;
+                case "RENT":
+                case "RETURN":
+                    rentOrReturn(parts, response);
+                    break;
+                case "AVAILABLE":
+                    available(parts, response);
+                    break;
+                case "HISTORY":
+                    history(parts, response);
+                    break;
+                case "FIND_CUSTOMER":
+                    findCustomer(parts, line, response);
+                    break;
+                case "QUOTE":
+                    quote(parts, response);
+                    break;
+                case "METRICS":
+                    metrics(parts, response);
+                    break;
+                default:
+                    response.append("ERR unknown command ").append(parts[0]).append('\n');
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            response.setLength(0);
+            response.append("ERR missing arguments\n");
+        } catch (NumberFormatException | DateTimeParseException e) {
+            response.setLength(0);
+            response.append("ERR bad number or date: ").append(e.getMessage()).append('\n');
+        } catch (IllegalArgumentException e) {
+            response.setLength(0);
+            response.append("ERR ").append(e.getMessage()).append('\n');
+        }
+    }
+
+    private void addCustomer(String[] parts, String line, StringBuilder response) {
+        int id = Integer.parseInt(parts[1]);
+        // The name is everything after the id, spaces included
+        String rest = line.trim().substring(parts[0].length()).trim();
+        String name = rest.substring(parts[1].length()).trim();
+        if (name.isEmpty()) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        boolean added = rentalSystem.addCustomer(new Customer(id, name));
+        response.append(added ? "OK customer added\n" : "ERR customer already exists\n");
+    }
+
+    private void addVehicle(String[] parts, StringBuilder response) {
+        String type = parts[1];
+        String make = parts[3];
+        String model = parts[4];
+        int year = Integer.parseInt(parts[5]);
+        String extra = parts[6];
+        Vehicle vehicle;
+        switch (type) {
+            case "Car":
+                vehicle = new Car(make, model, year, Integer.parseInt(extra));
+                break;
+            case "SportCar":
+                String[] sport = extra.split(",");
+                vehicle = new SportCar(make, model, year, Integer.parseInt(sport[0]), Integer.parseInt(sport[1]),
+                        Boolean.parseBoolean(sport[2]));
+                break;
+            case "Motorcycle":
+                vehicle = new Motorcycle(make, model, year, Boolean.parseBoolean(extra));
+                break;
+            case "Truck":
+                vehicle = new Truck(make, model, year, Double.parseDouble(extra));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown vehicle type " + type);
+        }
+        vehicle.setLicensePlate(parts[2].toUpperCase());
+        boolean added = rentalSystem.addVehicle(vehicle);
+        response.append(added ? "OK vehicle added\n" : "ERR vehicle already exists\n");
+    }
+
+    private void rentOrReturn(String[] parts, StringBuilder response) {
+        boolean rent = parts[0].equalsIgnoreCase("RENT");
+        double amount = Double.parseDouble(parts[3]);
+        LocalDate date = parts.length > 4 ? LocalDate.parse(parts[4]) : LocalDate.now();
+        Vehicle vehicle = rentalSystem.findVehicleByPlate(parts[1]);
+        Customer customer = rentalSystem.findCustomerById(parts[2]);
+        if (vehicle == null || customer == null) {
+            response.append("ERR vehicle or customer not found\n");
+            return;
+        }
+        boolean done = rent
+                ? rentalSystem.rentVehicle(vehicle, customer, date, amount)
+                : rentalSystem.returnVehicle(vehicle, customer, date, amount);
+        if (done) {
+            response.append(rent ? "OK rented\n" : "OK returned\n");
+        } else {
+            response.append(rent ? "ERR vehicle is not available\n" : "ERR vehicle is not rented\n");
+        }
+    }
+
+    private void available(String[] parts, StringBuilder response) {
+        int offset = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+        int limit = parts.length > 2 ? Integer.parseInt(parts[2]) : Integer.MAX_VALUE;
+        List<Vehicle> vehicles = rentalSystem.findVehicles(null, Vehicle.VehicleStatus.AVAILABLE, offset, limit);
+        response.append("OK ").append(vehicles.size()).append('\n');
+        for (Vehicle v : vehicles) {
+            response.append(v.getClass().getSimpleName()).append(' ')
+                    .append(v.getLicensePlate()).append(' ')
+                    .append(v.getMake()).append(' ')
+                    .append(v.getModel()).append(' ')
+                    .append(v.getYear()).append('\n');
+        }
+    }
+
+    private void quote(String[] parts, StringBuilder response) {
+        Vehicle vehicle = rentalSystem.findVehicleByPlate(parts[1]);
+        int days = Integer.parseInt(parts[2]);
+        if (vehicle == null) {
+            response.append("ERR vehicle not found\n");
+            return;
+        }
+        response.append("OK ").append(String.format(Locale.ROOT, "%.2f", rentalSystem.quote(vehicle, days))).append('\n');
+    }
+
+    private void findCustomer(String[] parts, String line, StringBuilder response) {
+        String query = line.trim().substring(parts[0].length()).trim();
+        if (query.isEmpty()) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        List<Customer> customers = rentalSystem.findCustomers(query, 20);
+        response.append("OK ").append(customers.size()).append('\n');
+        for (Customer c : customers) {
+            response.append(c.getCustomerId()).append(' ').append(c.getCustomerName()).append('\n');
+        }
+    }
+
+    // A table, one line per operation after a header, or the same as a single JSON line
+    private void metrics(String[] parts, StringBuilder response) {
+        RentalMetrics metrics = rentalSystem.getMetrics();
+        if (parts.length > 1 && parts[1].equalsIgnoreCase("JSON")) {
+            response.append("OK 1\n").append(metrics.toJson()).append('\n');
+            return;
+        }
+        String[] lines = metrics.toText().split("\\R");
+        response.append("OK ").append(lines.length).append('\n');
+        for (String line : lines) {
+            response.append(line).append('\n');
+        }
+    }
+
+    private void history(String[] parts, StringBuilder response) {
+        List<RentalRecord> records;
+        if (parts[1].equalsIgnoreCase("VEHICLE")) {
+            records = rentalSystem.getRentalHistory().getRecordsForVehicle(parts[2]);
+        } else if (parts[1].equalsIgnoreCase("CUSTOMER")) {
+            records = rentalSystem.getRentalHistory().getRecordsForCustomer(Integer.parseInt(parts[2]));
+        } else {
+            throw new IllegalArgumentException("HISTORY needs VEHICLE or CUSTOMER");
+        }
+        // Size and rows are read separately, so copy once to keep them consistent
+        Object[] rows = records.toArray();
+        response.append("OK ").append(rows.length).append('\n');
+        for (Object row : rows) {
+            response.append(row).append('\n');
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    // Usage: java RentalServer [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RentalServer server = new RentalServer(RentalSystem.getInstance(), port);
+        System.out.println("Rental server listening on localhost:" + server.getPort());
+    }
+}
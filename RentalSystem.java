@@ -1,222 +1,1455 @@
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.time.LocalDate;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.time.temporal.ChronoUnit;
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
+// Thread-safe. Vehicle status changes are compare-and-set on the vehicle, and each
+// rent/return also holds a lock striped by plate so a vehicle's records reach the
+// history and journal in the same order as its status transitions. The vehicle and
+// customer registries are guarded by a read/write lock (plate lookups need none).
 public class RentalSystem {
-    private static RentalSystem instance;
-    private List<Vehicle> vehicles = new ArrayList<>();
-    private List<Customer> customers = new ArrayList<>();
-    private RentalHistory rentalHistory = new RentalHistory();
+    public static final String JOURNAL_FILE = "rental.journal";
+    public static final String SNAPSHOT_FILE = "rental.snapshot";
+    public static final String ARCHIVE_FILE = "rental_history.archive";
+    public static final String HISTORY_FILE = "rental_history.slots";
+    public static final String METRICS_FILE = "rental.metrics.json";
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final Path dataDir;
+    private RentalJournal journal;
+    private GroupCommitWriter recordWriter;
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final List<Customer> customers = new ArrayList<>();
+    // Lookup indexes kept in sync with the lists above
+    private final Map<String, Vehicle> vehiclesByPlate = new ConcurrentHashMap<>();
+    private final IntObjectMap<Customer> customersById = new IntObjectMap<>();
+    // Vehicles by PlateCodec code, for stores that keep plates as codes. Written under its
+    // own monitor and read without a lock.
+    private final IntObjectMap<Vehicle> vehiclesByCode = new IntObjectMap<>();
+    private final ReadWriteLock registryLock = new ReentrantReadWriteLock();
+    private final Object[] vehicleLocks = new Object[LOCK_STRIPES];
+    private final RentalHistory rentalHistory;
+    private final RentalAggregates aggregates = new RentalAggregates();
+    private final AvailabilityIndex availability = new AvailabilityIndex();
+    private final ReservationBook reservations = new ReservationBook();
+    private final CustomerIndex customerIndex = new CustomerIndex();
+    private final RentalMetrics metrics = new RentalMetrics();
+    private final PricingEngine pricing = new PricingEngine();
+    // The RENT record of every vehicle out on rent, for pricing its return
+    private final Map<Vehicle, RentalRecord> openRentals = new ConcurrentHashMap<>();
+    private final RentalEventBus events = new RentalEventBus();
+    // rental.log=off leaves events to subscribers; otherwise they are logged to stdout
+    private final AsyncEventLogger log = newLog();
+    private final Vehicle.StatusListener statusListener = (vehicle, from, to) -> {
+        aggregates.statusChanged(vehicle, from, to);
+        availability.statusChanged(vehicle, from, to);
+        if (events.wants(RentalEvent.Type.STATUS_CHANGED)) {
+            events.publish(new RentalEvent(RentalEvent.Type.STATUS_CHANGED, vehicle, null, null, null, from, to));
+        }
+    };
+    // rental.maintenance.everyRentals and rental.maintenance.everyDays send a vehicle for
+    // maintenance after that many rentals or days since its last service (0, the default,
+    // turns either off). It comes back rental.maintenance.hours after going in.
+    private final int serviceEveryRentals = Integer.getInteger("rental.maintenance.everyRentals", 0);
+    private final long serviceEveryMillis = TimeUnit.DAYS.toMillis(Long.getLong("rental.maintenance.everyDays", 0));
+    private final long maintenanceMillis = TimeUnit.HOURS.toMillis(Long.getLong("rental.maintenance.hours", 24));
+    private final MaintenanceScheduler maintenance = new MaintenanceScheduler(this::maintenanceDue);
+    // Set when the history is kept in a memory-mapped file
+    private MappedHistoryStore historyFile;
+
+    // Where rental records live on disk: archive[0, archiveLength) holds everything the
+    // journal had before archivedThrough. Records before historyLoadedFrom were not
+    // replayed at startup and are only read when the full history is asked for.
+    private long archiveLength;
+    private long archivedThrough;
+    private long historyLoadedFrom;
+    private volatile boolean historyComplete;
+    private ScheduledExecutorService timer;
+    private boolean shutDown;
 
     private RentalSystem() {
+        this(Paths.get(System.getProperty("rental.dataDir", "")));
+    }
+
+    private RentalSystem(Path dataDir) {
+        this.dataDir = dataDir;
+        for (int i = 0; i < vehicleLocks.length; i++) {
+            vehicleLocks[i] = new Object();
+        }
+        // rental.historyCache.maxBytes bounds the cached per-vehicle and per-customer history
+        // lists; 0 turns the cache off
+        this.rentalHistory = new RentalHistory(newHistoryStore(),
+                Long.getLong("rental.historyCache.maxBytes", RentalHistory.DEFAULT_CACHE_BYTES));
         loadData();
     }
 
     
     public static RentalSystem getInstance() {
-        if (instance == null) {
-            instance = new RentalSystem();
+        return Holder.INSTANCE;
+    }
+
+    // Created on first use; class initialization makes this safe across threads
+    private static class Holder {
+        static final RentalSystem INSTANCE = new RentalSystem();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::shutdown, "rental-shutdown"));
         }
-        return instance;
     }
 
-    // File storage methods
-    public void saveVehicle(Vehicle vehicle) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("vehicles.txt", true))) {
-            writer.write(vehicle.getLicensePlate() + "," + vehicle.getMake() + "," + vehicle.getModel() + "," + vehicle.getYear() + "," + vehicle.getClass().getSimpleName());
-            writer.newLine();
-        } catch (IOException e) {
-            System.out.println("Error saving vehicle: " + e.getMessage());
+    // rental.historyStore picks how the history is kept: "objects" (default) holds
+    // RentalRecords, "columnar" packs them into primitive columns, and "mapped" keeps them
+    // in HISTORY_FILE so they survive restarts off the heap
+    private HistoryStore newHistoryStore() {
+        String kind = System.getProperty("rental.historyStore", "objects");
+        switch (kind) {
+            case "objects":
+                return new ObjectHistoryStore();
+            case "columnar":
+                return new ColumnarHistoryStore();
+            case "mapped":
+                try {
+                    // Rows are resolved on every scan, so these skip the metrics and the registry
+                    // lock; customersById is only written under the registry's write lock
+                    historyFile = new MappedHistoryStore(dataDir.resolve(HISTORY_FILE),
+                            vehiclesByCode::get, customersById::get);
+                    if (historyFile.wasStartedOver()) {
+                        warn("Unrecognized history file " + dataDir.resolve(HISTORY_FILE) + "; starting it over.");
+                    }
+                    return historyFile;
+                } catch (IOException e) {
+                    warn("Error opening history file: " + e.getMessage() + "; keeping records as objects.");
+                    return new ObjectHistoryStore();
+                }
+            default:
+                warn("Unknown rental.historyStore " + kind + "; keeping records as objects.");
+                return new ObjectHistoryStore();
         }
     }
 
-    public void saveCustomer(Customer customer) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("customers.txt", true))) {
-            writer.write(customer.getCustomerId() + "," + customer.getCustomerName());
-            writer.newLine();
+    // A separate, non-singleton system over the given data directory, for tests and benchmarks
+    static RentalSystem openAt(Path dataDir) {
+        return new RentalSystem(dataDir);
+    }
+
+    // Flushes and closes the journal; further saves are reported as errors
+    public synchronized void shutdown() {
+        if (shutDown) {
+            return;
+        }
+        shutDown = true;
+        try {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+            maintenance.close();
+            if (recordWriter != null) {
+                recordWriter.close();
+            }
+            if (journal != null) {
+                takeSnapshot();
+                if (historyFile != null) {
+                    historyFile.close(journal.position());
+                }
+                journal.close();
+            } else if (historyFile != null) {
+                historyFile.close();
+            }
         } catch (IOException e) {
-            System.out.println("Error saving customer: " + e.getMessage());
+            persistenceError("Error closing journal", e);
         }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    // File storage methods
+    public void saveVehicle(Vehicle vehicle) {
+        appendToJournal("Error saving vehicle", journal -> journal.appendVehicle(vehicle));
+    }
+
+    public void saveCustomer(Customer customer) {
+        appendToJournal("Error saving customer", journal -> journal.appendCustomer(customer));
     }
 
     public void saveRecord(RentalRecord record) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("rental_records.txt", true))) {
-            writer.write(record.getVehicle().getLicensePlate() + "," + record.getCustomer().getCustomerId() + "," + record.getRecordDate() + "," + record.getTotalAmount() + "," + record.getRecordType());
-            writer.newLine();
-        } catch (IOException e) {
-            System.out.println("Error saving record: " + e.getMessage());
+        saveRecordAsync(record);
+    }
+
+    // Returns a future that completes once the record is on disk. With group commit
+    // enabled the write happens on the background writer; otherwise it is synchronous.
+    public CompletableFuture<Void> saveRecordAsync(RentalRecord record) {
+        long start = RentalMetrics.start();
+        try {
+            CompletableFuture<Void> saved;
+            if (recordWriter != null) {
+                saved = recordWriter.submit(record);
+            } else {
+                journal.appendRecord(record);
+                saved = CompletableFuture.completedFuture(null);
+            }
+            metrics.record(RentalMetrics.Operation.SAVE_RECORD, start);
+            return saved;
+        } catch (IOException | RuntimeException e) {
+            metrics.record(RentalMetrics.Operation.SAVE_RECORD, start, false);
+            persistenceError("Error saving record", e);
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    // Every journal entry other than a record is written through here, so that with group
+    // commit on it queues behind the records before it instead of overtaking them. Entries
+    // must capture what they write when they are made, not read it when they run.
+    private CompletableFuture<Void> appendToJournal(String doing, GroupCommitWriter.Entry entry) {
+        try {
+            if (recordWriter != null) {
+                return recordWriter.submit(entry);
+            }
+            entry.appendTo(journal);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException | RuntimeException e) {
+            persistenceError(doing, e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Waits for the group commit writer to get everything queued so far into the journal
+    private void drainJournal() {
+        if (recordWriter != null) {
+            recordWriter.flush();
+        }
+    }
+
+    // Batching stats for the group commit writer, or null when it is disabled
+    public GroupCommitWriter getRecordWriter() {
+        return recordWriter;
+    }
+
     //  Modified to return boolean and check duplicates
     public boolean addVehicle(Vehicle vehicle) {
-        if (findVehicleByPlate(vehicle.getLicensePlate()) != null) {
-            System.out.println("Vehicle with license plate " + vehicle.getLicensePlate() + " already exists.");
+        if (!registerVehicle(vehicle)) {
+            publish(RentalEvent.Type.DUPLICATE_VEHICLE, vehicle, null, null);
             return false;
         }
-        vehicles.add(vehicle);
-        saveVehicle(vehicle);
+        // Saved under the lock so the VEHICLE entry is queued before any rent of it
+        synchronized (lockFor(vehicle)) {
+            maintenance.setService(vehicle, System.currentTimeMillis(), 0);
+            scheduleService(vehicle);
+            saveVehicle(vehicle);
+        }
+        publish(RentalEvent.Type.VEHICLE_ADDED, vehicle, null, null);
         return true;
     }
 
     //  Modified to return boolean and check duplicates
     public boolean addCustomer(Customer customer) {
-        if (findCustomerById(String.valueOf(customer.getCustomerId())) != null) {
-            System.out.println("Customer with ID " + customer.getCustomerId() + " already exists.");
+        boolean added;
+        // The CUSTOMER entry is queued before the customer can be found by id or name, so no
+        // rent by them reaches the journal first; the lock keeps another add from slipping in
+        registryLock.writeLock().lock();
+        try {
+            added = !customersById.containsKey(customer.getCustomerId());
+            if (added) {
+                saveCustomer(customer);
+                registerCustomer(customer);
+            }
+        } finally {
+            registryLock.writeLock().unlock();
+        }
+        if (!added) {
+            publish(RentalEvent.Type.DUPLICATE_CUSTOMER, null, customer, null);
+            return false;
+        }
+        publish(RentalEvent.Type.CUSTOMER_ADDED, null, customer, null);
+        return true;
+    }
+
+    // Adds many vehicles at once. Plates are checked and duplicates (against the fleet or
+    // earlier in the batch) dropped in one pass, and the accepted vehicles are registered and
+    // journaled one lock stripe at a time, with one append per stripe.
+    public ImportReport addVehicles(Collection<? extends Vehicle> batch) {
+        ImportReport report = new ImportReport();
+        addVehicles(batch, report);
+        return report;
+    }
+
+    private void addVehicles(Collection<? extends Vehicle> batch, ImportReport report) {
+        Vehicle[] items = batch.toArray(new Vehicle[0]);
+        String[] keys = new String[items.length];
+        boolean[] accepted = new boolean[items.length];
+        // Positions in the batch by lock stripe, in batch order
+        Map<Integer, IntList> byStripe = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            keys[i] = plateKey(items[i].getLicensePlate());
+            if (keys[i] != null) {
+                byStripe.computeIfAbsent(stripeOf(items[i]), stripe -> new IntList()).add(i);
+            }
+        }
+        // A stripe's vehicles are journaled before its lock is let go. Rents journal under the
+        // same lock, so none can reach the journal ahead of its vehicle's VEHICLE entry.
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Integer, IntList> stripe : byStripe.entrySet()) {
+            IntList positions = stripe.getValue();
+            List<Vehicle> stripeAdded = new ArrayList<>(positions.size());
+            synchronized (vehicleLocks[stripe.getKey()]) {
+                for (int j = 0; j < positions.size(); j++) {
+                    int i = positions.get(j);
+                    Vehicle vehicle = items[i];
+                    if (vehiclesByPlate.putIfAbsent(keys[i], vehicle) != null) {
+                        continue;
+                    }
+                    indexPlateCode(keys[i], vehicle);
+                    vehicle.setStatusListener(statusListener);
+                    aggregates.vehicleAdded(vehicle);
+                    maintenance.setService(vehicle, now, 0);
+                    accepted[i] = true;
+                    stripeAdded.add(vehicle);
+                }
+                if (!stripeAdded.isEmpty()) {
+                    appendToJournal("Error saving vehicles", journal -> journal.appendVehicles(stripeAdded));
+                }
+            }
+        }
+        List<Vehicle> added = new ArrayList<>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            if (keys[i] == null) {
+                report.add(String.valueOf(items[i].getLicensePlate()), ImportReport.Outcome.INVALID, "No license plate");
+            } else if (!accepted[i]) {
+                report.add(keys[i], ImportReport.Outcome.DUPLICATE, "Plate already registered");
+            } else {
+                added.add(items[i]);
+                report.add(keys[i], ImportReport.Outcome.ADDED, null);
+            }
+        }
+        // The index re-reads each vehicle's status, so it can be filled after the locks are let go
+        availability.addAll(added);
+        registryLock.writeLock().lock();
+        try {
+            vehicles.addAll(added);
+        } finally {
+            registryLock.writeLock().unlock();
+        }
+        for (Vehicle vehicle : added) {
+            synchronized (lockFor(vehicle)) {
+                scheduleService(vehicle);
+            }
+        }
+    }
+
+    public ImportReport addCustomers(Collection<Customer> batch) {
+        ImportReport report = new ImportReport();
+        addCustomers(batch, report);
+        return report;
+    }
+
+    // As in addCustomer, the batch is journaled before any of it can be found
+    private void addCustomers(Collection<Customer> batch, ImportReport report) {
+        List<Customer> added = new ArrayList<>(batch.size());
+        IntObjectMap<Customer> seen = new IntObjectMap<>(batch.size());
+        registryLock.writeLock().lock();
+        try {
+            for (Customer customer : batch) {
+                String key = String.valueOf(customer.getCustomerId());
+                if (customersById.containsKey(customer.getCustomerId())
+                        || seen.putIfAbsent(customer.getCustomerId(), customer) != null) {
+                    report.add(key, ImportReport.Outcome.DUPLICATE, "Customer id already registered");
+                    continue;
+                }
+                added.add(customer);
+                report.add(key, ImportReport.Outcome.ADDED, null);
+            }
+            appendToJournal("Error saving customers", journal -> journal.appendCustomers(added));
+            for (Customer customer : added) {
+                registerCustomer(customer);
+            }
+        } finally {
+            registryLock.writeLock().unlock();
+        }
+    }
+
+    // Bulk imports from files in the old vehicles.txt (plate,make,model,year,type) and
+    // customers.txt (id,name) formats. Lines that can't be read are reported as invalid.
+    public ImportReport importVehicles(Path file) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Vehicle> batch = new ArrayList<>();
+        readLines(file, report, line -> batch.add(LegacyDataImporter.parseVehicle(line)));
+        addVehicles(batch, report);
+        return report;
+    }
+
+    public ImportReport importCustomers(Path file) throws IOException {
+        ImportReport report = new ImportReport();
+        List<Customer> batch = new ArrayList<>();
+        readLines(file, report, line -> batch.add(LegacyDataImporter.parseCustomer(line)));
+        addCustomers(batch, report);
+        return report;
+    }
+
+    private static void readLines(Path file, ImportReport report, Consumer<String> parser) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    parser.accept(line);
+                } catch (IllegalArgumentException e) {
+                    report.add("line " + number, ImportReport.Outcome.INVALID, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Adds the vehicle to the list and plate index without persisting it
+    private boolean registerVehicle(Vehicle vehicle) {
+        String key = plateKey(vehicle.getLicensePlate());
+        if (key == null) {
             return false;
         }
-        customers.add(customer);
-        saveCustomer(customer);
+        // Holding the vehicle's lock keeps rents from changing its status before it is counted
+        synchronized (lockFor(vehicle)) {
+            if (vehiclesByPlate.putIfAbsent(key, vehicle) != null) {
+                return false;
+            }
+            indexPlateCode(key, vehicle);
+            vehicle.setStatusListener(statusListener);
+            aggregates.vehicleAdded(vehicle);
+            availability.add(vehicle);
+        }
+        registryLock.writeLock().lock();
+        try {
+            vehicles.add(vehicle);
+        } finally {
+            registryLock.writeLock().unlock();
+        }
         return true;
     }
 
+    private void indexPlateCode(String plate, Vehicle vehicle) {
+        int code = PlateCodec.encode(plate);
+        if (code != PlateCodec.INVALID) {
+            synchronized (vehiclesByCode) {
+                vehiclesByCode.put(code, vehicle);
+            }
+        }
+    }
+
+    // Adds the customer to the list and id index without persisting it
+    private boolean registerCustomer(Customer customer) {
+        registryLock.writeLock().lock();
+        try {
+            if (customersById.putIfAbsent(customer.getCustomerId(), customer) != null) {
+                return false;
+            }
+            customers.add(customer);
+            customerIndex.add(customer);
+            return true;
+        } finally {
+            registryLock.writeLock().unlock();
+        }
+    }
+
+    // Copies of the registries, safe to iterate while other threads add to them
+    private List<Vehicle> vehicleList() {
+        registryLock.readLock().lock();
+        try {
+            return new ArrayList<>(vehicles);
+        } finally {
+            registryLock.readLock().unlock();
+        }
+    }
+
+    private List<Customer> customerList() {
+        registryLock.readLock().lock();
+        try {
+            return new ArrayList<>(customers);
+        } finally {
+            registryLock.readLock().unlock();
+        }
+    }
+
+    private Object lockFor(Vehicle vehicle) {
+        return vehicleLocks[stripeOf(vehicle)];
+    }
+
+    private static int stripeOf(Vehicle vehicle) {
+        String plate = vehicle.getLicensePlate();
+        int h = plate == null ? System.identityHashCode(vehicle) : plate.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private static String plateKey(String plate) {
+        return plate == null ? null : plate.toUpperCase(Locale.ROOT);
+    }
+
     //Updated to call saveRecord
-    public void rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
-        if (vehicle.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
-            vehicle.setStatus(Vehicle.VehicleStatus.RENTED);
-            RentalRecord record = new RentalRecord(vehicle, customer, date, amount, "RENT");
-            rentalHistory.addRecord(record);
-            saveRecord(record);
-            System.out.println("Vehicle rented to " + customer.getCustomerName());
-        } else {
-            System.out.println("Vehicle is not available for renting.");
+    public boolean rentVehicle(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        long start = RentalMetrics.start();
+        boolean rented = tryRent(vehicle, customer, date, amount);
+        metrics.record(RentalMetrics.Operation.RENT, start, rented);
+        return rented;
+    }
+
+    private boolean tryRent(Vehicle vehicle, Customer customer, LocalDate date, double amount) {
+        synchronized (lockFor(vehicle)) {
+            // A reservation covering the day keeps the vehicle for its customer, who picks it up by renting it
+            Reservation booked = reservations.covering(vehicle, date);
+            if (booked != null && booked.getCustomer().getCustomerId() != customer.getCustomerId()) {
+                publish(RentalEvent.Type.RENT_REJECTED, vehicle, customer, "Vehicle is reserved by another customer.");
+                return false;
+            }
+            Vehicle.VehicleStatus from = booked != null && vehicle.getStatus() == Vehicle.VehicleStatus.RESERVED
+                    ? Vehicle.VehicleStatus.RESERVED : Vehicle.VehicleStatus.AVAILABLE;
+            if (vehicle.compareAndSetStatus(from, Vehicle.VehicleStatus.RENTED)) {
+                if (booked != null) {
+                    endReservation(booked);
+                }
+                RentalRecord record = new RentalRecord(vehicle, customer, date, amount, "RENT");
+                openRentals.put(vehicle, record);
+                rentalHistory.addRecord(record);
+                aggregates.recordAdded(record);
+                saveRecord(record);
+                maintenance.addRentals(vehicle, 1);
+                publish(RentalEvent.Type.VEHICLE_RENTED, vehicle, customer, null);
+                return true;
+            }
+        }
+        publish(RentalEvent.Type.RENT_REJECTED, vehicle, customer, "Vehicle is not available for renting.");
+        return false;
+    }
+
+    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
+        long start = RentalMetrics.start();
+        boolean returned = tryReturn(vehicle, customer, date, extraFees);
+        metrics.record(RentalMetrics.Operation.RETURN, start, returned);
+        return returned;
+    }
+
+    private boolean tryReturn(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
+        synchronized (lockFor(vehicle)) {
+            if (vehicle.compareAndSetStatus(Vehicle.VehicleStatus.RENTED, Vehicle.VehicleStatus.AVAILABLE)) {
+                RentalRecord record = new RentalRecord(vehicle, customer, date, extraFees, "RETURN");
+                openRentals.remove(vehicle);
+                rentalHistory.addRecord(record);
+                aggregates.recordAdded(record);
+                saveRecord(record);
+                publish(RentalEvent.Type.VEHICLE_RETURNED, vehicle, customer, null);
+                long now = System.currentTimeMillis();
+                if (serviceDue(vehicle, now) && beginMaintenance(vehicle, now)) {
+                    publish(RentalEvent.Type.MAINTENANCE_STARTED, vehicle, null, null);
+                }
+                return true;
+            }
+        }
+        publish(RentalEvent.Type.RETURN_REJECTED, vehicle, customer, "Vehicle is not rented.");
+        return false;
+    }
+
+    // What renting the vehicle for that many days costs at the current utilization of its
+    // type; see PricingEngine
+    public double quote(Vehicle vehicle, int days) {
+        return pricing.quote(vehicle, days, aggregates.getUtilization(vehicle.getClass()));
+    }
+
+    // Rents the vehicle for the quoted price of the planned days
+    public boolean rentVehicleForDays(Vehicle vehicle, Customer customer, LocalDate date, int days) {
+        return rentVehicle(vehicle, customer, date, quote(vehicle, days));
+    }
+
+    // Returns the vehicle, charging the quote for the days it was actually out less what was
+    // paid when it was rented. The vehicle itself doesn't count towards the utilization.
+    public boolean returnVehicle(Vehicle vehicle, Customer customer, LocalDate date) {
+        synchronized (lockFor(vehicle)) {
+            RentalRecord rent = openRentals.get(vehicle);
+            double fees = 0;
+            if (rent != null && rent.getRecordDate() != null) {
+                int days = (int) ChronoUnit.DAYS.between(rent.getRecordDate(), date);
+                Class<? extends Vehicle> type = vehicle.getClass();
+                int fleet = aggregates.getFleetSize(type);
+                double utilization = fleet == 0 ? 0
+                        : Math.max(0, aggregates.getCount(type, Vehicle.VehicleStatus.RENTED) - 1) / (double) fleet;
+                fees = Math.max(0, pricing.quote(vehicle, days, utilization) - rent.getTotalAmount());
+            }
+            return returnVehicle(vehicle, customer, date, fees);
+        }
+    }
+
+    // Takes an available vehicle out of use for rental.maintenance.hours
+    public boolean startMaintenance(Vehicle vehicle) {
+        synchronized (lockFor(vehicle)) {
+            return beginMaintenance(vehicle, System.currentTimeMillis());
+        }
+    }
+
+    // Brings a vehicle back from maintenance before its time is up
+    public boolean finishMaintenance(Vehicle vehicle) {
+        synchronized (lockFor(vehicle)) {
+            return endMaintenance(vehicle, System.currentTimeMillis());
         }
     }
 
-    public void returnVehicle(Vehicle vehicle, Customer customer, LocalDate date, double extraFees) {
-        if (vehicle.getStatus() == Vehicle.VehicleStatus.RENTED) {
-            vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
-            RentalRecord record = new RentalRecord(vehicle, customer, date, extraFees, "RETURN");
-            rentalHistory.addRecord(record);
-            saveRecord(record);
-            System.out.println("Vehicle returned by " + customer.getCustomerName());
+    // Retires an available vehicle or one in maintenance, or puts a retired vehicle back in
+    // service as freshly serviced
+    public boolean setOutOfService(Vehicle vehicle, boolean outOfService) {
+        synchronized (lockFor(vehicle)) {
+            if (outOfService) {
+                if (!vehicle.compareAndSetStatus(Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.OUTOFSERVICE)
+                        && !vehicle.compareAndSetStatus(Vehicle.VehicleStatus.MAINTENANCE, Vehicle.VehicleStatus.OUTOFSERVICE)) {
+                    return false;
+                }
+            } else {
+                if (!vehicle.compareAndSetStatus(Vehicle.VehicleStatus.OUTOFSERVICE, Vehicle.VehicleStatus.AVAILABLE)) {
+                    return false;
+                }
+                maintenance.setService(vehicle, System.currentTimeMillis(), 0);
+            }
+            scheduleService(vehicle);
+            saveStatus(vehicle);
+            return true;
+        }
+    }
+
+    public MaintenanceScheduler getMaintenanceScheduler() {
+        return maintenance;
+    }
+
+    // The rest of the maintenance methods are called with the vehicle's lock held
+
+    private boolean serviceDue(Vehicle vehicle, long now) {
+        return serviceEveryRentals > 0 && maintenance.getRentalsSinceService(vehicle) >= serviceEveryRentals
+                || serviceEveryMillis > 0 && now - maintenance.getLastService(vehicle) >= serviceEveryMillis;
+    }
+
+    private boolean beginMaintenance(Vehicle vehicle, long now) {
+        if (!vehicle.compareAndSetStatus(Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.MAINTENANCE)) {
+            return false;
+        }
+        maintenance.setService(vehicle, now, 0);
+        scheduleService(vehicle);
+        saveStatus(vehicle);
+        return true;
+    }
+
+    private boolean endMaintenance(Vehicle vehicle, long now) {
+        if (!vehicle.compareAndSetStatus(Vehicle.VehicleStatus.MAINTENANCE, Vehicle.VehicleStatus.AVAILABLE)) {
+            return false;
+        }
+        maintenance.setService(vehicle, now, 0);
+        scheduleService(vehicle);
+        saveStatus(vehicle);
+        if (reservations.covering(vehicle, LocalDate.now()) != null) {
+            vehicle.compareAndSetStatus(Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.RESERVED);
+        }
+        return true;
+    }
+
+    // Sets the vehicle's one timer from its status and last service: the end of its
+    // maintenance, or when it is next due for service
+    private void scheduleService(Vehicle vehicle) {
+        long lastService = maintenance.getLastService(vehicle);
+        Vehicle.VehicleStatus status = vehicle.getStatus();
+        if (status == Vehicle.VehicleStatus.MAINTENANCE) {
+            maintenance.schedule(vehicle, lastService + maintenanceMillis);
+        } else if (status != Vehicle.VehicleStatus.OUTOFSERVICE && serviceEveryMillis > 0) {
+            maintenance.schedule(vehicle, lastService + serviceEveryMillis);
         } else {
-            System.out.println("Vehicle is not rented.");
+            maintenance.cancel(vehicle);
         }
     }
 
-    // Load data from files
+    // The vehicle's timer fired: its maintenance is over, or it is due for service. A vehicle
+    // that is rented or reserved goes in when returned, or is tried again in an hour.
+    private void maintenanceDue(Vehicle vehicle) {
+        synchronized (lockFor(vehicle)) {
+            long now = System.currentTimeMillis();
+            Vehicle.VehicleStatus status = vehicle.getStatus();
+            if (status == Vehicle.VehicleStatus.MAINTENANCE) {
+                endMaintenance(vehicle, now);
+            } else if (!beginMaintenance(vehicle, now) && status != Vehicle.VehicleStatus.OUTOFSERVICE) {
+                maintenance.schedule(vehicle, now + TimeUnit.HOURS.toMillis(1));
+            }
+        }
+    }
+
+    private void saveStatus(Vehicle vehicle) {
+        Vehicle.VehicleStatus status = vehicle.getStatus();
+        long lastService = maintenance.getLastService(vehicle);
+        int rentalsSinceService = maintenance.getRentalsSinceService(vehicle);
+        appendToJournal("Error saving vehicle status",
+                journal -> journal.appendStatus(vehicle, status, lastService, rentalsSinceService));
+    }
+
+    // Books the vehicle for the customer from startDate to endDate inclusive. Returns null if
+    // the vehicle is out of service or already booked on any of those days. A rent without
+    // a reservation has no end date, so it is not checked against later bookings.
+    public Reservation reserveVehicle(Vehicle vehicle, Customer customer, LocalDate startDate, LocalDate endDate) {
+        long start = RentalMetrics.start();
+        Reservation reservation = tryReserve(vehicle, customer, startDate, endDate);
+        metrics.record(RentalMetrics.Operation.RESERVE, start, reservation != null);
+        return reservation;
+    }
+
+    private Reservation tryReserve(Vehicle vehicle, Customer customer, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            publish(RentalEvent.Type.RESERVATION_REJECTED, vehicle, customer, "Reservation ends before it starts.");
+            return null;
+        }
+        synchronized (lockFor(vehicle)) {
+            if (vehicle.getStatus() == Vehicle.VehicleStatus.OUTOFSERVICE) {
+                publish(RentalEvent.Type.RESERVATION_REJECTED, vehicle, customer, "Vehicle is out of service.");
+                return null;
+            }
+            Reservation reservation = reservations.reserve(vehicle, customer, startDate, endDate);
+            if (reservation == null) {
+                publish(RentalEvent.Type.RESERVATION_REJECTED, vehicle, customer,
+                        "Vehicle is already reserved for some of those days.");
+                return null;
+            }
+            appendToJournal("Error saving reservation", journal -> journal.appendReservation(reservation));
+            if (reservation.covers(LocalDate.now())) {
+                vehicle.compareAndSetStatus(Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.RESERVED);
+            }
+            return reservation;
+        }
+    }
+
+    public boolean cancelReservation(long id) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null) {
+            return false;
+        }
+        Vehicle vehicle = reservation.getVehicle();
+        synchronized (lockFor(vehicle)) {
+            if (!endReservation(reservation)) {
+                return false;
+            }
+            if (reservations.covering(vehicle, LocalDate.now()) == null) {
+                vehicle.compareAndSetStatus(Vehicle.VehicleStatus.RESERVED, Vehicle.VehicleStatus.AVAILABLE);
+            }
+            return true;
+        }
+    }
+
+    // Called with the vehicle's lock held
+    private boolean endReservation(Reservation reservation) {
+        if (reservations.remove(reservation.getId()) == null) {
+            return false;
+        }
+        long id = reservation.getId();
+        appendToJournal("Error saving reservation", journal -> journal.appendReservationEnd(id));
+        return true;
+    }
+
+    public List<Reservation> getReservations(Vehicle vehicle) {
+        return reservations.getReservations(vehicle);
+    }
+
+    // Up to limit vehicles of exactly the given class (null for any) that are free for the
+    // whole range. Vehicles in maintenance or out of service never are, and a range starting
+    // today or earlier also needs the vehicle to be available now. Only the index of
+    // matching statuses is walked, with one floor lookup per vehicle.
+    public List<Vehicle> findAvailableVehicles(Class<? extends Vehicle> type, LocalDate startDate, LocalDate endDate,
+                                               int limit) {
+        EnumSet<Vehicle.VehicleStatus> statuses = EnumSet.of(Vehicle.VehicleStatus.AVAILABLE);
+        if (startDate.isAfter(LocalDate.now())) {
+            statuses.add(Vehicle.VehicleStatus.RESERVED);
+            statuses.add(Vehicle.VehicleStatus.RENTED);
+        }
+        long startDay = startDate.toEpochDay();
+        long endDay = endDate.toEpochDay();
+        long start = RentalMetrics.start();
+        List<Vehicle> found = availability.find(type, statuses, vehicle -> reservations.isFree(vehicle, startDay, endDay), limit);
+        metrics.record(RentalMetrics.Operation.FIND_AVAILABLE, start);
+        return found;
+    }
+
+    // Moves vehicles into RESERVED on the days their reservations cover and back out again
+    // afterwards, dropping reservations that ended without being picked up
+    public void advanceReservations(LocalDate today) {
+        for (Reservation reservation : reservations.getReservations()) {
+            Vehicle vehicle = reservation.getVehicle();
+            synchronized (lockFor(vehicle)) {
+                if (reservation.getEndDate().isBefore(today)) {
+                    endReservation(reservation);
+                } else if (reservation.covers(today)) {
+                    vehicle.compareAndSetStatus(Vehicle.VehicleStatus.AVAILABLE, Vehicle.VehicleStatus.RESERVED);
+                }
+            }
+        }
+        for (Vehicle vehicle : availability.find(null, Vehicle.VehicleStatus.RESERVED, 0, Integer.MAX_VALUE)) {
+            synchronized (lockFor(vehicle)) {
+                if (reservations.covering(vehicle, today) == null) {
+                    vehicle.compareAndSetStatus(Vehicle.VehicleStatus.RESERVED, Vehicle.VehicleStatus.AVAILABLE);
+                }
+            }
+        }
+    }
+
+    private void restoreReservation(long id, String plate, int customerId, LocalDate startDate, LocalDate endDate) {
+        Vehicle vehicle = findVehicleByPlate(plate);
+        Customer customer = findCustomerById(customerId);
+        if (vehicle != null && customer != null) {
+            reservations.restore(new Reservation(id, vehicle, customer, startDate, endDate));
+        }
+    }
+
+    // Load the latest snapshot and replay the journal after it, importing the old CSV
+    // files on first start
     private void loadData() {
-        // Load vehicles
-        try (BufferedReader reader = new BufferedReader(new FileReader("vehicles.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String plate = parts[0];
-                    String make = parts[1];
-                    String model = parts[2];
-                    int year = Integer.parseInt(parts[3]);
-                    String type = parts[4];
-                    Vehicle vehicle;
-                    switch (type) {
-                        case "Car":
-                            vehicle = new Car(make, model, year, 5);
-                            break;
-                        case "Motorcycle":
-                            vehicle = new Motorcycle(make, model, year, false);
-                            break;
-                        case "Truck":
-                            vehicle = new Truck(make, model, year, 1000);
-                            break;
-                        default:
-                            continue;
-                    }
-                    vehicle.setLicensePlate(plate);
-                    vehicles.add(vehicle);
+        long start = RentalMetrics.start();
+        boolean loaded = load();
+        metrics.record(RentalMetrics.Operation.LOAD_DATA, start, loaded);
+    }
+
+    private boolean load() {
+        Path journalFile = dataDir.resolve(JOURNAL_FILE);
+        Path snapshotFile = dataDir.resolve(SNAPSHOT_FILE);
+        RentalJournal.FsyncPolicy fsyncPolicy = RentalJournal.FsyncPolicy.valueOf(
+                System.getProperty("rental.fsync", RentalJournal.FsyncPolicy.INTERVAL.name()));
+        long fsyncIntervalMillis = Long.getLong("rental.fsyncIntervalMs", 100);
+        try {
+            if (!Files.exists(journalFile) && LegacyDataImporter.hasLegacyData(dataDir)) {
+                try (RentalJournal importJournal = new RentalJournal(journalFile, RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+                    new LegacyDataImporter(events).importInto(dataDir, importJournal);
                 }
             }
+            JournalLoader loader = new JournalLoader();
+            if (Files.exists(snapshotFile)) {
+                RentalJournal.replay(snapshotFile, 0, loader);
+            }
+            // A history file closed cleanly at the snapshot's journal offset already holds every
+            // record before it; anything else is rebuilt from the archive and journal
+            boolean historyOnDisk = historyFile != null && historyFile.wasClosedCleanly()
+                    && historyFile.getJournalOffset() == historyLoadedFrom;
+            if (historyFile != null && !historyOnDisk) {
+                historyFile.clear();
+            }
+            historyComplete = historyOnDisk || (historyLoadedFrom == 0 && archiveLength == 0);
+            int loadThreads = Integer.getInteger("rental.loadThreads", Runtime.getRuntime().availableProcessors());
+            if (loadThreads > 1) {
+                journal = openJournalParallel(journalFile, fsyncPolicy, fsyncIntervalMillis, loadThreads);
+            } else {
+                journal = RentalJournal.open(journalFile, fsyncPolicy, fsyncIntervalMillis, historyLoadedFrom, loader);
+            }
+            if (Boolean.parseBoolean(System.getProperty("rental.groupCommit", "true"))) {
+                recordWriter = new GroupCommitWriter(journal,
+                        Integer.getInteger("rental.groupCommit.queueCapacity", 8192),
+                        Integer.getInteger("rental.groupCommit.batchSize", 256),
+                        Long.getLong("rental.groupCommit.maxDelayMs", 0));
+            }
+            journal.setMetrics(metrics);
+            journal.setEvents(events);
+            if (recordWriter != null) {
+                recordWriter.setEvents(events);
+            }
         } catch (IOException e) {
-            System.out.println("Error loading vehicles: " + e.getMessage());
+            persistenceError("Error loading rental journal", e);
+            return false;
+        }
+        if (historyFile != null) {
+            ensureFullHistory();
         }
+        rebuildRevenue();
+        advanceReservations(LocalDate.now());
+        for (Vehicle vehicle : vehicleList()) {
+            synchronized (lockFor(vehicle)) {
+                scheduleService(vehicle);
+            }
+        }
+        maintenance.setEvents(events);
+        maintenance.start();
 
-        // Load customers
-        try (BufferedReader reader = new BufferedReader(new FileReader("customers.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    int id = Integer.parseInt(parts[0]);
-                    String name = parts[1];
-                    customers.add(new Customer(id, name));
+        long snapshotSeconds = Long.getLong("rental.snapshotIntervalSec", 300);
+        // rental.metrics.dumpIntervalSec > 0 rewrites METRICS_FILE that often
+        long metricsSeconds = RentalMetrics.ENABLED ? Long.getLong("rental.metrics.dumpIntervalSec", 0) : 0;
+        // Reservations start and expire by the day whether or not snapshots are taken
+        long reservationSeconds = Long.getLong("rental.reservations.checkIntervalSec", 3600);
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rental-background");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> advanceReservations(LocalDate.now()),
+                reservationSeconds, reservationSeconds, TimeUnit.SECONDS);
+        if (snapshotSeconds > 0) {
+            timer.scheduleWithFixedDelay(this::takeSnapshot, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+        if (metricsSeconds > 0) {
+            timer.scheduleWithFixedDelay(this::dumpMetrics, metricsSeconds, metricsSeconds, TimeUnit.SECONDS);
+        }
+        return true;
+    }
+
+    // Replaces METRICS_FILE with the current metrics as JSON
+    public void dumpMetrics() {
+        Path file = dataDir.resolve(METRICS_FILE);
+        Path temp = dataDir.resolve(METRICS_FILE + ".tmp");
+        try {
+            Files.write(temp, metrics.toJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            persistenceError("Error writing metrics", e);
+        }
+    }
+
+    public RentalMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Rentals, returns, rejections and errors as they happen; see RentalEvent
+    public RentalEventBus getEvents() {
+        return events;
+    }
+
+    // Waits until every event so far has been logged, so console output reads in order
+    public void flushLog() {
+        if (log != null) {
+            log.flush();
+        }
+    }
+
+    private AsyncEventLogger newLog() {
+        if (System.getProperty("rental.log", "stdout").equals("off")) {
+            return null;
+        }
+        AsyncEventLogger logger = new AsyncEventLogger(System.out, Integer.getInteger("rental.log.bufferSize", 8192));
+        events.subscribe(AsyncEventLogger.DEFAULT_TYPES, logger);
+        return logger;
+    }
+
+    // Events are only built when someone subscribed to their type
+    private void publish(RentalEvent.Type type, Vehicle vehicle, Customer customer, String detail) {
+        if (events.wants(type)) {
+            events.publish(new RentalEvent(type, vehicle, customer, detail, null));
+        }
+    }
+
+    private void persistenceError(String doing, Exception e) {
+        events.persistenceError(doing, e);
+    }
+
+    private void warn(String message) {
+        events.warn(message, null);
+    }
+
+    // Writes the current vehicles, statuses and customers along with the journal offset
+    // they reflect, so the next startup only replays the journal after that point
+    public synchronized void takeSnapshot() {
+        long start = RentalMetrics.start();
+        try {
+            drainJournal();
+            journal.sync();
+            long offset = journal.position();
+            RentalJournal.writeSnapshot(dataDir.resolve(SNAPSHOT_FILE), offset, archiveLength, archivedThrough,
+                    vehicleList(), customerList(),
+                    reservations.getReservations(), maintenance);
+            metrics.record(RentalMetrics.Operation.SNAPSHOT, start);
+        } catch (IOException e) {
+            metrics.record(RentalMetrics.Operation.SNAPSHOT, start, false);
+            persistenceError("Error writing snapshot", e);
+        }
+    }
+
+    // Moves every rental record currently in the journal into the history archive and
+    // drops the old part of the journal, leaving it with only entries after the snapshot
+    public synchronized void compact() {
+        ensureFullHistory();
+        Path snapshotFile = dataDir.resolve(SNAPSHOT_FILE);
+        try {
+            drainJournal();
+            journal.sync();
+            long offset = journal.position();
+            // The first snapshot makes startup independent of the journal prefix; the
+            // second one records the archive once it holds that prefix's records
+            RentalJournal.writeSnapshot(snapshotFile, offset, archiveLength, archivedThrough, vehicleList(), customerList(),
+                    reservations.getReservations(), maintenance);
+            long newArchiveLength;
+            try (RentalJournal archive = new RentalJournal(dataDir.resolve(ARCHIVE_FILE), RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+                archive.truncate(archiveLength);
+                newArchiveLength = archive.copyRecords(journal.getFile(), archivedThrough, offset);
+            }
+            RentalJournal.writeSnapshot(snapshotFile, offset, newArchiveLength, offset, vehicleList(), customerList(),
+                    reservations.getReservations(), maintenance);
+            archiveLength = newArchiveLength;
+            archivedThrough = offset;
+            journal.compactTo(offset);
+        } catch (IOException e) {
+            persistenceError("Error compacting history", e);
+        }
+    }
+
+    // Loads the records that were skipped at startup because a snapshot covered them
+    private synchronized void ensureFullHistory() {
+        if (historyComplete) {
+            return;
+        }
+        List<RentalRecord> older = new ArrayList<>();
+        RentalJournal.Listener collector = new RentalJournal.Listener() {
+            @Override
+            public void onVehicle(Vehicle vehicle) { }
+
+            @Override
+            public void onCustomer(Customer customer) { }
+
+            @Override
+            public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
+                Vehicle vehicle = findVehicleByPlate(plate);
+                Customer customer = findCustomerById(customerId);
+                if (vehicle != null && customer != null) {
+                    older.add(new RentalRecord(vehicle, customer, date, amount, type));
                 }
             }
+
+            @Override
+            public void onWarning(String message) {
+                warn(message);
+            }
+        };
+        try {
+            RentalJournal.replay(dataDir.resolve(ARCHIVE_FILE), 0, archiveLength, collector);
+            RentalJournal.replay(journal.getFile(), archivedThrough, historyLoadedFrom, collector);
         } catch (IOException e) {
-            System.out.println("Error loading customers: " + e.getMessage());
+            persistenceError("Error loading archived history", e);
+            return;
         }
+        rentalHistory.prependRecords(older);
+        historyComplete = true;
+    }
 
-        // Load rental records
-        try (BufferedReader reader = new BufferedReader(new FileReader("rental_records.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String plate = parts[0];
-                    int customerId = Integer.parseInt(parts[1]);
-                    LocalDate date = LocalDate.parse(parts[2]);
-                    double amount = Double.parseDouble(parts[3]);
-                    String type = parts[4];
+    public RentalAggregates getAggregates() {
+        return aggregates;
+    }
+
+    // The complete rental history, loading archived records on first use
+    public RentalHistory getRentalHistory() {
+        if (!historyComplete) {
+            ensureFullHistory();
+        }
+        return rentalHistory;
+    }
+
+    // Recomputes the revenue aggregates and open rentals from every record on disk. Records
+    // that were not loaded into the history are streamed from the archive and journal without
+    // being kept.
+    private void rebuildRevenue() {
+        aggregates.clearRevenue();
+        openRentals.clear();
+        if (!historyComplete) {
+            RentalJournal.Listener summer = new RentalJournal.Listener() {
+                @Override
+                public void onVehicle(Vehicle vehicle) { }
+
+                @Override
+                public void onCustomer(Customer customer) { }
+
+                @Override
+                public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
                     Vehicle vehicle = findVehicleByPlate(plate);
-                    Customer customer = findCustomerById(String.valueOf(customerId));
-                    if (vehicle != null && customer != null) {
-                        rentalHistory.addRecord(new RentalRecord(vehicle, customer, date, amount, type));
-                        if (type.equals("RENT")) {
-                            vehicle.setStatus(Vehicle.VehicleStatus.RENTED);
-                        } else if (type.equals("RETURN")) {
-                            vehicle.setStatus(Vehicle.VehicleStatus.AVAILABLE);
-                        }
+                    if (vehicle != null && findCustomerById(customerId) != null) {
+                        aggregates.recordAdded(vehicle, customerId, date, amount);
+                        trackOpenRental(vehicle, customerId, date, amount, type);
                     }
                 }
+            };
+            try {
+                RentalJournal.replay(dataDir.resolve(ARCHIVE_FILE), 0, archiveLength, summer);
+                RentalJournal.replay(journal.getFile(), archivedThrough, historyLoadedFrom, summer);
+            } catch (IOException e) {
+                persistenceError("Error reading archived history for revenue totals", e);
             }
-        } catch (IOException e) {
-            System.out.println("Error loading rental records: " + e.getMessage());
+        }
+        rentalHistory.scan((vehicle, customerId, epochDay, amount, type) -> {
+            if (vehicle != null) {
+                LocalDate date = LocalDate.ofEpochDay(epochDay);
+                aggregates.recordAdded(vehicle, customerId, date, amount);
+                trackOpenRental(vehicle, customerId, date, amount, type);
+            }
+        });
+        openRentals.keySet().removeIf(vehicle -> vehicle.getStatus() != Vehicle.VehicleStatus.RENTED);
+    }
+
+    // Keeps the latest RENT of each vehicle until its RETURN, for pricing the return
+    private void trackOpenRental(Vehicle vehicle, int customerId, LocalDate date, double amount, String type) {
+        if ("RENT".equals(type)) {
+            openRentals.put(vehicle, new RentalRecord(vehicle, findCustomerById(customerId), date, amount, type));
+        } else if ("RETURN".equals(type)) {
+            openRentals.remove(vehicle);
+        }
+    }
+
+    // Replays the journal tail across a ForkJoinPool: chunks of the journal are decoded in
+    // parallel, their vehicles and customers are registered in file order, each chunk's
+    // records are then resolved in parallel, and finally the records are appended to the
+    // history in file order and every vehicle takes the status of its last event.
+    private RentalJournal openJournalParallel(Path journalFile, RentalJournal.FsyncPolicy fsyncPolicy,
+                                              long fsyncIntervalMillis, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            RentalJournal.ParallelReplay<ChunkLoader> replay =
+                    RentalJournal.replayParallel(journalFile, historyLoadedFrom, pool, ChunkLoader::new);
+            List<ChunkLoader> chunks = replay.getListeners();
+            List<ForkJoinTask<?>> resolves = new ArrayList<>();
+            for (ChunkLoader chunk : chunks) {
+                chunk.register();
+                resolves.add(ForkJoinTask.adapt(chunk::resolve));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(resolves)));
+            for (ChunkLoader chunk : chunks) {
+                chunk.apply();
+            }
+            return RentalJournal.openReplayed(journalFile, fsyncPolicy, fsyncIntervalMillis, replay.getEnd());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The status a vehicle is left in by a record of this type, or null if it doesn't change
+    private static Vehicle.VehicleStatus statusAfter(String recordType) {
+        if (recordType.equals("RENT")) {
+            return Vehicle.VehicleStatus.RENTED;
+        } else if (recordType.equals("RETURN")) {
+            return Vehicle.VehicleStatus.AVAILABLE;
+        }
+        return null;
+    }
+
+    // Rebuilds in-memory state from journal entries
+    private class JournalLoader implements RentalJournal.Listener {
+        @Override
+        public void onVehicle(Vehicle vehicle) {
+            registerVehicle(vehicle);
+        }
+
+        @Override
+        public void onCustomer(Customer customer) {
+            registerCustomer(customer);
+        }
+
+        @Override
+        public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
+            Vehicle vehicle = findVehicleByPlate(plate);
+            Customer customer = findCustomerById(customerId);
+            if (vehicle != null && customer != null) {
+                rentalHistory.addRecord(new RentalRecord(vehicle, customer, date, amount, type));
+                Vehicle.VehicleStatus status = statusAfter(type);
+                if (status != null) {
+                    vehicle.setStatus(status);
+                }
+                if ("RENT".equals(type)) {
+                    maintenance.addRentals(vehicle, 1);
+                }
+            }
+        }
+
+        @Override
+        public void onStatus(String plate, Vehicle.VehicleStatus status) {
+            Vehicle vehicle = findVehicleByPlate(plate);
+            if (vehicle != null) {
+                vehicle.setStatus(status);
+            }
+        }
+
+        @Override
+        public void onService(String plate, long lastServiceMillis, int rentalsSinceService) {
+            Vehicle vehicle = findVehicleByPlate(plate);
+            if (vehicle != null) {
+                maintenance.setService(vehicle, lastServiceMillis, rentalsSinceService);
+            }
+        }
+
+        @Override
+        public void onReservation(long id, String plate, int customerId, LocalDate startDate, LocalDate endDate) {
+            restoreReservation(id, plate, customerId, startDate, endDate);
+        }
+
+        @Override
+        public void onReservationEnd(long id) {
+            reservations.remove(id);
+        }
+
+        @Override
+        public void onCheckpoint(long journalOffset, long archiveLength, long archivedThrough) {
+            historyLoadedFrom = journalOffset;
+            RentalSystem.this.archiveLength = archiveLength;
+            RentalSystem.this.archivedThrough = archivedThrough;
+        }
+
+        @Override
+        public void onWarning(String message) {
+            warn(message);
+        }
+    }
+
+    // One chunk of a parallel replay, see openJournalParallel
+    private class ChunkLoader implements RentalJournal.Listener {
+        private final List<Vehicle> chunkVehicles = new ArrayList<>();
+        private final List<Customer> chunkCustomers = new ArrayList<>();
+        private List<ReplayedEvent> events = new ArrayList<>();
+        private final List<RentalRecord> records = new ArrayList<>();
+        private final Map<Vehicle, Vehicle.VehicleStatus> lastStatus = new IdentityHashMap<>();
+        // The chunk's last service state per vehicle, and the rentals counted after it
+        private final Map<Vehicle, ReplayedEvent> lastService = new IdentityHashMap<>();
+        private final Map<Vehicle, int[]> rentals = new IdentityHashMap<>();
+        // Reservations are rare, so they are simply replayed in order in apply()
+        private final List<Runnable> reservationEvents = new ArrayList<>();
+
+        @Override
+        public void onVehicle(Vehicle vehicle) {
+            chunkVehicles.add(vehicle);
+        }
+
+        @Override
+        public void onCustomer(Customer customer) {
+            chunkCustomers.add(customer);
+        }
+
+        @Override
+        public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
+            events.add(new ReplayedEvent(plate, customerId, date, amount, type, null));
+        }
+
+        @Override
+        public void onStatus(String plate, Vehicle.VehicleStatus status) {
+            events.add(new ReplayedEvent(plate, 0, null, 0, null, status));
+        }
+
+        @Override
+        public void onService(String plate, long lastServiceMillis, int rentalsSinceService) {
+            events.add(new ReplayedEvent(plate, lastServiceMillis, rentalsSinceService));
+        }
+
+        @Override
+        public void onReservation(long id, String plate, int customerId, LocalDate startDate, LocalDate endDate) {
+            reservationEvents.add(() -> restoreReservation(id, plate, customerId, startDate, endDate));
+        }
+
+        @Override
+        public void onReservationEnd(long id) {
+            reservationEvents.add(() -> reservations.remove(id));
+        }
+
+        @Override
+        public void onWarning(String message) {
+            warn(message);
+        }
+
+        // Sequential, in chunk order
+        void register() {
+            for (Vehicle vehicle : chunkVehicles) {
+                registerVehicle(vehicle);
+            }
+            for (Customer customer : chunkCustomers) {
+                registerCustomer(customer);
+            }
+        }
+
+        // Parallel across chunks, once every chunk is registered
+        void resolve() {
+            for (ReplayedEvent event : events) {
+                Vehicle vehicle = findVehicleByPlate(event.plate);
+                if (vehicle == null) {
+                    continue;
+                }
+                if (event.status != null) {
+                    lastStatus.put(vehicle, event.status);
+                    continue;
+                }
+                if (event.type == null) {
+                    lastService.put(vehicle, event);
+                    rentals.remove(vehicle);
+                    continue;
+                }
+                Customer customer = findCustomerById(event.customerId);
+                if (customer != null) {
+                    records.add(new RentalRecord(vehicle, customer, event.date, event.amount, event.type));
+                    Vehicle.VehicleStatus status = statusAfter(event.type);
+                    if (status != null) {
+                        lastStatus.put(vehicle, status);
+                    }
+                    if (event.type.equals("RENT")) {
+                        rentals.computeIfAbsent(vehicle, k -> new int[1])[0]++;
+                    }
+                }
+            }
+            events = null;
+        }
+
+        // Sequential, in chunk order, so later chunks win
+        void apply() {
+            rentalHistory.addRecords(records);
+            lastStatus.forEach(Vehicle::setStatus);
+            lastService.forEach((vehicle, event) -> maintenance.setService(vehicle, event.serviceMillis, event.rentals));
+            rentals.forEach((vehicle, count) -> maintenance.addRentals(vehicle, count[0]));
+            reservationEvents.forEach(Runnable::run);
+        }
+    }
+
+    // A record, a status change when status is set, or a vehicle's service state when
+    // neither type nor status is
+    private static final class ReplayedEvent {
+        final String plate;
+        final int customerId;
+        final LocalDate date;
+        final double amount;
+        final String type;
+        final Vehicle.VehicleStatus status;
+        final long serviceMillis;
+        final int rentals;
+
+        ReplayedEvent(String plate, int customerId, LocalDate date, double amount, String type,
+                      Vehicle.VehicleStatus status) {
+            this.plate = plate;
+            this.customerId = customerId;
+            this.date = date;
+            this.amount = amount;
+            this.type = type;
+            this.status = status;
+            this.serviceMillis = 0;
+            this.rentals = 0;
+        }
+
+        ReplayedEvent(String plate, long serviceMillis, int rentals) {
+            this.plate = plate;
+            this.customerId = 0;
+            this.date = null;
+            this.amount = 0;
+            this.type = null;
+            this.status = null;
+            this.serviceMillis = serviceMillis;
+            this.rentals = rentals;
         }
     }
 
-    
     public void displayVehicles(boolean onlyAvailable) {
         System.out.println("|     Type         |\tPlate\t|\tMake\t|\tModel\t|\tYear\t|");
         System.out.println("---------------------------------------------------------------------------------");
-        for (Vehicle v : vehicles) {
-            if (!onlyAvailable || v.getStatus() == Vehicle.VehicleStatus.AVAILABLE) {
-                System.out.println("|     " + (v instanceof Car ? "Car          " : v instanceof Motorcycle ? "Motorcycle   " : "Truck        ") + "|\t" + v.getLicensePlate() + "\t|\t" + v.getMake() + "\t|\t" + v.getModel() + "\t|\t" + v.getYear() + "\t|\t");
+        // Rows are built in one reused buffer and printed in large chunks, like displayRentalHistory
+        StringBuilder output = new StringBuilder(1 << 16);
+        for (Vehicle v : getVehicles(onlyAvailable)) {
+            output.append("|     ");
+            int typeStart = output.length();
+            output.append(v.getClass().getSimpleName());
+            while (output.length() - typeStart < 13) {
+                output.append(' ');
+            }
+            output.append("|\t").append(v.getLicensePlate()).append("\t|\t").append(v.getMake())
+                    .append("\t|\t").append(v.getModel()).append("\t|\t").append(v.getYear()).append("\t|\t")
+                    .append(System.lineSeparator());
+            if (output.length() >= 1 << 15) {
+                System.out.print(output);
+                output.setLength(0);
             }
         }
+        System.out.print(output);
         System.out.println();
     }
 
+    // Vehicles in registration order, optionally only those currently available
+    public List<Vehicle> getVehicles(boolean onlyAvailable) {
+        if (onlyAvailable) {
+            return findVehicles(null, Vehicle.VehicleStatus.AVAILABLE, 0, Integer.MAX_VALUE);
+        }
+        return vehicleList();
+    }
+
+    // One page of the vehicles of exactly the given class in the given status, in
+    // registration order; a null type or status matches any. Only matching vehicles are visited.
+    public List<Vehicle> findVehicles(Class<? extends Vehicle> type, Vehicle.VehicleStatus status, int offset, int limit) {
+        return availability.find(type, status, Math.max(offset, 0), limit);
+    }
+
+    public int countVehicles(Class<? extends Vehicle> type, Vehicle.VehicleStatus status) {
+        return availability.count(type, status);
+    }
+
     public void displayAllCustomers() {
-        for (Customer c : customers) {
+        for (Customer c : customerList()) {
             System.out.println("  " + c.toString());
         }
     }
 
+    // Printed in large chunks rather than a synchronized println per record
     public void displayRentalHistory() {
-        for (RentalRecord record : rentalHistory.getRentalHistory()) {
-            System.out.println(record.toString());
+        StringBuilder output = new StringBuilder(1 << 16);
+        for (RentalRecord record : getRentalHistory().getRentalHistory()) {
+            output.append(record).append(System.lineSeparator());
+            if (output.length() >= 1 << 15) {
+                System.out.print(output);
+                output.setLength(0);
+            }
         }
+        System.out.print(output);
     }
 
     public Vehicle findVehicleByPlate(String plate) {
-        for (Vehicle v : personally {
-            if (v.getLicensePlate().equalsIgnoreCase(plate)) {
-                return v;
+        long start = RentalMetrics.start();
+        String key = plateKey(plate);
+        Vehicle vehicle = key == null ? null : vehiclesByPlate.get(key);
+        metrics.record(RentalMetrics.Operation.FIND_VEHICLE, start, vehicle != null);
+        return vehicle;
+    }
+
+    // Up to limit customers matching what was typed: names whose words start with the
+    // query's words first, then names within a typo of them. See CustomerIndex.
+    public List<Customer> findCustomers(String query, int limit) {
+        long start = RentalMetrics.start();
+        List<Customer> found = customerIndex.search(query, limit);
+        if (found.size() < limit) {
+            for (Customer customer : customerIndex.searchFuzzy(query, limit)) {
+                if (found.size() < limit && !found.contains(customer)) {
+                    found.add(customer);
+                }
             }
         }
-        return null;
+        metrics.record(RentalMetrics.Operation.SEARCH_CUSTOMERS, start);
+        return found;
     }
 
     public Customer findCustomerById(String id) {
-        for (Customer c : customers) {
-            if (c.getCustomerId() == Integer.parseInt(id)) {
-                return c;
-            }
+        try {
+            return findCustomerById(Integer.parseInt(id.trim()));
+        } catch (NumberFormatException | NullPointerException e) {
+            return null;
         }
-        return null;
     }
-}
\ No newline at end of file
+
+    public Customer findCustomerById(int id) {
+        long start = RentalMetrics.start();
+        Customer customer;
+        registryLock.readLock().lock();
+        try {
+            customer = customersById.get(id);
+        } finally {
+            registryLock.readLock().unlock();
+        }
+        metrics.record(RentalMetrics.Operation.FIND_CUSTOMER, start, customer != null);
+        return customer;
+    }
+}
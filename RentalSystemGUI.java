@@ -1,16 +1,37 @@
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
+// Every RentalSystem call runs on a single background thread, in the order the buttons
+// were pressed, so journal writes and the initial load never block the FX thread.
+// Results are handed back to the FX thread to update the labels.
 public class RentalSystemGUI extends Application {
 
-    private RentalSystem rentalSystem = RentalSystem.getInstance();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rental-gui-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Loading starts as soon as the window is created, not when it is first needed
+    private final CompletableFuture<RentalSystem> rentalSystem =
+            CompletableFuture.supplyAsync(RentalSystem::getInstance, worker);
 
     @Override
     public void start(Stage primaryStage) {
@@ -26,11 +47,55 @@ public class RentalSystemGUI extends Application {
                 createRentalHistoryTab()
         );
 
-        Scene scene = new Scene(tabPane, 800, 600);
+        tabPane.setDisable(true);
+
+        ProgressIndicator progress = new ProgressIndicator();
+        Label loadingLabel = new Label("Loading rental data...");
+        VBox loading = new VBox(10, progress, loadingLabel);
+        loading.setAlignment(Pos.CENTER);
+        StackPane root = new StackPane(tabPane, loading);
+
+        rentalSystem.whenComplete((system, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                progress.setVisible(false);
+                loadingLabel.setText("Could not load rental data: " + cause(error).getMessage());
+            } else {
+                root.getChildren().remove(loading);
+                tabPane.setDisable(false);
+            }
+        }));
+
+        Scene scene = new Scene(root, 800, 600);
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        // The system's shutdown hook flushes the journal once queued work has finished
+        worker.shutdown();
+    }
+
+    // Runs task on the worker once loading is done, then passes its result, or the error
+    // it threw, to the FX thread. The button stays disabled while the task is in flight.
+    private <T> void runInBackground(Button button, Label status, Function<RentalSystem, T> task,
+                                     Consumer<T> onResult, Consumer<Throwable> onError) {
+        button.setDisable(true);
+        status.setText("Working...");
+        rentalSystem.thenApplyAsync(task, worker).whenComplete((result, error) -> Platform.runLater(() -> {
+            button.setDisable(false);
+            if (error != null) {
+                onError.accept(cause(error));
+            } else {
+                onResult.accept(result);
+            }
+        }));
+    }
+
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     private Tab createAddCustomerTab() {
         TextField idField = new TextField();
         TextField nameField = new TextField();
@@ -38,15 +103,18 @@ public class RentalSystemGUI extends Application {
         Label resultLabel = new Label();
 
         addButton.setOnAction(e -> {
+            Customer customer;
             try {
                 int id = Integer.parseInt(idField.getText());
                 String name = nameField.getText();
-                Customer customer = new Customer(id, name);
-                boolean success = rentalSystem.addCustomer(customer);
-                resultLabel.setText(success ? "Customer added." : "Customer already exists.");
+                customer = new Customer(id, name);
             } catch (Exception ex) {
                 resultLabel.setText("Invalid ID");
+                return;
             }
+            runInBackground(addButton, resultLabel, system -> system.addCustomer(customer),
+                    success -> resultLabel.setText(success ? "Customer added." : "Customer already exists."),
+                    ex -> resultLabel.setText("Could not add customer: " + ex.getMessage()));
         });
 
         VBox layout = new VBox(10, new Label("Customer ID:"), idField,
@@ -68,13 +136,13 @@ public class RentalSystemGUI extends Application {
         Label resultLabel = new Label();
 
         addButton.setOnAction(e -> {
+            Vehicle vehicle = null;
             try {
                 String type = typeBox.getValue();
                 String plate = plateField.getText();
                 String make = makeField.getText();
                 String model = modelField.getText();
                 int year = Integer.parseInt(yearField.getText());
-                Vehicle vehicle = null;
                 if (type.equals("Car")) {
                     int seats = Integer.parseInt(extraField.getText());
                     vehicle = new Car(make, model, year, seats);
@@ -86,11 +154,14 @@ public class RentalSystemGUI extends Application {
                     vehicle = new Truck(make, model, year, capacity);
                 }
                 vehicle.setLicensePlate(plate);
-                boolean success = rentalSystem.addVehicle(vehicle);
-                resultLabel.setText(success ? "Vehicle added." : "Vehicle already exists.");
             } catch (Exception ex) {
                 resultLabel.setText("Invalid input.");
+                return;
             }
+            Vehicle added = vehicle;
+            runInBackground(addButton, resultLabel, system -> system.addVehicle(added),
+                    success -> resultLabel.setText(success ? "Vehicle added." : "Vehicle already exists."),
+                    ex -> resultLabel.setText("Could not add vehicle: " + ex.getMessage()));
         });
 
         VBox layout = new VBox(10,
@@ -114,18 +185,25 @@ public class RentalSystemGUI extends Application {
         Label resultLabel = new Label();
 
         rentButton.setOnAction(e -> {
-            Vehicle v = rentalSystem.findVehicleByPlate(plateField.getText().toUpperCase());
-            Customer c = rentalSystem.findCustomerById(customerIdField.getText());
+            String plate = plateField.getText().toUpperCase();
+            String customerId = customerIdField.getText();
+            double amt;
             try {
-                double amt = Double.parseDouble(amountField.getText());
-                if (v == null || c == null) {
-                    resultLabel.setText("Vehicle or customer not found.");
-                } else {
-                    rentalSystem.rentVehicle(v, c, LocalDate.now(), amt);
-                }
+                amt = Double.parseDouble(amountField.getText());
             } catch (Exception ex) {
                 resultLabel.setText("Invalid amount.");
+                return;
             }
+            runInBackground(rentButton, resultLabel, system -> {
+                Vehicle v = system.findVehicleByPlate(plate);
+                Customer c = system.findCustomerById(customerId);
+                if (v == null || c == null) {
+                    return null;
+                }
+                return system.rentVehicle(v, c, LocalDate.now(), amt);
+            }, done -> resultLabel.setText(done == null ? "Vehicle or customer not found."
+                    : done ? "Vehicle rented." : "Vehicle is not available."),
+                    ex -> resultLabel.setText("Could not rent vehicle: " + ex.getMessage()));
         });
 
         VBox layout = new VBox(10, new Label("Plate:"), plateField,
@@ -145,18 +223,25 @@ public class RentalSystemGUI extends Application {
         Label resultLabel = new Label();
 
         returnButton.setOnAction(e -> {
-            Vehicle v = rentalSystem.findVehicleByPlate(plateField.getText().toUpperCase());
-            Customer c = rentalSystem.findCustomerById(customerIdField.getText());
+            String plate = plateField.getText().toUpperCase();
+            String customerId = customerIdField.getText();
+            double fee;
             try {
-                double fee = Double.parseDouble(feeField.getText());
-                if (v == null || c == null) {
-                    resultLabel.setText("Vehicle or customer not found.");
-                } else {
-                    rentalSystem.returnVehicle(v, c, LocalDate.now(), fee);
-                }
+                fee = Double.parseDouble(feeField.getText());
             } catch (Exception ex) {
                 resultLabel.setText("Invalid fee.");
+                return;
             }
+            runInBackground(returnButton, resultLabel, system -> {
+                Vehicle v = system.findVehicleByPlate(plate);
+                Customer c = system.findCustomerById(customerId);
+                if (v == null || c == null) {
+                    return null;
+                }
+                return system.returnVehicle(v, c, LocalDate.now(), fee);
+            }, done -> resultLabel.setText(done == null ? "Vehicle or customer not found."
+                    : done ? "Vehicle returned." : "Vehicle is not rented."),
+                    ex -> resultLabel.setText("Could not return vehicle: " + ex.getMessage()));
         });
 
         VBox layout = new VBox(10, new Label("Plate:"), plateField,
@@ -168,32 +253,166 @@ public class RentalSystemGUI extends Application {
         return new Tab("Return Vehicle", layout);
     }
 
+    private static final int PAGE_SIZE = 100;
+
+    // Rows for one page of a table, with how many rows match the query in total
+    private static class PageRows<T> {
+        final List<T> rows;
+        final int total;
+
+        PageRows(List<T> rows, int total) {
+            this.rows = rows;
+            this.total = total;
+        }
+    }
+
+    // Reads the filter controls on the FX thread and returns the query they describe
+    private interface PageQuery<T> {
+        PageFetch<T> fromFilters();
+    }
+
+    // Runs on the worker; fetches the rows in [offset, offset + limit) of the query
+    private interface PageFetch<T> {
+        PageRows<T> fetch(RentalSystem system, int offset, int limit);
+    }
+
+    // Only one page of rows is ever held by the table, and the table itself only builds
+    // cells for the rows on screen. Pressing search takes the filters as they are and goes
+    // back to the first page; paging keeps the filters of the last search.
+    private <T> Pagination pagedTable(TableView<T> table, Button search, Label status, PageQuery<T> query) {
+        AtomicReference<PageFetch<T>> current = new AtomicReference<>(query.fromFilters());
+        Pagination pagination = new Pagination(1, 0);
+        pagination.setMaxHeight(Region.USE_PREF_SIZE);
+        pagination.setPageFactory(page -> {
+            loadPage(table, pagination, search, status, current.get(), page);
+            return new Region();
+        });
+        search.setOnAction(e -> {
+            current.set(query.fromFilters());
+            if (pagination.getCurrentPageIndex() == 0) {
+                loadPage(table, pagination, search, status, current.get(), 0);
+            } else {
+                pagination.setCurrentPageIndex(0);
+            }
+        });
+        return pagination;
+    }
+
+    private <T> void loadPage(TableView<T> table, Pagination pagination, Button search, Label status,
+                              PageFetch<T> fetch, int page) {
+        runInBackground(search, status, system -> fetch.fetch(system, page * PAGE_SIZE, PAGE_SIZE), result -> {
+            table.getItems().setAll(result.rows);
+            pagination.setPageCount(Math.max(1, (result.total + PAGE_SIZE - 1) / PAGE_SIZE));
+            status.setText(result.total + " found.");
+        }, ex -> status.setText("Query failed: " + ex.getMessage()));
+    }
+
+    private static <S> TableColumn<S, String> column(String title, Function<S, Object> value) {
+        TableColumn<S, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(String.valueOf(value.apply(cell.getValue()))));
+        // Sorting is done by the query, over every match rather than the page on screen
+        column.setSortable(false);
+        return column;
+    }
+
     private Tab createViewVehiclesTab() {
-        TextArea output = new TextArea();
-        output.setEditable(false);
-        Button refresh = new Button("Refresh List");
+        ComboBox<String> typeBox = new ComboBox<>();
+        typeBox.getItems().addAll("Any", "Car", "SportCar", "Motorcycle", "Truck");
+        typeBox.setValue("Any");
+        ComboBox<String> statusBox = new ComboBox<>();
+        statusBox.getItems().add("Any");
+        for (Vehicle.VehicleStatus s : Vehicle.VehicleStatus.values()) {
+            statusBox.getItems().add(s.name());
+        }
+        statusBox.setValue(Vehicle.VehicleStatus.AVAILABLE.name());
+        TextField plateField = new TextField();
+        plateField.setPromptText("Plate");
+        Button search = new Button("Search");
+        Label status = new Label();
+
+        TableView<Vehicle> table = new TableView<>();
+        table.getColumns().add(column("Type", v -> v.getClass().getSimpleName()));
+        table.getColumns().add(column("Plate", Vehicle::getLicensePlate));
+        table.getColumns().add(column("Make", Vehicle::getMake));
+        table.getColumns().add(column("Model", Vehicle::getModel));
+        table.getColumns().add(column("Year", Vehicle::getYear));
+        table.getColumns().add(column("Status", Vehicle::getStatus));
 
-        refresh.setOnAction(e -> {
-            output.clear();
-            rentalSystem.displayVehicles(true);
+        Pagination pagination = pagedTable(table, search, status, () -> {
+            Class<? extends Vehicle> type = vehicleClass(typeBox.getValue());
+            Vehicle.VehicleStatus vehicleStatus = statusBox.getValue().equals("Any")
+                    ? null : Vehicle.VehicleStatus.valueOf(statusBox.getValue());
+            String plate = plateField.getText().trim().toUpperCase();
+            return (system, offset, limit) -> {
+                if (!plate.isEmpty()) {
+                    Vehicle v = system.findVehicleByPlate(plate);
+                    boolean matches = v != null && (type == null || v.getClass() == type)
+                            && (vehicleStatus == null || v.getStatus() == vehicleStatus);
+                    return new PageRows<>(matches && offset == 0 ? List.of(v) : List.of(), matches ? 1 : 0);
+                }
+                return new PageRows<>(system.findVehicles(type, vehicleStatus, offset, limit),
+                        system.countVehicles(type, vehicleStatus));
+            };
         });
 
-        VBox layout = new VBox(10, refresh, output);
+        HBox filters = new HBox(10, new Label("Type:"), typeBox, new Label("Status:"), statusBox, plateField, search);
+        VBox layout = new VBox(10, filters, status, table, pagination);
+        VBox.setVgrow(table, Priority.ALWAYS);
         layout.setPadding(new Insets(10));
-        return new Tab("Available Vehicles", layout);
+        return new Tab("Vehicles", layout);
+    }
+
+    private static Class<? extends Vehicle> vehicleClass(String name) {
+        switch (name) {
+            case "Car":
+                return Car.class;
+            case "SportCar":
+                return SportCar.class;
+            case "Motorcycle":
+                return Motorcycle.class;
+            case "Truck":
+                return Truck.class;
+            default:
+                return null;
+        }
     }
 
     private Tab createRentalHistoryTab() {
-        TextArea output = new TextArea();
-        output.setEditable(false);
-        Button refresh = new Button("Refresh History");
+        TextField plateField = new TextField();
+        plateField.setPromptText("Plate");
+        DatePicker fromPicker = new DatePicker();
+        DatePicker toPicker = new DatePicker();
+        ComboBox<String> sortBox = new ComboBox<>();
+        sortBox.getItems().addAll("Newest first", "Oldest first", "Plate");
+        sortBox.setValue("Newest first");
+        Button search = new Button("Search");
+        Label status = new Label();
+
+        TableView<RentalRecord> table = new TableView<>();
+        table.getColumns().add(column("Date", RentalRecord::getRecordDate));
+        table.getColumns().add(column("Type", RentalRecord::getRecordType));
+        table.getColumns().add(column("Plate", r -> r.getVehicle() == null ? "" : r.getVehicle().getLicensePlate()));
+        table.getColumns().add(column("Customer", r -> r.getCustomer() == null ? "" : r.getCustomer().getCustomerName()));
+        table.getColumns().add(column("Amount", r -> String.format("%.2f", r.getTotalAmount())));
 
-        refresh.setOnAction(e -> {
-            output.clear();
-            rentalSystem.displayRentalHistory();
+        Pagination pagination = pagedTable(table, search, status, () -> {
+            String plate = plateField.getText().trim().isEmpty() ? null : plateField.getText().trim();
+            LocalDate from = fromPicker.getValue();
+            LocalDate to = toPicker.getValue();
+            RentalHistory.SortKey sort = sortBox.getValue().equals("Plate")
+                    ? RentalHistory.SortKey.PLATE : RentalHistory.SortKey.DATE;
+            boolean descending = sortBox.getValue().equals("Newest first");
+            return (system, offset, limit) -> {
+                RentalHistory.Page page = system.getRentalHistory()
+                        .findRecords(plate, from, to, sort, descending, offset, limit);
+                return new PageRows<>(page.getRecords(), page.getTotal());
+            };
         });
 
-        VBox layout = new VBox(10, refresh, output);
+        HBox filters = new HBox(10, plateField, new Label("From:"), fromPicker, new Label("To:"), toPicker,
+                new Label("Sort:"), sortBox, search);
+        VBox layout = new VBox(10, filters, status, table, pagination);
+        VBox.setVgrow(table, Priority.ALWAYS);
         layout.setPadding(new Insets(10));
         return new Tab("Rental History", layout);
     }
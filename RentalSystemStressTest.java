@@ -0,0 +1,222 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Hammers one RentalSystem from many threads
+public class RentalSystemStressTest {
+
+    private static final int VEHICLES = 500;
+    private static final int CUSTOMERS = 50;
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    private static List<Vehicle> addFleet(RentalSystem system) {
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < VEHICLES; i++) {
+            Vehicle car = new Car("Toyota", "Corolla", 2020, 5);
+            car.setLicensePlate(String.format("STR%03d", i));
+            system.addVehicle(car);
+            fleet.add(car);
+        }
+        for (int i = 0; i < CUSTOMERS; i++) {
+            system.addCustomer(new Customer(i, "Customer " + i));
+        }
+        return fleet;
+    }
+
+    @Test
+    void testNoDoubleRentals(@TempDir Path dir) throws Exception {
+        RentalSystem system = RentalSystem.openAt(dir);
+        List<Vehicle> fleet = addFleet(system);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rented = new AtomicInteger();
+
+        // Every thread tries to rent every vehicle; each one may only be rented once
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int customerId = t % CUSTOMERS;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Customer customer = system.findCustomerById(customerId);
+                for (Vehicle vehicle : fleet) {
+                    if (system.rentVehicle(vehicle, customer, DAY, 50.0)) {
+                        rented.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        assertEquals(VEHICLES, rented.get());
+        for (Vehicle vehicle : fleet) {
+            assertEquals(Vehicle.VehicleStatus.RENTED, vehicle.getStatus());
+            assertEquals(1, system.getRentalHistory().getRecordsForVehicle(vehicle.getLicensePlate()).size());
+        }
+
+        // Random rents and returns; each vehicle's records must strictly alternate
+        runMixedLoad(system, fleet, threads, 2000, pool);
+        for (Vehicle vehicle : fleet) {
+            List<RentalRecord> records = system.getRentalHistory().getRecordsForVehicle(vehicle.getLicensePlate());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i % 2 == 0 ? "RENT" : "RETURN", records.get(i).getRecordType(),
+                        "Out of order record for " + vehicle.getLicensePlate());
+            }
+            Vehicle.VehicleStatus expected = records.size() % 2 == 1 ? Vehicle.VehicleStatus.RENTED : Vehicle.VehicleStatus.AVAILABLE;
+            assertEquals(expected, vehicle.getStatus());
+        }
+        pool.shutdown();
+        system.shutdown();
+    }
+
+    @Test
+    void testMixedLoadKeepsTotals(@TempDir Path dir) throws Exception {
+        RentalSystem system = RentalSystem.openAt(dir);
+        List<Vehicle> fleet = addFleet(system);
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            runMixedLoad(system, fleet, threads, 2000, pool);
+            pool.shutdown();
+
+            // Status counts and revenue kept incrementally agree with the vehicles and the history
+            int rented = 0;
+            int rents = 0;
+            for (Vehicle vehicle : fleet) {
+                if (vehicle.getStatus() == Vehicle.VehicleStatus.RENTED) {
+                    rented++;
+                }
+                for (RentalRecord record : system.getRentalHistory().getRecordsForVehicle(vehicle.getLicensePlate())) {
+                    if (record.getRecordType().equals("RENT")) {
+                        rents++;
+                    }
+                }
+            }
+            RentalAggregates aggregates = system.getAggregates();
+            assertEquals(rented, aggregates.getCount(Vehicle.VehicleStatus.RENTED), "threads=" + threads);
+            assertEquals(VEHICLES - rented, aggregates.getCount(Vehicle.VehicleStatus.AVAILABLE), "threads=" + threads);
+            assertEquals(rents * 50.0, aggregates.getTotalRevenue(), 1e-6, "threads=" + threads);
+        }
+
+        // The statuses survive a restart
+        List<Vehicle.VehicleStatus> statuses = new ArrayList<>();
+        for (Vehicle vehicle : fleet) {
+            statuses.add(vehicle.getStatus());
+        }
+        system.shutdown();
+        RentalSystem reopened = RentalSystem.openAt(dir);
+        for (int i = 0; i < fleet.size(); i++) {
+            assertEquals(statuses.get(i), reopened.findVehicleByPlate(fleet.get(i).getLicensePlate()).getStatus());
+        }
+        reopened.shutdown();
+    }
+
+    @Test
+    void testRentsDuringBulkImportSurviveRestart(@TempDir Path dir) throws Exception {
+        // The sequential loader is the one that drops a RENT read before its vehicle or customer
+        System.setProperty("rental.loadThreads", "1");
+        try {
+            Path vehiclesDir = Files.createDirectories(dir.resolve("vehicles"));
+            RentalSystem system = RentalSystem.openAt(vehiclesDir);
+            addFleet(system);
+            List<Vehicle> batch = new ArrayList<>();
+            for (int i = 0; i < VEHICLES; i++) {
+                Vehicle car = new Car("Skoda", "Octavia", 2022, 5);
+                car.setLicensePlate(String.format("BLK%03d", i));
+                batch.add(car);
+            }
+            rentWhileAdding(system, vehiclesDir, VEHICLES,
+                    i -> system.findVehicleByPlate(String.format("BLK%03d", i)),
+                    i -> system.findCustomerById(i % CUSTOMERS), () -> system.addVehicles(batch));
+
+            Path customersDir = Files.createDirectories(dir.resolve("customers"));
+            RentalSystem other = RentalSystem.openAt(customersDir);
+            List<Vehicle> fleet = addFleet(other);
+            List<Customer> customers = new ArrayList<>();
+            for (int i = 0; i < VEHICLES; i++) {
+                customers.add(new Customer(1000 + i, "Imported " + i));
+            }
+            rentWhileAdding(other, customersDir, VEHICLES, fleet::get, i -> other.findCustomerById(1000 + i),
+                    () -> other.addCustomers(customers));
+        } finally {
+            System.clearProperty("rental.loadThreads");
+        }
+    }
+
+    // Rents vehicle i to customer i the moment both can be looked up, while add registers
+    // them, then reopens without a shutdown. Every rent must come back, which it only does
+    // if the journal got the vehicle and the customer ahead of the RENT.
+    private static void rentWhileAdding(RentalSystem system, Path dir, int count, IntFunction<Vehicle> vehicleAt,
+                                        IntFunction<Customer> customerAt, Runnable add) throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> renter = pool.submit(() -> {
+            for (int i = 0; i < count; i++) {
+                Vehicle vehicle;
+                Customer customer;
+                while ((vehicle = vehicleAt.apply(i)) == null || (customer = customerAt.apply(i)) == null) {
+                    Thread.onSpinWait();
+                }
+                assertTrue(system.rentVehicle(vehicle, customer, DAY, 50.0));
+            }
+            return null;
+        });
+        add.run();
+        renter.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        system.getRecordWriter().flush();
+
+        RentalSystem reopened = RentalSystem.openAt(dir);
+        for (int i = 0; i < count; i++) {
+            String plate = vehicleAt.apply(i).getLicensePlate();
+            assertEquals(Vehicle.VehicleStatus.RENTED, reopened.findVehicleByPlate(plate).getStatus(), plate);
+            assertEquals(1, reopened.getRentalHistory().getRecordsForVehicle(plate).size(), plate);
+        }
+        reopened.shutdown();
+        system.shutdown();
+    }
+
+    private static void runMixedLoad(RentalSystem system, List<Vehicle> fleet, int threads, int opsPerThread,
+                                     ExecutorService pool) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int customerId = t % CUSTOMERS;
+            futures.add(pool.submit(() -> {
+                start.await();
+                Customer customer = system.findCustomerById(customerId);
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    Vehicle vehicle = fleet.get(random.nextInt(fleet.size()));
+                    if (random.nextBoolean()) {
+                        system.rentVehicle(vehicle, customer, DAY, 50.0);
+                    } else {
+                        system.returnVehicle(vehicle, customer, DAY, 0.0);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+    }
+}
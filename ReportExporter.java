@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// Writes vehicles and rental records to a stream as CSV, fixed-width columns or JSON Lines.
+// Rows are encoded straight into one reusable byte buffer that is flushed to the stream
+// when full, so nothing is allocated per row.
+//
+// Not thread-safe; use one exporter per export. The stream is flushed, not closed.
+public class ReportExporter {
+    public enum Format { CSV, FIXED_WIDTH, JSON_LINES }
+
+    private static final String[] VEHICLE_COLUMNS = {"type", "plate", "make", "model", "year", "details", "status"};
+    private static final int[] VEHICLE_WIDTHS = {11, 7, 13, 13, 5, 48, 12};
+    private static final String[] RECORD_COLUMNS = {"type", "plate", "customerId", "customer", "date", "amount"};
+    private static final int[] RECORD_WIDTHS = {7, 7, 11, 25, 11, 12};
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final OutputStream out;
+    private final Format format;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private int position;
+    private final StringBuilder scratch = new StringBuilder(64);
+    // Layout of the rows being written
+    private String[] columns;
+    private int[] widths;
+
+    private long rowsWritten;
+    private long nanos;
+
+    public ReportExporter(OutputStream out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    public long writeVehicles(Iterable<Vehicle> vehicles) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        writeHeader(VEHICLE_COLUMNS, VEHICLE_WIDTHS);
+        for (Vehicle vehicle : vehicles) {
+            beginRow();
+            text(0, vehicle.getClass().getSimpleName());
+            text(1, vehicle.getLicensePlate());
+            text(2, vehicle.getMake());
+            text(3, vehicle.getModel());
+            number(4, vehicle.getYear());
+            scratch.setLength(0);
+            vehicle.appendDetails(scratch);
+            // Details come as " | Name: value | ..."; the leading separator is dropped
+            text(5, scratch, Math.min(3, scratch.length()));
+            // The last column isn't padded
+            separator(6);
+            if (format == Format.JSON_LINES) {
+                putAscii("\"status\":\"");
+                putAscii(vehicle.getStatus().name());
+                putAscii("\"}");
+            } else {
+                putAscii(vehicle.getStatus().name());
+            }
+            endRow();
+            rows++;
+        }
+        return finish(start, rows);
+    }
+
+    public long writeRecords(Iterable<RentalRecord> records) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        writeHeader(RECORD_COLUMNS, RECORD_WIDTHS);
+        for (RentalRecord record : records) {
+            beginRow();
+            text(0, record.getRecordType());
+            text(1, record.getVehicle().getLicensePlate());
+            number(2, record.getCustomer().getCustomerId());
+            text(3, record.getCustomer().getCustomerName());
+            date(4, record.getRecordDate());
+            amount(5, record.getTotalAmount());
+            if (format == Format.JSON_LINES) {
+                putAscii("}");
+            }
+            endRow();
+            rows++;
+        }
+        return finish(start, rows);
+    }
+
+    // Rows written by the last write call and how fast they went
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public double getRowsPerSecond() {
+        return nanos == 0 ? 0 : rowsWritten * 1e9 / nanos;
+    }
+
+    private long finish(long start, long rows) throws IOException {
+        flush();
+        out.flush();
+        rowsWritten = rows;
+        nanos = System.nanoTime() - start;
+        return rows;
+    }
+
+    private void writeHeader(String[] columns, int[] widths) throws IOException {
+        this.columns = columns;
+        this.widths = widths;
+        if (format == Format.JSON_LINES) {
+            return;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0 && format == Format.CSV) {
+                putAscii(",");
+            }
+            putAscii(columns[i]);
+            if (format == Format.FIXED_WIDTH) {
+                pad(columns[i].length(), widths[i]);
+            }
+        }
+        endRow();
+    }
+
+    private void beginRow() {
+        if (format == Format.JSON_LINES) {
+            putAscii("{");
+        }
+    }
+
+    // Fixed-width columns are separated by their padding, the others by commas
+    private void separator(int column) {
+        if (column > 0 && format != Format.FIXED_WIDTH) {
+            putAscii(",");
+        }
+    }
+
+    private void key(int column) {
+        putAscii("\"");
+        putAscii(columns[column]);
+        putAscii("\":");
+    }
+
+    private void text(int column, String value) {
+        text(column, value == null ? "" : value, 0);
+    }
+
+    // The characters of value from the given index on. Strings are mostly plain ASCII, which
+    // is copied straight in; anything else is encoded as UTF-8 first.
+    private void text(int column, CharSequence value, int from) {
+        boolean special = false;
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                special = true;
+                break;
+            }
+            special |= c == ',' || c == '"' || c == '\\' || c < 0x20;
+        }
+        if (special) {
+            bytes(column, encode(value.subSequence(from, value.length()).toString()));
+            return;
+        }
+        separator(column);
+        if (format == Format.JSON_LINES) {
+            key(column);
+            putAscii("\"");
+            putAscii(value, from);
+            putAscii("\"");
+        } else {
+            putAscii(value, from);
+            if (format == Format.FIXED_WIDTH) {
+                pad(value.length() - from, widths[column]);
+            }
+        }
+    }
+
+    private void bytes(int column, byte[] value) {
+        separator(column);
+        if (format == Format.JSON_LINES) {
+            key(column);
+            putAscii("\"");
+            putJsonEscaped(value);
+            putAscii("\"");
+        } else if (format == Format.CSV) {
+            putCsvQuoted(value);
+        } else {
+            put(value);
+            pad(value.length, widths[column]);
+        }
+    }
+
+    private void number(int column, long value) {
+        separator(column);
+        if (format == Format.JSON_LINES) {
+            key(column);
+        }
+        int length = putDigits(value);
+        if (format == Format.FIXED_WIDTH) {
+            pad(length, widths[column]);
+        }
+    }
+
+    // Always two decimals, as whole cents
+    private void amount(int column, double value) {
+        separator(column);
+        if (format == Format.JSON_LINES) {
+            key(column);
+        }
+        long cents = Math.round(value * 100);
+        int length = 0;
+        if (cents < 0) {
+            putAscii("-");
+            cents = -cents;
+            length++;
+        }
+        length += putDigits(cents / 100);
+        ensure(3);
+        buffer[position++] = '.';
+        buffer[position++] = (byte) ('0' + cents % 100 / 10);
+        buffer[position++] = (byte) ('0' + cents % 10);
+        if (format == Format.FIXED_WIDTH) {
+            pad(length + 3, widths[column]);
+        }
+    }
+
+    private void date(int column, LocalDate date) {
+        if (date == null) {
+            text(column, "");
+            return;
+        }
+        separator(column);
+        if (format == Format.JSON_LINES) {
+            key(column);
+            putAscii("\"");
+        }
+        ensure(10);
+        int year = date.getYear();
+        buffer[position++] = (byte) ('0' + year / 1000 % 10);
+        buffer[position++] = (byte) ('0' + year / 100 % 10);
+        buffer[position++] = (byte) ('0' + year / 10 % 10);
+        buffer[position++] = (byte) ('0' + year % 10);
+        buffer[position++] = '-';
+        buffer[position++] = (byte) ('0' + date.getMonthValue() / 10);
+        buffer[position++] = (byte) ('0' + date.getMonthValue() % 10);
+        buffer[position++] = '-';
+        buffer[position++] = (byte) ('0' + date.getDayOfMonth() / 10);
+        buffer[position++] = (byte) ('0' + date.getDayOfMonth() % 10);
+        if (format == Format.JSON_LINES) {
+            putAscii("\"");
+        } else if (format == Format.FIXED_WIDTH) {
+            pad(10, widths[column]);
+        }
+    }
+
+    private void endRow() throws IOException {
+        ensure(1);
+        buffer[position++] = '\n';
+        if (position > BUFFER_BYTES / 2) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    // Rows are only ever flushed between rows, so a row being rendered has to fit; the
+    // buffer is far larger than any realistic row
+    private void ensure(int bytes) {
+        if (position + bytes > BUFFER_BYTES) {
+            throw new IllegalStateException("Report row longer than " + BUFFER_BYTES / 2 + " bytes");
+        }
+    }
+
+    // Columns are left-aligned and separated by at least one space
+    private void pad(int length, int width) {
+        int spaces = Math.max(1, width - length);
+        ensure(spaces);
+        for (int i = 0; i < spaces; i++) {
+            buffer[position++] = ' ';
+        }
+    }
+
+    private int putDigits(long value) {
+        if (value < 0) {
+            putAscii("-");
+            return 1 + putDigits(-value);
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensure(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+        return digits;
+    }
+
+    private void putAscii(CharSequence ascii) {
+        putAscii(ascii, 0);
+    }
+
+    private void putAscii(CharSequence ascii, int from) {
+        ensure(ascii.length() - from);
+        for (int i = from; i < ascii.length(); i++) {
+            buffer[position++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    // Fields holding a comma, quote or line break are quoted, with quotes doubled
+    private void putCsvQuoted(byte[] value) {
+        boolean quote = false;
+        for (byte b : value) {
+            if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            put(value);
+            return;
+        }
+        putAscii("\"");
+        for (byte b : value) {
+            ensure(2);
+            if (b == '"') {
+                buffer[position++] = '"';
+            }
+            buffer[position++] = b;
+        }
+        putAscii("\"");
+    }
+
+    private void putJsonEscaped(byte[] value) {
+        for (byte b : value) {
+            if (b == '"' || b == '\\') {
+                ensure(2);
+                buffer[position++] = '\\';
+                buffer[position++] = b;
+            } else if (b >= 0 && b < 0x20) {
+                putAscii(String.format("\\u%04x", b));
+            } else {
+                ensure(1);
+                buffer[position++] = b;
+            }
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,52 @@
+import java.time.LocalDate;
+
+// A booking of one vehicle for a customer over a range of days, both ends inclusive
+public class Reservation {
+    private final long id;
+    private final Vehicle vehicle;
+    private final Customer customer;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    public Reservation(long id, Vehicle vehicle, Customer customer, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("Reservation ends before it starts: " + startDate + " to " + endDate);
+        }
+        this.id = id;
+        this.vehicle = vehicle;
+        this.customer = customer;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public boolean covers(LocalDate day) {
+        return !day.isBefore(startDate) && !day.isAfter(endDate);
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation " + id + " | Plate: " + vehicle.getLicensePlate()
+                + " | Customer: " + customer.getCustomerName()
+                + " | " + startDate + " to " + endDate;
+    }
+}
@@ -0,0 +1,167 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every vehicle's reservations as a sorted set of non-overlapping day ranges, so a
+// conflict check is a single binary search: the only booking that can overlap
+// [start, end] is the last one starting on or before end.
+//
+// Safe for concurrent use; each vehicle's bookings are guarded by their own monitor.
+public class ReservationBook {
+    private final Map<Vehicle, Bookings> byVehicle = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> byId = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // Books the vehicle, or returns null if the range overlaps an existing reservation
+    public Reservation reserve(Vehicle vehicle, Customer customer, LocalDate startDate, LocalDate endDate) {
+        Bookings bookings = byVehicle.computeIfAbsent(vehicle, k -> new Bookings());
+        synchronized (bookings) {
+            if (bookings.overlaps(startDate.toEpochDay(), endDate.toEpochDay())) {
+                return null;
+            }
+            Reservation reservation = new Reservation(nextId.getAndIncrement(), vehicle, customer, startDate, endDate);
+            bookings.insert(reservation);
+            byId.put(reservation.getId(), reservation);
+            return reservation;
+        }
+    }
+
+    // Puts back a reservation read from the journal, keeping its id; false if it overlaps
+    public boolean restore(Reservation reservation) {
+        nextId.accumulateAndGet(reservation.getId() + 1, Math::max);
+        Bookings bookings = byVehicle.computeIfAbsent(reservation.getVehicle(), k -> new Bookings());
+        synchronized (bookings) {
+            if (bookings.overlaps(reservation.getStartDate().toEpochDay(), reservation.getEndDate().toEpochDay())) {
+                return false;
+            }
+            bookings.insert(reservation);
+            byId.put(reservation.getId(), reservation);
+            return true;
+        }
+    }
+
+    // Removes the reservation, returning it, or null if there is none with the id
+    public Reservation remove(long id) {
+        Reservation reservation = byId.get(id);
+        if (reservation == null) {
+            return null;
+        }
+        Bookings bookings = byVehicle.get(reservation.getVehicle());
+        synchronized (bookings) {
+            if (byId.remove(id) == null) {
+                return null;
+            }
+            bookings.remove(reservation);
+        }
+        return reservation;
+    }
+
+    public Reservation get(long id) {
+        return byId.get(id);
+    }
+
+    public boolean isFree(Vehicle vehicle, LocalDate startDate, LocalDate endDate) {
+        return isFree(vehicle, startDate.toEpochDay(), endDate.toEpochDay());
+    }
+
+    // Same, with the range as epoch days, for callers checking many vehicles at once
+    public boolean isFree(Vehicle vehicle, long startDay, long endDay) {
+        Bookings bookings = byVehicle.get(vehicle);
+        if (bookings == null) {
+            return true;
+        }
+        synchronized (bookings) {
+            return !bookings.overlaps(startDay, endDay);
+        }
+    }
+
+    // The reservation covering the day, or null
+    public Reservation covering(Vehicle vehicle, LocalDate day) {
+        Bookings bookings = byVehicle.get(vehicle);
+        if (bookings == null) {
+            return null;
+        }
+        synchronized (bookings) {
+            long epochDay = day.toEpochDay();
+            int i = bookings.floor(epochDay);
+            return i >= 0 && bookings.ends[i] >= epochDay ? bookings.reservations[i] : null;
+        }
+    }
+
+    // The vehicle's reservations in date order
+    public List<Reservation> getReservations(Vehicle vehicle) {
+        Bookings bookings = byVehicle.get(vehicle);
+        if (bookings == null) {
+            return new ArrayList<>();
+        }
+        synchronized (bookings) {
+            return new ArrayList<>(Arrays.asList(bookings.reservations).subList(0, bookings.size));
+        }
+    }
+
+    // Every reservation, in no particular order
+    public Collection<Reservation> getReservations() {
+        return new ArrayList<>(byId.values());
+    }
+
+    // One vehicle's bookings, as parallel arrays sorted by first day
+    private static final class Bookings {
+        long[] starts = new long[2];
+        long[] ends = new long[2];
+        Reservation[] reservations = new Reservation[2];
+        int size;
+
+        // Index of the last booking starting on or before day, or -1
+        int floor(long day) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= day) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        boolean overlaps(long startDay, long endDay) {
+            int i = floor(endDay);
+            return i >= 0 && ends[i] >= startDay;
+        }
+
+        void insert(Reservation reservation) {
+            long startDay = reservation.getStartDate().toEpochDay();
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size << 1);
+                ends = Arrays.copyOf(ends, size << 1);
+                reservations = Arrays.copyOf(reservations, size << 1);
+            }
+            int at = floor(startDay) + 1;
+            System.arraycopy(starts, at, starts, at + 1, size - at);
+            System.arraycopy(ends, at, ends, at + 1, size - at);
+            System.arraycopy(reservations, at, reservations, at + 1, size - at);
+            starts[at] = startDay;
+            ends[at] = reservation.getEndDate().toEpochDay();
+            reservations[at] = reservation;
+            size++;
+        }
+
+        void remove(Reservation reservation) {
+            int at = floor(reservation.getStartDate().toEpochDay());
+            if (at < 0 || reservations[at] != reservation) {
+                return;
+            }
+            System.arraycopy(starts, at + 1, starts, at, size - at - 1);
+            System.arraycopy(ends, at + 1, ends, at, size - at - 1);
+            System.arraycopy(reservations, at + 1, reservations, at, size - at - 1);
+            reservations[--size] = null;
+        }
+    }
+}
@@ -12,19 +12,17 @@ public class Truck extends Vehicle implements Rentable {
     }
 
     @Override
-    public String getInfo() {
-        return super.getInfo() + " | Cargo Capacity: " + cargoCapacity;
+    protected void appendDetails(StringBuilder info) {
+        info.append(" | Cargo Capacity: ").append(cargoCapacity);
     }
 
     @Override
     public void rentVehicle() {
         setStatus(VehicleStatus.RENTED);
-        System.out.println("Truck " + getLicensePlate() + " has been rented.");
     }
 
     @Override
     public void returnVehicle() {
         setStatus(VehicleStatus.AVAILABLE);
-        System.out.println("Truck " + getLicensePlate() + " has been returned.");
     }
 }
\ No newline at end of file
@@ -1,12 +1,34 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.regex.Pattern;
+
 public abstract class Vehicle {
     private String licensePlate;
     private String make;
     private String model;
     private int year;
-    private VehicleStatus status;
+    private volatile VehicleStatus status;
 
     public enum VehicleStatus { AVAILABLE, RESERVED, RENTED, MAINTENANCE, OUTOFSERVICE }
 
+    // Told about every status change, after it has happened
+    public interface StatusListener {
+        void statusChanged(Vehicle vehicle, VehicleStatus from, VehicleStatus to);
+    }
+
+    private volatile StatusListener statusListener;
+
+    private static final Pattern PLATE = Pattern.compile("[A-Z]{3}\\d{3}");
+
+    private static final VarHandle STATUS;
+    static {
+        try {
+            STATUS = MethodHandles.lookup().findVarHandle(Vehicle.class, "status", VehicleStatus.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public Vehicle(String make, String model, int year) {
         this.make = capitalize(make);
         this.model = capitalize(model);
@@ -27,14 +49,40 @@ public abstract class Vehicle {
     }
 
     public void setLicensePlate(String plate) {
-        if (plate == null || !plate.matches("[A-Z]{3}\\d{3}")) {
+        if (plate == null || !PLATE.matcher(plate).matches()) {
             throw new IllegalArgumentException("Invalid license plate: Must be three uppercase letters followed by three digits (e.g., ABC123)");
         }
         this.licensePlate = plate.toUpperCase();
     }
 
     public void setStatus(VehicleStatus status) {
-        this.status = status;
+        VehicleStatus previous = (VehicleStatus) STATUS.getAndSet(this, status);
+        if (previous != status) {
+            statusChanged(previous, status);
+        }
+    }
+
+    // Atomically moves the vehicle from expected to newStatus; false if it was in another state
+    public boolean compareAndSetStatus(VehicleStatus expected, VehicleStatus newStatus) {
+        if (!STATUS.compareAndSet(this, expected, newStatus)) {
+            return false;
+        }
+        if (expected != newStatus) {
+            statusChanged(expected, newStatus);
+        }
+        return true;
+    }
+
+    // Only one listener is kept; RentalSystem installs one when the vehicle is registered
+    public void setStatusListener(StatusListener listener) {
+        this.statusListener = listener;
+    }
+
+    private void statusChanged(VehicleStatus from, VehicleStatus to) {
+        StatusListener listener = statusListener;
+        if (listener != null) {
+            listener.statusChanged(this, from, to);
+        }
     }
 
     public String getLicensePlate() { return licensePlate; }
@@ -48,6 +96,14 @@ public abstract class Vehicle {
     public VehicleStatus getStatus() { return status; }
 
     public String getInfo() {
-        return "| " + licensePlate + " | " + make + " | " + model + " | " + year + " | " + status + " |";
+        StringBuilder info = new StringBuilder(96);
+        info.append("| ").append(licensePlate).append(" | ").append(make).append(" | ").append(model)
+                .append(" | ").append(year).append(" | ").append(status).append(" |");
+        appendDetails(info);
+        return info.toString();
+    }
+
+    // Subclasses add their own fields, each as " | Name: value"
+    protected void appendDetails(StringBuilder info) {
     }
 }
\ No newline at end of file
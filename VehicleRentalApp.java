@@ -1,12 +1,33 @@
 import java.util.Scanner;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 
 public class VehicleRentalApp {
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
         RentalSystem rentalSystem = RentalSystem.getInstance();
+        if (args.length > 0 && args[0].equals("--compact")) {
+            rentalSystem.compact();
+            rentalSystem.shutdown();
+            System.out.println("Rental history compacted.");
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--export")) {
+            export(rentalSystem, args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--import")) {
+            importFile(rentalSystem, args);
+            rentalSystem.shutdown();
+            return;
+        }
+        Scanner scanner = new Scanner(System.in);
 
         while (true) {
+            rentalSystem.flushLog();
             System.out.println("\n1: Add Vehicle\n2: Add Customer\n3: Rent Vehicle\n4: Return Vehicle\n5: Display Available Vehicles\n6: Show Rental History\n7: Exit");
             int choice = scanner.nextInt();
             scanner.nextLine();
@@ -145,4 +166,60 @@ public class VehicleRentalApp {
             }
         }
     }
+    // --import vehicles|customers <file>, one vehicle (plate,make,model,year,type) or
+    // customer (id,name) per line
+    private static void importFile(RentalSystem rentalSystem, String[] args) {
+        if (args.length != 3 || !(args[1].equals("vehicles") || args[1].equals("customers"))) {
+            System.out.println("Usage: --import vehicles|customers <file>");
+            return;
+        }
+        try {
+            ImportReport report = args[1].equals("vehicles")
+                    ? rentalSystem.importVehicles(Paths.get(args[2]))
+                    : rentalSystem.importCustomers(Paths.get(args[2]));
+            for (ImportReport.Item item : report.getItems()) {
+                if (item.getOutcome() != ImportReport.Outcome.ADDED) {
+                    System.out.println("  " + item);
+                }
+            }
+            System.out.println("Imported " + args[1] + " from " + args[2] + ": " + report.getSummary() + ".");
+        } catch (IOException e) {
+            System.out.println("Error importing " + args[2] + ": " + e.getMessage());
+        }
+    }
+
+    // --export vehicles|history csv|fixed|jsonl <file>
+    private static void export(RentalSystem rentalSystem, String[] args) {
+        if (args.length != 4) {
+            System.out.println("Usage: --export vehicles|history csv|fixed|jsonl <file>");
+            return;
+        }
+        ReportExporter.Format format;
+        switch (args[2]) {
+            case "csv":
+                format = ReportExporter.Format.CSV;
+                break;
+            case "fixed":
+                format = ReportExporter.Format.FIXED_WIDTH;
+                break;
+            case "jsonl":
+                format = ReportExporter.Format.JSON_LINES;
+                break;
+            default:
+                System.out.println("Unknown export format: " + args[2]);
+                return;
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(args[3])), 1 << 16)) {
+            ReportExporter exporter = new ReportExporter(out, format);
+            if (args[1].equals("history")) {
+                exporter.writeRecords(rentalSystem.getRentalHistory().getRentalHistory());
+            } else {
+                exporter.writeVehicles(rentalSystem.getVehicles(false));
+            }
+            System.out.printf("Exported %d rows to %s (%.0f rows/sec).%n", exporter.getRowsWritten(), args[3],
+                    exporter.getRowsPerSecond());
+        } catch (IOException e) {
+            System.out.println("Error exporting to " + args[3] + ": " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
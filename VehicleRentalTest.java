@@ -1,9 +1,23 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -87,4 +101,1019 @@ public class VehicleRentalTest {
         RentalSystem instance = RentalSystem.getInstance();
         assertNotNull(instance);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIndexedLookups(@TempDir Path dir) {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Vehicle vehicle = new Car("Mazda", "Three", 2021, 5);
+        vehicle.setLicensePlate("LKP101");
+        assertTrue(system.addVehicle(vehicle));
+
+        assertSame(vehicle, system.findVehicleByPlate("LKP101"));
+        assertSame(vehicle, system.findVehicleByPlate("lkp101"));
+        assertNull(system.findVehicleByPlate("NOP000"));
+        assertFalse(system.addVehicle(vehicle));
+
+        Customer customer = new Customer(424242, "Index Tester");
+        assertTrue(system.addCustomer(customer));
+        assertSame(customer, system.findCustomerById("424242"));
+        assertSame(customer, system.findCustomerById(424242));
+        assertNull(system.findCustomerById("not-a-number"));
+        assertFalse(system.addCustomer(new Customer(424242, "Someone Else")));
+        system.shutdown();
+    }
+
+    @Test
+    void testRentalHistoryIndexes() {
+        checkHistoryIndexes(new RentalHistory());
+        checkHistoryIndexes(new RentalHistory(new ColumnarHistoryStore()));
+
+        // Columns grow a chunk at a time
+        ColumnarHistoryStore store = new ColumnarHistoryStore();
+        Vehicle car = new Car("Kia", "Rio", 2019, 5);
+        car.setLicensePlate("COL001");
+        Customer customer = new Customer(3, "Columns");
+        LocalDate day = LocalDate.of(2022, 1, 1);
+        for (int i = 0; i < 40000; i++) {
+            assertEquals(i, store.append(new RentalRecord(car, customer, day.plusDays(i % 365), i * 0.25,
+                    i % 2 == 0 ? "RENT" : "RETURN")));
+        }
+        assertEquals(day.plusDays(39999 % 365).toEpochDay(), store.epochDay(39999));
+        assertEquals(39999 * 0.25, store.amount(39999));
+        assertEquals("RETURN", store.recordType(39999));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(40000));
+    }
+
+    private static void checkHistoryIndexes(RentalHistory history) {
+        Vehicle car = new Car("Honda", "Fit", 2018, 5);
+        car.setLicensePlate("HIS100");
+        Vehicle truck = new Truck("Ford", "F150", 2017, 800);
+        truck.setLicensePlate("HIS200");
+        Customer alice = new Customer(7, "Alice");
+        Customer bob = new Customer(8, "Bob");
+
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        history.addRecord(new RentalRecord(car, alice, day, 100.0, "RENT"));
+        history.addRecord(new RentalRecord(truck, bob, day.plusDays(1), 150.0, "RENT"));
+        history.addRecord(new RentalRecord(car, alice, day.plusDays(3), 10.0, "RETURN"));
+
+        List<RentalRecord> carRecords = history.getRecordsForVehicle("his100");
+        assertEquals(2, carRecords.size());
+        assertEquals("RETURN", carRecords.get(1).getRecordType());
+        assertEquals(1, history.getRecordsForCustomer(8).size());
+        assertTrue(history.getRecordsForCustomer(99).isEmpty());
+        assertEquals(2, history.getRecordsBetween(day, day.plusDays(1)).size());
+        assertEquals(1, history.getRecordsBetween(day.plusDays(2), day.plusDays(10)).size());
+        assertThrows(UnsupportedOperationException.class, () -> carRecords.add(carRecords.get(0)));
+
+        // Views stay live as records are appended
+        history.addRecord(new RentalRecord(car, bob, day.plusDays(5), 90.0, "RENT"));
+        assertEquals(3, carRecords.size());
+
+        history.addRecord(new RentalRecord(truck, alice, day.plusDays(6), 12.34, "LATE_FEE"));
+        RentalRecord fee = history.getRecordsForVehicle("HIS200").get(1);
+        assertSame(truck, fee.getVehicle());
+        assertSame(alice, fee.getCustomer());
+        assertEquals(day.plusDays(6), fee.getRecordDate());
+        assertEquals(12.34, fee.getTotalAmount());
+        assertEquals("LATE_FEE", fee.getRecordType());
+
+        RentalHistory.Page newest = history.findRecords("his100", null, null, RentalHistory.SortKey.DATE, true, 0, 2);
+        assertEquals(3, newest.getTotal());
+        assertEquals(List.of(day.plusDays(5), day.plusDays(3)),
+                newest.getRecords().stream().map(RentalRecord::getRecordDate).toList());
+        RentalHistory.Page byPlate = history.findRecords(null, day.plusDays(1), day.plusDays(5),
+                RentalHistory.SortKey.PLATE, false, 1, 10);
+        assertEquals(3, byPlate.getTotal());
+        assertEquals(List.of(day.plusDays(5), day.plusDays(1)),
+                byPlate.getRecords().stream().map(RentalRecord::getRecordDate).toList());
+        assertTrue(history.findRecords("XYZ999", null, null, RentalHistory.SortKey.DATE, false, 0, 10)
+                .getRecords().isEmpty());
+        RentalHistory.Page recent = history.findRecords(null, day.plusDays(1), null, RentalHistory.SortKey.DATE,
+                true, 1, 2);
+        assertEquals(4, recent.getTotal());
+        assertEquals(List.of(day.plusDays(5), day.plusDays(3)),
+                recent.getRecords().stream().map(RentalRecord::getRecordDate).toList());
+        assertEquals(0, history.findRecords(null, day.plusDays(2), day, RentalHistory.SortKey.DATE, false, 0, 5)
+                .getTotal());
+
+        // A sorted query kept for paging is dropped once the history changes
+        history.addRecord(new RentalRecord(truck, bob, day.plusDays(2), 20.0, "RETURN"));
+        byPlate = history.findRecords(null, day.plusDays(1), day.plusDays(5), RentalHistory.SortKey.PLATE, false, 1, 10);
+        assertEquals(4, byPlate.getTotal());
+        assertEquals(List.of(day.plusDays(5), day.plusDays(1), day.plusDays(2)),
+                byPlate.getRecords().stream().map(RentalRecord::getRecordDate).toList());
+    }
+
+    @Test
+    void testJournalRoundTripAndTornTail(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("test.journal");
+        Vehicle truck = new Truck("Volvo", "Fh", 2020, 2500.5);
+        truck.setLicensePlate("JRN001");
+        Customer customer = new Customer(55, "Journal Tester");
+        try (RentalJournal journal = new RentalJournal(file, RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            journal.appendVehicle(truck);
+            journal.appendCustomer(customer);
+            journal.appendRecord(new RentalRecord(truck, customer, LocalDate.of(2024, 5, 1), 75.25, "RENT"));
+        }
+        long intactSize = Files.size(file);
+        // Simulate a crash part-way through the next entry
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        List<String> events = new ArrayList<>();
+        long end = RentalJournal.replay(file, 0, new RentalJournal.Listener() {
+            @Override
+            public void onVehicle(Vehicle vehicle) {
+                assertEquals(2500.5, ((Truck) vehicle).getCargoCapacity());
+                events.add("vehicle " + vehicle.getLicensePlate());
+            }
+
+            @Override
+            public void onCustomer(Customer c) {
+                events.add("customer " + c.getCustomerId() + " " + c.getCustomerName());
+            }
+
+            @Override
+            public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
+                events.add(type + " " + plate + " " + customerId + " " + date + " " + amount);
+            }
+        });
+        assertEquals(intactSize, end);
+        assertEquals(List.of("vehicle JRN001", "customer 55 Journal Tester", "RENT JRN001 55 2024-05-01 75.25"), events);
+
+        // Reopening truncates the torn entry so new appends land after the last good one
+        new RentalJournal(file, RentalJournal.FsyncPolicy.ON_CLOSE, 0).close();
+        assertEquals(intactSize, Files.size(file));
+    }
+
+    @Test
+    void testRecordParser(@TempDir Path dir) throws Exception {
+        assertEquals(0, PlateCodec.encode("AAA000"));
+        assertEquals(PlateCodec.PLATE_COUNT - 1, PlateCodec.encode("ZZZ999"));
+        assertEquals("KLM042", PlateCodec.decode(PlateCodec.encode("klm042")));
+        assertEquals(PlateCodec.INVALID, PlateCodec.encode("AB1234"));
+
+        Path file = dir.resolve("rental_records.txt");
+        Files.writeString(file, "ABC123,7,2024-03-01,49.99,RENT\r\n"
+                + "abc123,7,2024-03-05,0.1,RETURN\n"
+                + "\n"
+                + "BAD,7,2024-03-01,10,RENT\n"
+                + "ABC123,7,2024-02-30,10,RENT\n"
+                + "ABC123,x,2024-03-01,10,RENT\n"
+                + "ABC123,7,2024-03-01,10\n"
+                + "XYZ999,-3,2024-03-01,1.5e2,LATE_FEE");
+        RentalRecordParser parser = new RentalRecordParser();
+        List<String> records = new ArrayList<>();
+        List<LocalDate> dates = new ArrayList<>();
+        parser.parse(file, (plateCode, customerId, date, amount, type) -> {
+            records.add(PlateCodec.decode(plateCode) + " " + customerId + " " + date + " " + amount + " " + type);
+            dates.add(date);
+        });
+        assertEquals(List.of("ABC123 7 2024-03-01 49.99 RENT", "ABC123 7 2024-03-05 0.1 RETURN",
+                "XYZ999 -3 2024-03-01 150.0 LATE_FEE"), records);
+        assertSame(dates.get(0), dates.get(2));
+        assertEquals(3, parser.getParsedRecords());
+        assertEquals(4, parser.getSkippedLines());
+    }
+
+    @Test
+    void testGroupCommitBatchesRecords(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("group.journal");
+        Vehicle car = new Car("Kia", "Rio", 2022, 5);
+        car.setLicensePlate("GRP001");
+        Customer customer = new Customer(3, "Batch Tester");
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (RentalJournal journal = new RentalJournal(file, RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            GroupCommitWriter writer = new GroupCommitWriter(journal, 64, 16, 5);
+            for (int i = 0; i < 200; i++) {
+                futures.add(writer.submit(new RentalRecord(car, customer, LocalDate.of(2024, 1, 1).plusDays(i), i, "RENT")));
+                if (i == 100) {
+                    // Other entries are written in the order they were queued, between the records
+                    futures.add(writer.submit(j -> j.appendStatus(car, Vehicle.VehicleStatus.MAINTENANCE, 0, 0)));
+                }
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            writer.close();
+            assertEquals(201, writer.getRecordsWritten());
+            assertTrue(writer.getBatchesWritten() < 200, "records should have been grouped into batches");
+        }
+
+        List<Double> amounts = new ArrayList<>();
+        RentalJournal.replay(file, 0, new RentalJournal.Listener() {
+            @Override
+            public void onVehicle(Vehicle vehicle) { }
+
+            @Override
+            public void onCustomer(Customer c) { }
+
+            @Override
+            public void onRecord(String plate, int customerId, LocalDate date, double amount, String type) {
+                amounts.add(amount);
+            }
+
+            @Override
+            public void onStatus(String plate, Vehicle.VehicleStatus status) {
+                assertEquals(Vehicle.VehicleStatus.MAINTENANCE, status);
+                amounts.add(-1.0);
+            }
+        });
+        assertEquals(201, amounts.size());
+        assertEquals(100.0, amounts.get(100));
+        assertEquals(-1.0, amounts.get(101));
+        assertEquals(199.0, amounts.get(200));
+    }
+
+    @Test
+    void testSnapshotRecoveryAndCompaction(@TempDir Path dir) {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Vehicle car = new Car("Subaru", "Impreza", 2020, 5);
+        car.setLicensePlate("SNP001");
+        Vehicle bike = new Motorcycle("Ducati", "Monster", 2021, false);
+        bike.setLicensePlate("SNP002");
+        Customer customer = new Customer(11, "Snapshot Tester");
+        system.addVehicle(car);
+        system.addVehicle(bike);
+        system.addCustomer(customer);
+        LocalDate day = LocalDate.of(2024, 6, 1);
+        system.rentVehicle(car, customer, day, 120.0);
+        system.rentVehicle(bike, customer, day, 60.0);
+        system.returnVehicle(bike, customer, day.plusDays(2), 5.0);
+        system.shutdown();
+
+        // Reopen from the snapshot taken at shutdown, then add one more record
+        system = RentalSystem.openAt(dir);
+        assertEquals(Vehicle.VehicleStatus.RENTED, system.findVehicleByPlate("SNP001").getStatus());
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, system.findVehicleByPlate("SNP002").getStatus());
+        assertTrue(system.returnVehicle(system.findVehicleByPlate("SNP001"), system.findCustomerById(11), day.plusDays(4), 0.0));
+        assertEquals(4, system.getRentalHistory().size());
+
+        system.compact();
+        system.shutdown();
+
+        system = RentalSystem.openAt(dir);
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, system.findVehicleByPlate("SNP001").getStatus());
+        RentalHistory history = system.getRentalHistory();
+        assertEquals(4, history.size());
+        assertEquals("RENT", history.getRentalHistory().get(0).getRecordType());
+        assertEquals(2, history.getRecordsForVehicle("SNP001").size());
+        system.shutdown();
+    }
+
+    @Test
+    void testMappedHistorySurvivesRestart(@TempDir Path dir) throws Exception {
+        System.setProperty("rental.historyStore", "mapped");
+        try {
+            RentalSystem system = RentalSystem.openAt(dir);
+            Vehicle van = new Truck("Ford", "Transit", 2021, 900);
+            van.setLicensePlate("MAP001");
+            system.addVehicle(van);
+            system.addCustomer(new Customer(31, "Mapped Tester"));
+            system.addCustomer(new Customer(32, "Other Tester"));
+            LocalDate day = LocalDate.of(2024, 7, 1);
+            system.rentVehicle(van, system.findCustomerById(31), day, 200.0);
+            system.returnVehicle(van, system.findCustomerById(31), day.plusDays(3), 15.5);
+            system.rentVehicle(van, system.findCustomerById(32), day.plusDays(5), 180.0);
+            system.shutdown();
+
+            // The records come back from the history file; the journal tail is empty
+            system = RentalSystem.openAt(dir);
+            RentalHistory history = system.getRentalHistory();
+            assertEquals(3, history.size());
+            assertEquals(Vehicle.VehicleStatus.RENTED, system.findVehicleByPlate("MAP001").getStatus());
+            // Rows are resolved without going through the timed public lookups
+            long lookups = system.getMetrics().getLatency(RentalMetrics.Operation.FIND_VEHICLE).getCount();
+            List<RentalRecord> vanRecords = history.getRentalRecordsByVehicle("map001");
+            assertSame(system.findVehicleByPlate("MAP001"), vanRecords.get(0).getVehicle());
+            if (RentalMetrics.ENABLED) {
+                assertEquals(lookups + 1, system.getMetrics().getLatency(RentalMetrics.Operation.FIND_VEHICLE).getCount());
+            }
+            assertEquals(List.of("RENT", "RETURN", "RENT"), List.of(vanRecords.get(0).getRecordType(),
+                    vanRecords.get(1).getRecordType(), vanRecords.get(2).getRecordType()));
+            assertEquals(15.5, vanRecords.get(1).getTotalAmount());
+            assertEquals(1, history.getRentalRecordsByCustomer("Other").size());
+            List<RentalRecord> customerRecords = history.getRecordsForCustomer(31);
+            assertEquals(2, customerRecords.size());
+            assertEquals(2, history.getRecordsBetween(day.plusDays(3), day.plusDays(9)).size());
+
+            // Views over the mapped rows stay live
+            system.returnVehicle(van, system.findCustomerById(31), day.plusDays(6), 0.0);
+            assertEquals(3, customerRecords.size());
+            system.shutdown();
+
+            // Without the snapshot the offsets no longer line up, so the file is rebuilt
+            Files.delete(dir.resolve(RentalSystem.SNAPSHOT_FILE));
+            system = RentalSystem.openAt(dir);
+            assertEquals(4, system.getRentalHistory().size());
+            assertEquals("RETURN", system.getRentalHistory().getRentalHistory().get(3).getRecordType());
+            List<RentalRecord> rows = system.getRentalHistory().getRentalHistory();
+            assertThrows(IndexOutOfBoundsException.class, () -> rows.get(4));
+            system.shutdown();
+
+            // Reads outside the rows never map (and so grow) the file
+            Path file = dir.resolve("bounds.history");
+            try (MappedHistoryStore store = new MappedHistoryStore(file, code -> null, id -> null)) {
+                assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+                assertThrows(IndexOutOfBoundsException.class, () -> store.amount(0));
+                assertThrows(IndexOutOfBoundsException.class, () -> store.plateCode(1 << 20));
+                assertEquals(4096, Files.size(file));
+            }
+        } finally {
+            System.clearProperty("rental.historyStore");
+        }
+    }
+
+    @Test
+    void testAggregatesTrackRevenueAndStatus(@TempDir Path dir) {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Vehicle car = new Car("Audi", "A4", 2021, 5);
+        car.setLicensePlate("AGG001");
+        Vehicle truck = new Truck("Man", "Tgx", 2018, 3000);
+        truck.setLicensePlate("AGG002");
+        Vehicle otherTruck = new Truck("Man", "Tgs", 2019, 2500);
+        otherTruck.setLicensePlate("AGG003");
+        system.addVehicle(car);
+        system.addVehicle(truck);
+        system.addVehicle(otherTruck);
+        Customer customer = new Customer(41, "Revenue Tester");
+        system.addCustomer(customer);
+        LocalDate day = LocalDate.of(2024, 8, 30);
+        system.rentVehicle(car, customer, day, 100.10);
+        system.rentVehicle(truck, customer, day, 250.0);
+        system.returnVehicle(car, customer, day.plusDays(3), 20.0);
+        otherTruck.setStatus(Vehicle.VehicleStatus.MAINTENANCE);
+
+        RentalAggregates aggregates = system.getAggregates();
+        assertEquals(370.10, aggregates.getTotalRevenue(), 1e-9);
+        assertEquals(350.10, aggregates.getRevenue(day), 1e-9);
+        assertEquals(350.10, aggregates.getRevenue(YearMonth.of(2024, 8)), 1e-9);
+        assertEquals(20.0, aggregates.getRevenue(YearMonth.of(2024, 9)), 1e-9);
+        assertEquals(120.10, aggregates.getRevenueForType(Car.class), 1e-9);
+        assertEquals(370.10, aggregates.getRevenueForCustomer(41), 1e-9);
+        assertEquals(1, aggregates.getCount(Vehicle.VehicleStatus.RENTED));
+        assertEquals(1, aggregates.getCount(Vehicle.VehicleStatus.AVAILABLE));
+        assertEquals(1, aggregates.getCount(Truck.class, Vehicle.VehicleStatus.MAINTENANCE));
+        assertEquals(0.5, aggregates.getUtilization(Truck.class));
+        system.compact();
+        system.shutdown();
+
+        // Rebuilt on load, including records that now only live in the archive
+        system = RentalSystem.openAt(dir);
+        aggregates = system.getAggregates();
+        assertEquals(370.10, aggregates.getTotalRevenue(), 1e-9);
+        assertEquals(120.10, aggregates.getRevenueForType(Car.class), 1e-9);
+        assertEquals(1, aggregates.getCount(Truck.class, Vehicle.VehicleStatus.RENTED));
+        assertEquals(1, aggregates.getCount(Vehicle.VehicleStatus.MAINTENANCE));
+        system.shutdown();
+    }
+
+    @Test
+    void testFindVehiclesByStatusAndType(@TempDir Path dir) {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Customer customer = new Customer(51, "Index Tester");
+        system.addCustomer(customer);
+        for (int i = 0; i < 10; i++) {
+            Vehicle truck = new Truck("Volvo", "Fh", 2020, 4000);
+            truck.setLicensePlate(String.format("IDX%03d", i));
+            system.addVehicle(truck);
+            Vehicle bike = new Motorcycle("Honda", "Cbr", 2022, false);
+            bike.setLicensePlate(String.format("IDM%03d", i));
+            system.addVehicle(bike);
+            if (i % 2 == 0) {
+                system.rentVehicle(truck, customer, LocalDate.now(), 50.0);
+            }
+        }
+        system.findVehicleByPlate("IDX001").setStatus(Vehicle.VehicleStatus.MAINTENANCE);
+
+        List<Vehicle> available = system.findVehicles(Truck.class, Vehicle.VehicleStatus.AVAILABLE, 0, 10);
+        assertEquals(List.of("IDX003", "IDX005", "IDX007", "IDX009"),
+                available.stream().map(Vehicle::getLicensePlate).toList());
+        List<Vehicle> page = system.findVehicles(Truck.class, Vehicle.VehicleStatus.AVAILABLE, 1, 2);
+        assertEquals(List.of("IDX005", "IDX007"), page.stream().map(Vehicle::getLicensePlate).toList());
+        assertEquals(5, system.countVehicles(Truck.class, Vehicle.VehicleStatus.RENTED));
+        assertEquals(List.of("IDX001"), system.findVehicles(null, Vehicle.VehicleStatus.MAINTENANCE, 0, 10)
+                .stream().map(Vehicle::getLicensePlate).toList());
+        assertEquals(14, system.getVehicles(true).size());
+        assertEquals(10, system.findVehicles(Motorcycle.class, null, 0, 100).size());
+        assertTrue(system.findVehicles(Car.class, null, 0, 100).isEmpty());
+
+        system.returnVehicle(system.findVehicleByPlate("IDX000"), customer, LocalDate.now(), 0.0);
+        assertEquals("IDX000", system.findVehicles(Truck.class, Vehicle.VehicleStatus.AVAILABLE, 0, 1)
+                .get(0).getLicensePlate());
+        system.shutdown();
+    }
+
+    @Test
+    void testReservations(@TempDir Path dir) throws InterruptedException {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Customer alice = new Customer(61, "Alice Booker");
+        Customer bob = new Customer(62, "Bob Booker");
+        system.addCustomer(alice);
+        system.addCustomer(bob);
+        for (int i = 0; i < 3; i++) {
+            Vehicle car = new Car("Skoda", "Octavia", 2021, 5);
+            car.setLicensePlate(String.format("RES%03d", i));
+            system.addVehicle(car);
+        }
+        Vehicle first = system.findVehicleByPlate("RES000");
+        LocalDate today = LocalDate.now();
+
+        Reservation future = system.reserveVehicle(first, alice, today.plusDays(10), today.plusDays(12));
+        assertNotNull(future);
+        assertNull(system.reserveVehicle(first, bob, today.plusDays(12), today.plusDays(14)));
+        assertNotNull(system.reserveVehicle(first, bob, today.plusDays(13), today.plusDays(14)));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, first.getStatus());
+        List<Vehicle> free = system.findAvailableVehicles(Car.class, today.plusDays(11), today.plusDays(11), 10);
+        assertEquals(List.of("RES001", "RES002"), free.stream().map(Vehicle::getLicensePlate).toList());
+        assertEquals(3, system.findAvailableVehicles(Car.class, today.plusDays(15), today.plusDays(20), 10).size());
+
+        // A reservation covering today holds the vehicle for its customer until it is picked up
+        Vehicle second = system.findVehicleByPlate("RES001");
+        Reservation now = system.reserveVehicle(second, alice, today, today.plusDays(2));
+        assertEquals(Vehicle.VehicleStatus.RESERVED, second.getStatus());
+        assertFalse(system.rentVehicle(second, bob, today, 80.0));
+        assertTrue(system.rentVehicle(second, alice, today, 80.0));
+        assertEquals(Vehicle.VehicleStatus.RENTED, second.getStatus());
+        assertTrue(system.getReservations(second).isEmpty());
+        assertFalse(system.cancelReservation(now.getId()));
+        system.shutdown();
+
+        // Open reservations survive a restart, and lapsed ones are dropped as days pass
+        system = RentalSystem.openAt(dir);
+        first = system.findVehicleByPlate("RES000");
+        assertEquals(2, system.getReservations(first).size());
+        assertTrue(system.cancelReservation(future.getId()));
+        system.advanceReservations(today.plusDays(13));
+        assertEquals(Vehicle.VehicleStatus.RESERVED, first.getStatus());
+        system.advanceReservations(today.plusDays(15));
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, first.getStatus());
+        assertTrue(system.getReservations(first).isEmpty());
+        system.shutdown();
+
+        // The periodic check runs with snapshots turned off too
+        System.setProperty("rental.snapshotIntervalSec", "0");
+        System.setProperty("rental.reservations.checkIntervalSec", "1");
+        try {
+            system = RentalSystem.openAt(dir);
+            Vehicle third = system.findVehicleByPlate("RES002");
+            third.setStatus(Vehicle.VehicleStatus.RESERVED);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (third.getStatus() == Vehicle.VehicleStatus.RESERVED && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, third.getStatus());
+            system.shutdown();
+        } finally {
+            System.clearProperty("rental.snapshotIntervalSec");
+            System.clearProperty("rental.reservations.checkIntervalSec");
+        }
+    }
+
+    @Test
+    void testMaintenanceScheduling(@TempDir Path dir) {
+        System.setProperty("rental.maintenance.everyRentals", "2");
+        System.setProperty("rental.maintenance.everyDays", "30");
+        System.setProperty("rental.maintenance.hours", "4");
+        try {
+            RentalSystem system = RentalSystem.openAt(dir);
+            Customer customer = new Customer(71, "Mia Mechanic");
+            system.addCustomer(customer);
+            Vehicle busy = new Truck("MAN", "TGX", 2020, 2500);
+            busy.setLicensePlate("SVC001");
+            Vehicle idle = new Truck("MAN", "TGX", 2020, 2500);
+            idle.setLicensePlate("SVC002");
+            long now = System.currentTimeMillis();
+            system.addVehicle(busy);
+            system.addVehicle(idle);
+            MaintenanceScheduler scheduler = system.getMaintenanceScheduler();
+            assertEquals(2, scheduler.getPending());
+
+            // The second return sends it in, and its timer moves to the end of the maintenance
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < 2; i++) {
+                system.rentVehicle(busy, customer, today, 90.0);
+                system.returnVehicle(busy, customer, today, 0.0);
+            }
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, busy.getStatus());
+            assertFalse(system.rentVehicle(busy, customer, today, 90.0));
+            long back = scheduler.getDue(busy);
+            assertTrue(back >= now + TimeUnit.HOURS.toMillis(4) && back < now + TimeUnit.DAYS.toMillis(1));
+            system.shutdown();
+
+            // The status and service state survive a restart; the idle truck is due after 30 days
+            system = RentalSystem.openAt(dir);
+            scheduler = system.getMaintenanceScheduler();
+            busy = system.findVehicleByPlate("SVC001");
+            idle = system.findVehicleByPlate("SVC002");
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, busy.getStatus());
+            assertEquals(back, scheduler.getDue(busy));
+            assertEquals(1, scheduler.runDue(back));
+            assertEquals(Vehicle.VehicleStatus.AVAILABLE, busy.getStatus());
+            assertEquals(0, scheduler.getRentalsSinceService(busy));
+            long due = scheduler.getDue(idle);
+            assertTrue(due >= now + TimeUnit.DAYS.toMillis(30));
+            scheduler.runDue(due);
+            assertEquals(Vehicle.VehicleStatus.MAINTENANCE, idle.getStatus());
+            assertTrue(system.setOutOfService(idle, true));
+            assertEquals(-1, scheduler.getDue(idle));
+            system.shutdown();
+        } finally {
+            System.clearProperty("rental.maintenance.everyRentals");
+            System.clearProperty("rental.maintenance.everyDays");
+            System.clearProperty("rental.maintenance.hours");
+        }
+    }
+
+    @Test
+    void testMaintenanceSurvivesCrash(@TempDir Path dir) throws Exception {
+        System.setProperty("rental.maintenance.everyRentals", "1");
+        try {
+            for (int run = 0; run < 10; run++) {
+                Path runDir = Files.createDirectories(dir.resolve("run" + run));
+                RentalSystem system = RentalSystem.openAt(runDir);
+                Customer customer = new Customer(72, "Crash Tester");
+                system.addCustomer(customer);
+                Vehicle truck = new Truck("MAN", "TGL", 2021, 1800);
+                truck.setLicensePlate("CRS001");
+                system.addVehicle(truck);
+                LocalDate today = LocalDate.now();
+                system.rentVehicle(truck, customer, today, 80.0);
+                system.returnVehicle(truck, customer, today, 0.0);
+                assertEquals(Vehicle.VehicleStatus.MAINTENANCE, truck.getStatus());
+                system.getRecordWriter().flush();
+
+                // Reopened without a shutdown, so no snapshot: the journal alone has to put the
+                // STATUS after the RETURN that preceded it
+                System.setProperty("rental.loadThreads", run % 2 == 0 ? "1" : "4");
+                RentalSystem reopened = RentalSystem.openAt(runDir);
+                System.clearProperty("rental.loadThreads");
+                assertEquals(Vehicle.VehicleStatus.MAINTENANCE, reopened.findVehicleByPlate("CRS001").getStatus(),
+                        "run " + run);
+                reopened.shutdown();
+                system.shutdown();
+            }
+        } finally {
+            System.clearProperty("rental.maintenance.everyRentals");
+            System.clearProperty("rental.loadThreads");
+        }
+    }
+
+    @Test
+    void testBulkImport(@TempDir Path dir) throws Exception {
+        RentalSystem system = RentalSystem.openAt(dir);
+        Vehicle existing = new Car("Kia", "Rio", 2020, 5);
+        existing.setLicensePlate("BLK000");
+        system.addVehicle(existing);
+        List<Vehicle> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Vehicle car = new Car("Kia", "Ceed", 2022, 5);
+            car.setLicensePlate(String.format("BLK%03d", i));
+            batch.add(car);
+        }
+        batch.add(batch.get(1));
+        batch.add(new Motorcycle("Honda", "CB500", 2021, false));
+        ImportReport report = system.addVehicles(batch);
+        assertEquals(List.of(ImportReport.Outcome.DUPLICATE, ImportReport.Outcome.ADDED, ImportReport.Outcome.ADDED,
+                        ImportReport.Outcome.DUPLICATE, ImportReport.Outcome.INVALID),
+                report.getItems().stream().map(ImportReport.Item::getOutcome).toList());
+        assertEquals(3, system.countVehicles(Car.class, Vehicle.VehicleStatus.AVAILABLE));
+
+        Path customers = dir.resolve("branch_customers.txt");
+        Files.write(customers, List.of("81,Branch One", "not-a-number,Nobody", "", "82,Branch Two", "81,Again"));
+        report = system.importCustomers(customers);
+        assertEquals("2 added, 1 duplicates, 1 invalid", report.getSummary());
+        assertEquals("line 2", report.getItems().get(0).getKey());
+        Path vehicles = dir.resolve("branch_vehicles.txt");
+        Files.write(vehicles, List.of("BLK101,Volvo,Fh16,2019,Truck", "blk102,Volvo,Fh16,2019,Truck",
+                "BLK103,Volvo,Fh16,2019,Boat"));
+        assertEquals(1, system.importVehicles(vehicles).getCount(ImportReport.Outcome.ADDED));
+        system.shutdown();
+
+        system = RentalSystem.openAt(dir);
+        assertEquals(4, system.getVehicles(false).size());
+        assertNotNull(system.findVehicleByPlate("BLK101"));
+        assertEquals("Branch Two", system.findCustomerById(82).getCustomerName());
+        system.shutdown();
+    }
+
+    @Test
+    void testCustomerSearch() {
+        CustomerIndex index = new CustomerIndex();
+        String[] names = {"Anna Smith", "John Smith", "Johnny Appleseed", "Mary-Jo O'Brien", "Jos\u00e9 \u00c1lvarez",
+                "Smith Johnson", "Jon Smyth"};
+        for (int i = 0; i < names.length; i++) {
+            index.add(new Customer(100 + i, names[i]));
+        }
+        assertEquals("mary jo obrien", CustomerIndex.normalize("  Mary-Jo O'Brien "));
+        assertEquals(List.of(101, 102, 104, 106, 103, 105), ids(index.search("jo", 10)));
+        assertEquals(List.of(101, 105, 106), ids(index.search("jo sm", 10)));
+        assertEquals(List.of(101), ids(index.search("jo sm", 1)));
+        assertEquals(List.of(104), ids(index.search("jose alv", 10)));
+        assertEquals(List.of(103), ids(index.search("obri", 10)));
+        // "id" used to match everyone through the "Customer ID:" text
+        assertTrue(index.search("id", 10).isEmpty());
+
+        assertEquals(List.of(101), ids(index.searchFuzzy("jhon smtih", 10)));
+        assertEquals(List.of(101, 106), ids(index.searchFuzzy("jhon smith", 10)));
+        assertEquals(List.of(100, 101, 105, 106), ids(index.searchFuzzy("smith", 10)));
+        assertEquals(List.of(103), ids(index.searchFuzzy("jo", 10)));
+    }
+
+    private static List<Integer> ids(List<Customer> customers) {
+        return customers.stream().map(Customer::getCustomerId).toList();
+    }
+
+    @Test
+    void testReportExporter() throws Exception {
+        Vehicle sport = new SportCar("Porsche", "911", 2023, 2, 450, true);
+        sport.setLicensePlate("EXP001");
+        Vehicle truck = new Truck("Scania", "R500", 2019, 1800);
+        truck.setLicensePlate("EXP002");
+        assertEquals("| EXP001 | Porsche | 911 | 2023 | AVAILABLE | | Seats: 2 | Horsepower: 450 | Turbo: Yes",
+                sport.getInfo());
+        Customer customer = new Customer(9, "Smith, \"Jo\"");
+        List<RentalRecord> records = List.of(
+                new RentalRecord(sport, customer, LocalDate.of(2024, 2, 29), 1234.5, "RENT"),
+                new RentalRecord(truck, customer, LocalDate.of(2024, 3, 1), 0.07, "RETURN"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportExporter csv = new ReportExporter(out, ReportExporter.Format.CSV);
+        assertEquals(2, csv.writeVehicles(List.of(sport, truck)));
+        sport.setStatus(Vehicle.VehicleStatus.RENTED);
+        csv.writeVehicles(List.of(sport));
+        csv.writeRecords(records);
+        assertEquals(2, csv.getRowsWritten());
+        assertEquals("type,plate,make,model,year,details,status\n"
+                + "SportCar,EXP001,Porsche,911,2023,Seats: 2 | Horsepower: 450 | Turbo: Yes,AVAILABLE\n"
+                + "Truck,EXP002,Scania,R500,2019,Cargo Capacity: 1800.0,AVAILABLE\n"
+                + "type,plate,make,model,year,details,status\n"
+                + "SportCar,EXP001,Porsche,911,2023,Seats: 2 | Horsepower: 450 | Turbo: Yes,RENTED\n"
+                + "type,plate,customerId,customer,date,amount\n"
+                + "RENT,EXP001,9,\"Smith, \"\"Jo\"\"\",2024-02-29,1234.50\n"
+                + "RETURN,EXP002,9,\"Smith, \"\"Jo\"\"\",2024-03-01,0.07\n", out.toString());
+
+        out.reset();
+        new ReportExporter(out, ReportExporter.Format.JSON_LINES).writeRecords(records.subList(0, 1));
+        assertEquals("{\"type\":\"RENT\",\"plate\":\"EXP001\",\"customerId\":9,\"customer\":\"Smith, \\\"Jo\\\"\","
+                + "\"date\":\"2024-02-29\",\"amount\":1234.50}\n", out.toString());
+
+        out.reset();
+        new ReportExporter(out, ReportExporter.Format.FIXED_WIDTH).writeVehicles(List.of(truck));
+        String[] lines = out.toString().split("\n");
+        assertEquals(lines[0].indexOf("status"), lines[1].indexOf("AVAILABLE"));
+        assertTrue(lines[1].startsWith("Truck      EXP002 Scania"));
+    }
+
+    @Test
+    void testParallelLoadMatchesSequential(@TempDir Path dir) throws Exception {
+        Path sequentialDir = Files.createDirectory(dir.resolve("sequential"));
+        Path parallelDir = Files.createDirectory(dir.resolve("parallel"));
+        Path file = sequentialDir.resolve(RentalSystem.JOURNAL_FILE);
+        List<Vehicle> fleet = new ArrayList<>();
+        try (RentalJournal journal = new RentalJournal(file, RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            for (int i = 0; i < 200; i++) {
+                Vehicle car = new Car("Mazda", "Three", 2022, 5);
+                car.setLicensePlate(String.format("PAR%03d", i));
+                journal.appendVehicle(car);
+                fleet.add(car);
+            }
+            for (int i = 0; i < 50; i++) {
+                journal.appendCustomer(new Customer(i, "Loader " + i));
+            }
+            // Enough records for several replay chunks, with the odd maintenance status in between
+            Random random = new Random(7);
+            boolean[] rented = new boolean[fleet.size()];
+            for (int i = 0; i < 60000; i++) {
+                int v = random.nextInt(fleet.size());
+                Vehicle vehicle = fleet.get(v);
+                if (i % 997 == 0) {
+                    vehicle.setStatus(Vehicle.VehicleStatus.MAINTENANCE);
+                    journal.appendStatus(vehicle, 1000L * i, 0);
+                    continue;
+                }
+                journal.appendRecord(new RentalRecord(vehicle, new Customer(random.nextInt(50), "x"),
+                        LocalDate.of(2023, 1, 1).plusDays(i / 100), 10 + i % 90, rented[v] ? "RETURN" : "RENT"));
+                rented[v] = !rented[v];
+            }
+        }
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        Files.copy(file, parallelDir.resolve(RentalSystem.JOURNAL_FILE));
+
+        RentalSystem sequential;
+        RentalSystem parallel;
+        try {
+            System.setProperty("rental.loadThreads", "1");
+            sequential = RentalSystem.openAt(sequentialDir);
+            System.setProperty("rental.loadThreads", "4");
+            parallel = RentalSystem.openAt(parallelDir);
+        } finally {
+            System.clearProperty("rental.loadThreads");
+        }
+        assertEquals(59939, parallel.getRentalHistory().size());
+        assertEquals(sequential.getRentalHistory().getRentalHistory().toString(),
+                parallel.getRentalHistory().getRentalHistory().toString());
+        for (Vehicle vehicle : fleet) {
+            Vehicle expected = sequential.findVehicleByPlate(vehicle.getLicensePlate());
+            Vehicle actual = parallel.findVehicleByPlate(vehicle.getLicensePlate());
+            assertEquals(expected.getStatus(), actual.getStatus());
+            assertEquals(sequential.getMaintenanceScheduler().getRentalsSinceService(expected),
+                    parallel.getMaintenanceScheduler().getRentalsSinceService(actual));
+        }
+        sequential.shutdown();
+        parallel.shutdown();
+        // Both truncated the torn entry the same way
+        assertEquals(Files.size(sequentialDir.resolve(RentalSystem.JOURNAL_FILE)),
+                Files.size(parallelDir.resolve(RentalSystem.JOURNAL_FILE)));
+    }
+
+    @Test
+    void testHistoryCache() {
+        RentalHistory history = new RentalHistory(new ObjectHistoryStore(), 400);
+        Vehicle car = new Car("Toyota", "Corolla", 2019, 5);
+        car.setLicensePlate("HOT001");
+        Vehicle other = new Car("Honda", "Civic", 2020, 5);
+        other.setLicensePlate("HOT002");
+        Customer alice = new Customer(1, "Alice Hotspot");
+        Customer bob = new Customer(2, "Bob Cold");
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        history.addRecord(new RentalRecord(car, alice, day, 50, "RENT"));
+        history.addRecord(new RentalRecord(other, bob, day, 60, "RENT"));
+        HistoryCache cache = history.getCache();
+
+        assertEquals(1, history.getRentalRecordsByVehicle("hot001").size());
+        assertEquals(1, history.getRentalRecordsByVehicle("HOT001").size());
+        assertEquals(1, history.getRentalRecordsByCustomer("hotspot").size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // Callers get their own copy
+        history.getRentalRecordsByVehicle("HOT001").clear();
+        assertEquals(1, history.getRentalRecordsByVehicle("HOT001").size());
+
+        // A record for another plate and customer leaves both entries alone
+        history.getRentalRecordsByVehicle("HOT002");
+        history.addRecord(new RentalRecord(other, bob, day.plusDays(1), 0, "RETURN"));
+        long hits = cache.getHits();
+        assertEquals(1, history.getRentalRecordsByVehicle("HOT001").size());
+        assertEquals(1, history.getRentalRecordsByCustomer("HOTSPOT").size());
+        assertEquals(hits + 2, cache.getHits());
+        assertEquals(2, history.getRentalRecordsByVehicle("HOT002").size());
+
+        // One for this plate and customer drops exactly those
+        history.addRecord(new RentalRecord(car, alice, day.plusDays(2), 5, "RETURN"));
+        assertEquals(3, cache.getInvalidations());
+        assertEquals(2, history.getRentalRecordsByVehicle("HOT001").size());
+        assertEquals(2, history.getRentalRecordsByCustomer("hotspot").size());
+
+        // Entries past the budget push out the least recently used
+        for (int i = 0; i < 4; i++) {
+            history.getRentalRecordsByCustomer("o" + i);
+        }
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+
+        RentalHistory uncached = new RentalHistory(new ObjectHistoryStore(), 0);
+        uncached.addRecord(new RentalRecord(car, alice, day, 50, "RENT"));
+        assertEquals(1, uncached.getRentalRecordsByVehicle("HOT001").size());
+        assertEquals(1, uncached.getRentalRecordsByVehicle("HOT001").size());
+        assertEquals(0, uncached.getCache().getHits());
+        assertEquals(0, uncached.getCache().getEntries());
+
+        // A store that builds records on get() is charged for the copies the cache keeps
+        RentalHistory live = new RentalHistory(new ObjectHistoryStore());
+        RentalHistory columnar = new RentalHistory(new ColumnarHistoryStore());
+        for (int i = 0; i < 10; i++) {
+            live.addRecord(new RentalRecord(car, alice, day.plusDays(i), 50, "RENT"));
+            columnar.addRecord(new RentalRecord(car, alice, day.plusDays(i), 50, "RENT"));
+        }
+        live.getRentalRecordsByVehicle("HOT001");
+        columnar.getRentalRecordsByVehicle("HOT001");
+        assertEquals(10 * (HistoryCache.MATERIALIZED_RECORD_BYTES - HistoryCache.LIVE_RECORD_BYTES),
+                columnar.getCache().getBytes() - live.getCache().getBytes());
+    }
+
+    @Test
+    void testMetrics(@TempDir Path dir) throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot latency = histogram.snapshot();
+        assertEquals(1000, latency.getCount());
+        assertEquals(500_500, latency.getMeanNanos(), 0.001);
+        assertEquals(1_000_000, latency.getMaxNanos());
+        // Within the 1 in 32 resolution of the buckets
+        assertEquals(500_000, latency.getPercentileNanos(0.5), 500_000 / 32.0);
+        assertEquals(990_000, latency.getPercentileNanos(0.99), 990_000 / 32.0);
+        for (long value : new long[] {0, 31, 32, 33, 1000, 123_456_789}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.highestIn(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestIn(bucket - 1));
+        }
+
+        System.setProperty("rental.metrics.dumpIntervalSec", "1");
+        RentalSystem system;
+        try {
+            system = RentalSystem.openAt(dir);
+        } finally {
+            System.clearProperty("rental.metrics.dumpIntervalSec");
+        }
+        Vehicle car = new Car("Subaru", "Impreza", 2020, 5);
+        car.setLicensePlate("MET001");
+        system.addVehicle(car);
+        system.addCustomer(new Customer(51, "Metric Tester"));
+        assertTrue(system.rentVehicle(car, system.findCustomerById(51), LocalDate.now(), 40));
+        assertFalse(system.rentVehicle(car, system.findCustomerById(51), LocalDate.now(), 40));
+        assertNull(system.findVehicleByPlate("MET999"));
+        system.getRecordWriter().flush();
+
+        RentalMetrics metrics = system.getMetrics();
+        if (RentalMetrics.ENABLED) {
+            assertEquals(2, metrics.getLatency(RentalMetrics.Operation.RENT).getCount());
+            assertEquals(1, metrics.getFailures(RentalMetrics.Operation.RENT));
+            assertEquals(1, metrics.getLatency(RentalMetrics.Operation.LOAD_DATA).getCount());
+            assertEquals(1, metrics.getFailures(RentalMetrics.Operation.FIND_VEHICLE));
+            assertTrue(metrics.getLatency(RentalMetrics.Operation.JOURNAL_WRITE).getCount() > 0);
+            assertTrue(metrics.toJson().startsWith("{\"rent\":{\"count\":2,\"failed\":1,"));
+            try (RentalServer server = new RentalServer(system, 0)) {
+                String table = respond(server, "METRICS");
+                assertTrue(table.startsWith("OK "));
+                assertTrue(table.contains("\nrent "));
+                assertTrue(respond(server, "METRICS json").startsWith("OK 1\n{\"rent\""));
+            }
+            Path dump = dir.resolve(RentalSystem.METRICS_FILE);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Files.exists(dump) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(Files.readString(dump).startsWith("{\"rent\""));
+        }
+        system.shutdown();
+    }
+
+    @Test
+    void testEvents(@TempDir Path dir) throws IOException {
+        RentalSystem system = RentalSystem.openAt(dir);
+        List<RentalEvent> seen = new ArrayList<>();
+        system.getEvents().subscribe(seen::add);
+        Vehicle car = new Car("Volvo", "V60", 2021, 5);
+        car.setLicensePlate("EVT001");
+        Customer customer = new Customer(61, "Event Tester");
+        system.addVehicle(car);
+        system.addVehicle(car);
+        system.addCustomer(customer);
+        system.rentVehicle(car, customer, LocalDate.now(), 70);
+        system.rentVehicle(car, customer, LocalDate.now(), 70);
+        ((Car) car).returnVehicle();
+
+        List<RentalEvent.Type> types = new ArrayList<>();
+        for (RentalEvent event : seen) {
+            types.add(event.getType());
+        }
+        assertEquals(List.of(RentalEvent.Type.VEHICLE_ADDED, RentalEvent.Type.DUPLICATE_VEHICLE,
+                RentalEvent.Type.CUSTOMER_ADDED, RentalEvent.Type.STATUS_CHANGED, RentalEvent.Type.VEHICLE_RENTED,
+                RentalEvent.Type.RENT_REJECTED, RentalEvent.Type.STATUS_CHANGED), types);
+        assertEquals("Vehicle rented to Event Tester", seen.get(4).getMessage());
+        assertEquals("Vehicle is not available for renting.", seen.get(5).getMessage());
+        assertEquals(Vehicle.VehicleStatus.AVAILABLE, seen.get(6).getTo());
+
+        // Unwanted events are never built; a failing subscriber doesn't stop the others
+        RentalEventBus bus = new RentalEventBus();
+        List<RentalEvent> errors = new ArrayList<>();
+        bus.subscribe(EnumSet.of(RentalEvent.Type.PERSISTENCE_ERROR), event -> {
+            throw new IllegalStateException("broken subscriber");
+        });
+        bus.subscribe(EnumSet.of(RentalEvent.Type.PERSISTENCE_ERROR), errors::add);
+        List<RentalEvent> warnings = new ArrayList<>();
+        bus.subscribe(EnumSet.of(RentalEvent.Type.WARNING), warnings::add);
+        assertFalse(bus.wants(RentalEvent.Type.VEHICLE_RENTED));
+        bus.publish(new RentalEvent(RentalEvent.Type.PERSISTENCE_ERROR, null, null, "Error saving record",
+                new IOException("disk full")));
+        assertEquals("Error saving record: disk full", errors.get(0).getMessage());
+        assertEquals("Error in rental event subscriber: broken subscriber", warnings.get(0).getMessage());
+
+        // Components without a RentalSystem report through the bus they are given
+        Files.writeString(dir.resolve(LegacyDataImporter.VEHICLES_FILE), "EVT002,Ford,Focus,2020,Car\nnot a vehicle\n");
+        try (RentalJournal journal = new RentalJournal(dir.resolve("import.journal"), RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            new LegacyDataImporter(bus).importInto(dir, journal);
+        }
+        assertEquals("Skipping vehicle line \"not a vehicle\": Expected plate,make,model,year,type",
+                warnings.get(1).getMessage());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncEventLogger logger = new AsyncEventLogger(new PrintStream(bytes, true), 1 << 16);
+        for (int i = 0; i < 1000; i++) {
+            logger.accept(new RentalEvent(RentalEvent.Type.WARNING, null, null, "line " + i, null));
+        }
+        logger.accept(new RentalEvent(RentalEvent.Type.VEHICLE_RENTED, car, customer, null, null));
+        logger.flush();
+        String[] lines = bytes.toString().split(System.lineSeparator());
+        assertEquals(1001, lines.length);
+        assertEquals("line 999", lines[999]);
+        assertEquals("Vehicle rented to Event Tester", lines[1000]);
+        logger.close();
+        system.shutdown();
+    }
+
+    @Test
+    void testPricing(@TempDir Path dir) {
+        PricingEngine pricing = new PricingEngine();
+        Vehicle car = new Car("Mazda", "Six", 2022, 5);
+        Vehicle sport = new SportCar("Audi", "RS3", 2023, 2, 450, true);
+        // 45 a day, 15% more for five seats, 12% off from a week on
+        assertEquals(51.75, pricing.quote(car, 1, 0), 1e-9);
+        assertEquals(318.78, pricing.quote(car, 7, 0), 1e-9);
+        assertEquals(51.75, pricing.quote(car, 0, 0), 1e-9);
+        // 120 a day, 40% more from 450 hp, 10% for the turbo, 25% surge from 75% utilization
+        assertEquals(231.0, pricing.quote(sport, 1, 0.8), 1e-9);
+        for (int n = 0; n < 400; n++) {
+            Vehicle vehicle = new Truck("Man", "TGX", 2020, n * 20 + 20);
+            if (n % 4 == 1) {
+                vehicle = new SportCar("Audi", "R8", 2020, 2, 250 + n, n % 8 == 1);
+            } else if (n % 4 == 2) {
+                vehicle = new Motorcycle("Ducati", "Scrambler", 2020, n % 8 == 2);
+            } else if (n % 4 == 3) {
+                vehicle = new Car("Kia", "Ceed", 2020, n % 9 + 1);
+            }
+            int days = n % 40 + 1;
+            double utilization = n % 100 / 100.0;
+            assertEquals(pricing.dailyRateFromRules(vehicle, days, utilization),
+                    pricing.dailyRate(vehicle, days, utilization), 1e-9);
+            // Another day never makes the rental cheaper
+            for (int d = 0; d < 60; d++) {
+                assertTrue(pricing.quote(vehicle, d + 1, utilization) >= pricing.quote(vehicle, d, utilization),
+                        vehicle.getInfo() + " at " + d + " days");
+            }
+        }
+        // Just short of the 14 and 30 day discounts costs what reaching them does
+        Vehicle fourSeats = new Car("Kia", "Picanto", 2021, 4);
+        assertEquals(504.0, pricing.quote(fourSeats, 13, 0), 1e-9);
+        assertEquals(504.0, pricing.quote(fourSeats, 14, 0), 1e-9);
+        assertEquals(945.0, pricing.quote(fourSeats, 29, 0), 1e-9);
+        assertEquals(945.0, pricing.quote(fourSeats, 30, 0), 1e-9);
+
+        RentalSystem system = RentalSystem.openAt(dir);
+        Vehicle truck = new Truck("Volvo", "FL", 2021, 1500);
+        truck.setLicensePlate("PRC001");
+        system.addVehicle(truck);
+        Customer customer = new Customer(71, "Pricing Tester");
+        system.addCustomer(customer);
+        LocalDate day = LocalDate.of(2024, 5, 1);
+        // 80 a day, 15% more for 1500 kg, 5% off for three days
+        assertEquals(262.2, system.quote(truck, 3), 1e-9);
+        assertTrue(system.rentVehicleForDays(truck, customer, day, 3));
+        assertEquals(262.2, system.getRentalHistory().getRecordsForVehicle("PRC001").get(0).getTotalAmount(), 1e-9);
+        // Kept five days: charged for five at the same rate, less what was paid up front
+        assertEquals(1.0, system.getAggregates().getUtilization(Truck.class));
+        assertTrue(system.returnVehicle(truck, customer, day.plusDays(5)));
+        assertEquals(437.0 - 262.2, system.getRentalHistory().getRecordsForVehicle("PRC001").get(1).getTotalAmount(), 1e-9);
+
+        // Brought back a day early from a month: nothing more to pay
+        Vehicle van = new Truck("Volvo", "FE", 2021, 1500);
+        van.setLicensePlate("PRC002");
+        system.addVehicle(van);
+        assertTrue(system.rentVehicleForDays(van, customer, day, 30));
+        assertTrue(system.returnVehicle(van, customer, day.plusDays(29)));
+        assertEquals(0.0, system.getRentalHistory().getRecordsForVehicle("PRC002").get(1).getTotalAmount(), 1e-9);
+
+        // Open rentals survive a restart
+        assertTrue(system.rentVehicleForDays(truck, customer, day.plusDays(10), 1));
+        system.shutdown();
+        system = RentalSystem.openAt(dir);
+        truck = system.findVehicleByPlate("PRC001");
+        assertTrue(system.returnVehicle(truck, system.findCustomerById(71), day.plusDays(12)));
+        assertEquals(2 * 92.0 - 92.0, system.getRentalHistory().getRecordsForVehicle("PRC001").get(3).getTotalAmount(), 1e-9);
+        try (RentalServer server = new RentalServer(system, 0)) {
+            assertEquals("OK 92.00\n", respond(server, "QUOTE prc001 1"));
+            assertEquals("ERR vehicle not found\n", respond(server, "QUOTE ZZZ999 1"));
+        } catch (IOException e) {
+            fail(e);
+        }
+        system.shutdown();
+    }
+
+    @Test
+    void testServerProtocol(@TempDir Path dir) throws Exception {
+        RentalSystem system = RentalSystem.openAt(dir);
+        try (RentalServer server = new RentalServer(system, 0)) {
+            assertEquals("OK customer added\n", respond(server, "ADD_CUSTOMER 21 Jane Q Public"));
+            assertEquals("Jane Q Public", system.findCustomerById(21).getCustomerName());
+            assertEquals("OK vehicle added\n", respond(server, "ADD_VEHICLE Truck srv001 Volvo Fh 2019 1500"));
+            assertEquals("OK 1\nTruck SRV001 Volvo Fh 2019\n", respond(server, "AVAILABLE"));
+            assertEquals("OK rented\n", respond(server, "RENT SRV001 21 80 2024-02-01"));
+            assertEquals("ERR vehicle is not available\n", respond(server, "RENT SRV001 21 80"));
+            assertEquals("OK 0\n", respond(server, "AVAILABLE 0 10"));
+            assertTrue(respond(server, "HISTORY CUSTOMER 21").startsWith("OK 1\nRENT | Plate: SRV001"));
+            assertEquals("ERR missing arguments\n", respond(server, "RETURN SRV001"));
+            assertTrue(respond(server, "FLY SRV001").startsWith("ERR unknown command"));
+        }
+        system.shutdown();
+    }
+
+    private static String respond(RentalServer server, String request) {
+        StringBuilder response = new StringBuilder();
+        server.handle(request, response);
+        return response.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package benchmarks;
+
+// JMH refuses benchmark classes in the default package, but the rental core lives there
+// and named packages cannot import from it. Each benchmark therefore declares a small
+// Fixture interface, implemented by a default-package class under benchmarks/fixtures
+// that is loaded here by name.
+//
+// Compile the main sources, benchmarks/ and benchmarks/fixtures/ together against
+// jmh-core and jmh-generator-annprocess, then run e.g.
+//   java -cp <classes>:<jmh jars> org.openjdk.jmh.Main RentalCoreBenchmark
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Benchmark fixture " + className + " is not on the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// RentalHistory storage engines: heap per record (printed during setup) and the cost of
+// a full scan, either through the store's per-field accessors or by materializing every
+// RentalRecord through the history view.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class HistoryStoreBenchmark {
+    public interface Fixture {
+        void setUp(String store, int records, int fleetSize, int customerCount);
+        double scanFields();
+        double scanRecords();
+        void tearDown() throws Exception;
+    }
+
+    @Param({"objects", "columnar", "mapped"})
+    public String store;
+
+    @Param({"1000000", "5000000"})
+    public int records;
+
+    @Param({"20000"})
+    public int fleetSize;
+
+    @Param({"50000"})
+    public int customerCount;
+
+    private Fixture fixture;
+
+    @Setup
+    public void setUp() {
+        fixture = Fixtures.load("HistoryStoreFixture", Fixture.class);
+        fixture.setUp(store, records, fleetSize, customerCount);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public double scanFields() {
+        return fixture.scanFields();
+    }
+
+    @Benchmark
+    public double scanRecords() {
+        return fixture.scanRecords();
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Startup time: opening a RentalSystem over a journal of the given size, either replaying
+// everything or starting from a snapshot taken at the end of the journal
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Drental.snapshotIntervalSec=0", "-Drental.groupCommit=false"})
+@State(Scope.Benchmark)
+public class LoadDataBenchmark {
+    public interface Fixture {
+        void setUp(int records, int fleetSize, int customerCount) throws Exception;
+        void prepare(boolean fromSnapshot, int loadThreads) throws Exception;
+        Object open();
+        void close();
+        void tearDown() throws Exception;
+    }
+
+    @Param({"10000", "100000", "1000000"})
+    public int records;
+
+    @Param({"false", "true"})
+    public boolean fromSnapshot;
+
+    // 1 replays sequentially, more splits the journal across a ForkJoinPool
+    @Param({"1", "8"})
+    public int loadThreads;
+
+    @Param({"20000"})
+    public int fleetSize;
+
+    @Param({"50000"})
+    public int customerCount;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("LoadDataFixture", Fixture.class);
+        fixture.setUp(records, fleetSize, customerCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        fixture.prepare(fromSnapshot, loadThreads);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        fixture.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public Object loadData() {
+        return fixture.open();
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The save* paths: direct journal appends under each fsync policy, and durable writes
+// with and without the group-commit writer under concurrent callers
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    public interface Fixture {
+        void setUp(String fsyncPolicy) throws Exception;
+        void tearDown() throws Exception;
+        void saveVehicle() throws Exception;
+        void saveCustomer() throws Exception;
+        void saveRecord() throws Exception;
+        void saveRecordDurable() throws Exception;
+        void saveRecordGroupCommit();
+    }
+
+    @Param({"EVERY_WRITE", "INTERVAL", "ON_CLOSE"})
+    public String fsyncPolicy;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("PersistenceFixture", Fixture.class);
+        fixture.setUp(fsyncPolicy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public void saveVehicle() throws Exception {
+        fixture.saveVehicle();
+    }
+
+    @Benchmark
+    public void saveCustomer() throws Exception {
+        fixture.saveCustomer();
+    }
+
+    @Benchmark
+    public void saveRecord() throws Exception {
+        fixture.saveRecord();
+    }
+
+    // Append plus fsync per record: the cost of durability without batching
+    @Benchmark
+    @Threads(8)
+    public void saveRecordDurable() throws Exception {
+        fixture.saveRecordDurable();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void saveRecordGroupCommit() {
+        fixture.saveRecordGroupCommit();
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One quote for every vehicle in the fleet, for lengths cycling through 1 to 45 days: from
+// PricingEngine's compiled table, from its rules worked out on every call, and through
+// RentalSystem.quote with the live utilization of each type. Quotes/sec is
+// fleetSize / score.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Drental.snapshotIntervalSec=0", "-Drental.log=off"})
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+    public interface Fixture {
+        void setUp(int fleetSize) throws Exception;
+        void tearDown() throws Exception;
+        double quoteFleet();
+        double quoteFleetFromRules();
+        double quoteFleetThroughSystem();
+    }
+
+    @Param({"100000"})
+    public int fleetSize;
+
+    private Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("PricingFixture", Fixture.class);
+        fixture.setUp(fleetSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public double quoteFleet() {
+        return fixture.quoteFleet();
+    }
+
+    @Benchmark
+    public double quoteFleetFromRules() {
+        return fixture.quoteFleetFromRules();
+    }
+
+    @Benchmark
+    public double quoteFleetThroughSystem() {
+        return fixture.quoteFleetThroughSystem();
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Parsing a legacy rental_records.txt into RentalRecords: the old readLine/split path
+// against RentalRecordParser. Records/sec is records / score; run with -prof gc and divide
+// gc.alloc.rate.norm by records for the allocation per record.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordParserBenchmark {
+    public interface Fixture {
+        void setUp(int records, int fleetSize, int customerCount) throws Exception;
+        long splitLines(Blackhole sink) throws Exception;
+        long mappedParser(Blackhole sink) throws Exception;
+        void tearDown() throws Exception;
+    }
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"20000"})
+    public int fleetSize;
+
+    @Param({"50000"})
+    public int customerCount;
+
+    private Fixture fixture;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("RecordParserFixture", Fixture.class);
+        fixture.setUp(records, fleetSize, customerCount);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    @Benchmark
+    public long splitLines(Blackhole sink) throws Exception {
+        return fixture.splitLines(sink);
+    }
+
+    @Benchmark
+    public long mappedParser(Blackhole sink) throws Exception {
+        return fixture.mappedParser(sink);
+    }
+}
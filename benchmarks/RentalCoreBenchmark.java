@@ -0,0 +1,79 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Lookups, registration and rent/return against a RentalSystem loaded with a synthetic fleet
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Drental.snapshotIntervalSec=0"})
+@State(Scope.Benchmark)
+public class RentalCoreBenchmark {
+    public interface Fixture {
+        void setUp(int fleetSize, int customerCount) throws Exception;
+        void tearDown() throws Exception;
+        Object findVehicleByPlate(int i);
+        Object findCustomerById(int i);
+        boolean addVehicle();
+        boolean rentAndReturn(int i);
+    }
+
+    @Param({"10000", "200000"})
+    public int fleetSize;
+
+    @Param({"100000"})
+    public int customerCount;
+
+    private Fixture fixture;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("RentalCoreFixture", Fixture.class);
+        fixture.setUp(fleetSize, customerCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.tearDown();
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & 4095;
+    }
+
+    @Benchmark
+    public Object findVehicleByPlate() {
+        return fixture.findVehicleByPlate(next());
+    }
+
+    @Benchmark
+    public Object findCustomerById() {
+        return fixture.findCustomerById(next());
+    }
+
+    @Benchmark
+    public boolean addVehicle() {
+        return fixture.addVehicle();
+    }
+
+    @Benchmark
+    public boolean rentAndReturn() {
+        return fixture.rentAndReturn(next());
+    }
+}
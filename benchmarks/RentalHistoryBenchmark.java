@@ -0,0 +1,82 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-vehicle, per-customer and date-range queries over an in-memory RentalHistory.
+// Each query walks its result so lazy views pay for materializing records.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RentalHistoryBenchmark {
+    public interface Fixture {
+        void setUp(int historySize, int fleetSize, int customerCount);
+        int recordsForVehicle(int i);
+        int recordsByVehicleCopy(int i);
+        int recordsForCustomer(int i);
+        int recordsByCustomerName(int i);
+        int recordsInOneMonth(int i);
+    }
+
+    @Param({"100000", "1000000"})
+    public int historySize;
+
+    @Param({"10000"})
+    public int fleetSize;
+
+    @Param({"50000"})
+    public int customerCount;
+
+    private Fixture fixture;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = Fixtures.load("RentalHistoryFixture", Fixture.class);
+        fixture.setUp(historySize, fleetSize, customerCount);
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & 1023;
+    }
+
+    @Benchmark
+    public int recordsForVehicle() {
+        return fixture.recordsForVehicle(next());
+    }
+
+    @Benchmark
+    public int recordsByVehicleCopy() {
+        return fixture.recordsByVehicleCopy(next());
+    }
+
+    @Benchmark
+    public int recordsForCustomer() {
+        return fixture.recordsForCustomer(next());
+    }
+
+    @Benchmark
+    public int recordsByCustomerName() {
+        return fixture.recordsByCustomerName(next());
+    }
+
+    @Benchmark
+    public int recordsInOneMonth() {
+        return fixture.recordsInOneMonth(next());
+    }
+}
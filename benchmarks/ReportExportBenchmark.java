@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Writing the history and fleet as text to a discarding stream: toString/getInfo printed
+// line by line through a PrintStream, against ReportExporter's CSV. Rows/sec is
+// records / score.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportExportBenchmark {
+    public interface Fixture {
+        void setUp(int records, int fleetSize) throws Exception;
+        long printLines() throws Exception;
+        long exportCsv() throws Exception;
+    }
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"20000"})
+    public int fleetSize;
+
+    private Fixture fixture;
+
+    @Setup
+    public void setUp() throws Exception {
+        fixture = Fixtures.load("ReportExportFixture", Fixture.class);
+        fixture.setUp(records, fleetSize);
+    }
+
+    @Benchmark
+    public long printLines() throws Exception {
+        return fixture.printLines();
+    }
+
+    @Benchmark
+    public long exportCsv() throws Exception {
+        return fixture.exportCsv();
+    }
+}
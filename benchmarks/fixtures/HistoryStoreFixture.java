@@ -0,0 +1,96 @@
+import benchmarks.HistoryStoreBenchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+public class HistoryStoreFixture implements HistoryStoreBenchmark.Fixture {
+    private static final long START_DAY = LocalDate.of(2020, 1, 1).toEpochDay();
+
+    private HistoryStore store;
+    private Path dataDir;
+    private RentalHistory history;
+
+    @Override
+    public void setUp(String kind, int records, int fleetSize, int customerCount) {
+        List<Vehicle> fleet = SyntheticData.fleet(fleetSize);
+        List<Customer> customers = SyntheticData.customers(customerCount);
+        IntObjectMap<Vehicle> vehiclesByCode = new IntObjectMap<>();
+        for (Vehicle vehicle : fleet) {
+            vehiclesByCode.put(PlateCodec.encode(vehicle.getLicensePlate()), vehicle);
+        }
+        long before = usedHeap();
+        store = newStore(kind, vehiclesByCode, customers);
+        // Records are appended as journal replay does: one fresh LocalDate each, shared
+        // vehicles, customers and type strings
+        Random random = new Random(42);
+        for (int i = 0; i < records; i++) {
+            Vehicle vehicle = fleet.get(random.nextInt(fleet.size()));
+            Customer customer = customers.get(random.nextInt(customers.size()));
+            LocalDate date = LocalDate.ofEpochDay(START_DAY + i * 1500L / records);
+            store.append(new RentalRecord(vehicle, customer, date, 20 + random.nextInt(20000) / 100.0,
+                    i % 2 == 0 ? "RENT" : "RETURN"));
+        }
+        long after = usedHeap();
+        System.out.printf("%n%s store: %.1f bytes per record%n", kind, (double) (after - before) / records);
+        history = new RentalHistory(store);
+    }
+
+    private HistoryStore newStore(String kind, IntObjectMap<Vehicle> vehiclesByCode, List<Customer> customers) {
+        switch (kind) {
+            case "columnar":
+                return new ColumnarHistoryStore();
+            case "mapped":
+                try {
+                    dataDir = SyntheticData.tempDir("rental-history-bench");
+                    return new MappedHistoryStore(dataDir.resolve(RentalSystem.HISTORY_FILE),
+                            vehiclesByCode::get, customers::get);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            default:
+                return new ObjectHistoryStore();
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (store instanceof MappedHistoryStore) {
+            ((MappedHistoryStore) store).close();
+        }
+        SyntheticData.deleteRecursively(dataDir);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Override
+    public double scanFields() {
+        double total = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (store.recordType(row).equals("RENT")) {
+                total += store.amount(row);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public double scanRecords() {
+        double total = 0;
+        for (RentalRecord record : history.getRentalHistory()) {
+            if (record.getRecordType().equals("RENT")) {
+                total += record.getTotalAmount();
+            }
+        }
+        return total;
+    }
+}
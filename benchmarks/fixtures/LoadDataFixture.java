@@ -0,0 +1,51 @@
+import benchmarks.LoadDataBenchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class LoadDataFixture implements LoadDataBenchmark.Fixture {
+    private Path dataDir;
+    private Path savedSnapshot;
+    private RentalSystem system;
+
+    @Override
+    public void setUp(int records, int fleetSize, int customerCount) throws Exception {
+        dataDir = SyntheticData.tempDir("rental-load-bench");
+        SyntheticData.writeJournal(dataDir, fleetSize, customerCount, records);
+        // Opening and shutting down once leaves a snapshot behind; keep a copy of it
+        RentalSystem.openAt(dataDir).shutdown();
+        savedSnapshot = dataDir.resolve("saved.snapshot");
+        Files.move(dataDir.resolve(RentalSystem.SNAPSHOT_FILE), savedSnapshot);
+    }
+
+    @Override
+    public void prepare(boolean fromSnapshot, int loadThreads) throws Exception {
+        System.setProperty("rental.loadThreads", Integer.toString(loadThreads));
+        Path snapshot = dataDir.resolve(RentalSystem.SNAPSHOT_FILE);
+        if (fromSnapshot) {
+            Files.copy(savedSnapshot, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    @Override
+    public Object open() {
+        system = RentalSystem.openAt(dataDir);
+        return system;
+    }
+
+    @Override
+    public void close() {
+        if (system != null) {
+            system.shutdown();
+            system = null;
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        SyntheticData.deleteRecursively(dataDir);
+    }
+}
@@ -0,0 +1,58 @@
+import benchmarks.PersistenceBenchmark;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+public class PersistenceFixture implements PersistenceBenchmark.Fixture {
+    private Path dataDir;
+    private RentalJournal journal;
+    private GroupCommitWriter groupCommit;
+    private Vehicle vehicle;
+    private Customer customer;
+    private RentalRecord record;
+
+    @Override
+    public void setUp(String fsyncPolicy) throws Exception {
+        dataDir = SyntheticData.tempDir("rental-persist-bench");
+        journal = new RentalJournal(dataDir.resolve(RentalSystem.JOURNAL_FILE),
+                RentalJournal.FsyncPolicy.valueOf(fsyncPolicy), 100);
+        groupCommit = new GroupCommitWriter(journal, 8192, 256, 0);
+        vehicle = SyntheticData.vehicle(1);
+        customer = SyntheticData.customer(1);
+        record = new RentalRecord(vehicle, customer, LocalDate.of(2024, 1, 1), 99.5, "RENT");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        groupCommit.close();
+        journal.close();
+        System.out.println("Group commit: " + groupCommit);
+        SyntheticData.deleteRecursively(dataDir);
+    }
+
+    @Override
+    public void saveVehicle() throws Exception {
+        journal.appendVehicle(vehicle);
+    }
+
+    @Override
+    public void saveCustomer() throws Exception {
+        journal.appendCustomer(customer);
+    }
+
+    @Override
+    public void saveRecord() throws Exception {
+        journal.appendRecord(record);
+    }
+
+    @Override
+    public void saveRecordDurable() throws Exception {
+        journal.appendRecord(record);
+        journal.sync();
+    }
+
+    @Override
+    public void saveRecordGroupCommit() {
+        groupCommit.submit(record).join();
+    }
+}
@@ -0,0 +1,68 @@
+import benchmarks.PricingBenchmark;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+public class PricingFixture implements PricingBenchmark.Fixture {
+    private static final int MAX_DAYS = 45;
+
+    private final PricingEngine pricing = new PricingEngine();
+    private Path dataDir;
+    private RentalSystem system;
+    private Vehicle[] fleet;
+    private final double[] utilization = new double[MAX_DAYS];
+
+    @Override
+    public void setUp(int fleetSize) throws Exception {
+        dataDir = SyntheticData.tempDir("pricing-bench");
+        SyntheticData.writeJournal(dataDir, fleetSize, 1000, 0);
+        system = RentalSystem.openAt(dataDir);
+        fleet = new Vehicle[fleetSize];
+        for (int i = 0; i < fleetSize; i++) {
+            fleet[i] = system.findVehicleByPlate(SyntheticData.plate(i));
+        }
+        // Rent out every third vehicle so each type sits in a surge band
+        Customer customer = system.findCustomerById(0);
+        for (int i = 0; i < fleetSize; i += 3) {
+            system.rentVehicle(fleet[i], customer, LocalDate.of(2024, 1, 1), 0);
+        }
+        for (int i = 0; i < MAX_DAYS; i++) {
+            utilization[i] = i / (double) MAX_DAYS;
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        system.shutdown();
+        SyntheticData.deleteRecursively(dataDir);
+    }
+
+    @Override
+    public double quoteFleet() {
+        double total = 0;
+        for (int i = 0; i < fleet.length; i++) {
+            int days = i % MAX_DAYS;
+            total += pricing.quote(fleet[i], days + 1, utilization[days]);
+        }
+        return total;
+    }
+
+    @Override
+    public double quoteFleetFromRules() {
+        double total = 0;
+        for (int i = 0; i < fleet.length; i++) {
+            int days = i % MAX_DAYS;
+            total += pricing.dailyRateFromRules(fleet[i], days + 1, utilization[days]) * (days + 1);
+        }
+        return total;
+    }
+
+    @Override
+    public double quoteFleetThroughSystem() {
+        double total = 0;
+        for (int i = 0; i < fleet.length; i++) {
+            total += system.quote(fleet[i], i % MAX_DAYS + 1);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,77 @@
+import benchmarks.RecordParserBenchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecordParserFixture implements RecordParserBenchmark.Fixture {
+    private Path dataDir;
+    private Path file;
+    private final Map<String, Vehicle> vehiclesByPlate = new HashMap<>();
+    private final IntObjectMap<Vehicle> vehiclesByCode = new IntObjectMap<>();
+    private final IntObjectMap<Customer> customers = new IntObjectMap<>();
+
+    @Override
+    public void setUp(int records, int fleetSize, int customerCount) throws Exception {
+        List<Vehicle> fleet = SyntheticData.fleet(fleetSize);
+        List<Customer> customerList = SyntheticData.customers(customerCount);
+        for (Vehicle vehicle : fleet) {
+            vehiclesByPlate.put(vehicle.getLicensePlate(), vehicle);
+            vehiclesByCode.put(PlateCodec.encode(vehicle.getLicensePlate()), vehicle);
+        }
+        for (Customer customer : customerList) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+        dataDir = SyntheticData.tempDir("rental-parse-bench");
+        file = dataDir.resolve(LegacyDataImporter.RECORDS_FILE);
+        SyntheticData.writeRecordsCsv(file, SyntheticData.history(fleet, customerList, records, 42));
+    }
+
+    // The importer's original loop
+    @Override
+    public long splitLines(Blackhole sink) throws Exception {
+        long count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length != 5) {
+                    continue;
+                }
+                Vehicle vehicle = vehiclesByPlate.get(parts[0].toUpperCase());
+                Customer customer = customers.get(Integer.parseInt(parts[1]));
+                if (vehicle != null && customer != null) {
+                    LocalDate date = LocalDate.parse(parts[2]);
+                    double amount = Double.parseDouble(parts[3]);
+                    sink.consume(new RentalRecord(vehicle, customer, date, amount, parts[4]));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long mappedParser(Blackhole sink) throws Exception {
+        long[] count = new long[1];
+        new RentalRecordParser().parse(file, (plateCode, customerId, date, amount, recordType) -> {
+            Vehicle vehicle = vehiclesByCode.get(plateCode);
+            Customer customer = customers.get(customerId);
+            if (vehicle != null && customer != null) {
+                sink.consume(new RentalRecord(vehicle, customer, date, amount, recordType));
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        SyntheticData.deleteRecursively(dataDir);
+    }
+}
@@ -0,0 +1,60 @@
+import benchmarks.RentalCoreBenchmark;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+public class RentalCoreFixture implements RentalCoreBenchmark.Fixture {
+    private static final int SAMPLES = 4096;
+    private static final LocalDate TODAY = LocalDate.of(2024, 1, 1);
+
+    private Path dataDir;
+    private RentalSystem system;
+    private final String[] plates = new String[SAMPLES];
+    private final String[] customerIds = new String[SAMPLES];
+    private final Vehicle[] fleet = new Vehicle[SAMPLES];
+    private final Customer[] customers = new Customer[SAMPLES];
+    private int nextPlate;
+
+    @Override
+    public void setUp(int fleetSize, int customerCount) throws Exception {
+        dataDir = SyntheticData.tempDir("rental-core-bench");
+        SyntheticData.writeJournal(dataDir, fleetSize, customerCount, 0);
+        system = RentalSystem.openAt(dataDir);
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            plates[i] = SyntheticData.plate(random.nextInt(fleetSize)).toLowerCase();
+            customerIds[i] = String.valueOf(random.nextInt(customerCount));
+            fleet[i] = system.findVehicleByPlate(SyntheticData.plate(i % fleetSize));
+            customers[i] = system.findCustomerById(customerIds[i]);
+        }
+        nextPlate = fleetSize;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        system.shutdown();
+        SyntheticData.deleteRecursively(dataDir);
+    }
+
+    @Override
+    public Object findVehicleByPlate(int i) {
+        return system.findVehicleByPlate(plates[i]);
+    }
+
+    @Override
+    public Object findCustomerById(int i) {
+        return system.findCustomerById(customerIds[i]);
+    }
+
+    @Override
+    public boolean addVehicle() {
+        return system.addVehicle(SyntheticData.vehicle(nextPlate++ % SyntheticData.MAX_PLATES));
+    }
+
+    @Override
+    public boolean rentAndReturn(int i) {
+        return system.rentVehicle(fleet[i], customers[i], TODAY, 50.0)
+                & system.returnVehicle(fleet[i], customers[i], TODAY, 0.0);
+    }
+}
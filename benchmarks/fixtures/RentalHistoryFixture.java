@@ -0,0 +1,65 @@
+import benchmarks.RentalHistoryBenchmark;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+public class RentalHistoryFixture implements RentalHistoryBenchmark.Fixture {
+    private static final int SAMPLES = 1024;
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    private RentalHistory history;
+    private final String[] plates = new String[SAMPLES];
+    private final int[] customerIds = new int[SAMPLES];
+    private final String[] customerNames = new String[SAMPLES];
+
+    @Override
+    public void setUp(int historySize, int fleetSize, int customerCount) {
+        List<Vehicle> fleet = SyntheticData.fleet(fleetSize);
+        List<Customer> customers = SyntheticData.customers(customerCount);
+        history = new RentalHistory();
+        for (RentalRecord record : SyntheticData.history(fleet, customers, historySize, 42)) {
+            history.addRecord(record);
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < SAMPLES; i++) {
+            plates[i] = SyntheticData.plate(random.nextInt(fleetSize));
+            customerIds[i] = random.nextInt(customerCount);
+            customerNames[i] = customers.get(customerIds[i]).getCustomerName();
+        }
+    }
+
+    private static int walk(Iterable<RentalRecord> records) {
+        int days = 0;
+        for (RentalRecord record : records) {
+            days += record.getRecordDate().getDayOfMonth();
+        }
+        return days;
+    }
+
+    @Override
+    public int recordsForVehicle(int i) {
+        return walk(history.getRecordsForVehicle(plates[i]));
+    }
+
+    @Override
+    public int recordsByVehicleCopy(int i) {
+        return walk(history.getRentalRecordsByVehicle(plates[i]));
+    }
+
+    @Override
+    public int recordsForCustomer(int i) {
+        return walk(history.getRecordsForCustomer(customerIds[i]));
+    }
+
+    @Override
+    public int recordsByCustomerName(int i) {
+        return walk(history.getRentalRecordsByCustomer(customerNames[i]));
+    }
+
+    @Override
+    public int recordsInOneMonth(int i) {
+        LocalDate from = START.plusDays(i);
+        return walk(history.getRecordsBetween(from, from.plusDays(30)));
+    }
+}
@@ -0,0 +1,37 @@
+import benchmarks.ReportExportBenchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class ReportExportFixture implements ReportExportBenchmark.Fixture {
+    private List<Vehicle> fleet;
+    private List<RentalRecord> history;
+    private final ReportExporter exporter = new ReportExporter(OutputStream.nullOutputStream(), ReportExporter.Format.CSV);
+
+    @Override
+    public void setUp(int records, int fleetSize) {
+        fleet = SyntheticData.fleet(fleetSize);
+        history = SyntheticData.history(fleet, SyntheticData.customers(50000), records, 42);
+    }
+
+    // What displayVehicles and displayRentalHistory used to do
+    @Override
+    public long printLines() {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        for (Vehicle vehicle : fleet) {
+            out.println(vehicle.getInfo());
+        }
+        for (RentalRecord record : history) {
+            out.println(record.toString());
+        }
+        out.flush();
+        return fleet.size() + history.size();
+    }
+
+    // The exporter is reused, as a scheduled report would, so vehicle rows come from its cache
+    @Override
+    public long exportCsv() throws Exception {
+        return exporter.writeVehicles(fleet) + exporter.writeRecords(history);
+    }
+}
@@ -0,0 +1,141 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Deterministic fleets, customers and rental histories for the benchmarks
+public class SyntheticData {
+    private static final String[] MAKES = {"Toyota", "Honda", "Ford", "Volvo", "Ducati", "Porsche"};
+    private static final String[] NAMES = {"Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace", "Heidi"};
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    public static final int MAX_PLATES = 26 * 26 * 26 * 1000;
+
+    // The n-th plate in AAA000, AAA001, ... order
+    public static String plate(int n) {
+        if (n < 0 || n >= MAX_PLATES) {
+            throw new IllegalArgumentException("Plate number out of range: " + n);
+        }
+        int letters = n / 1000;
+        char[] chars = new char[6];
+        chars[0] = (char) ('A' + letters / (26 * 26));
+        chars[1] = (char) ('A' + (letters / 26) % 26);
+        chars[2] = (char) ('A' + letters % 26);
+        int digits = n % 1000;
+        chars[3] = (char) ('0' + digits / 100);
+        chars[4] = (char) ('0' + (digits / 10) % 10);
+        chars[5] = (char) ('0' + digits % 10);
+        return new String(chars);
+    }
+
+    // A mix of the four vehicle types
+    public static Vehicle vehicle(int n) {
+        String make = MAKES[n % MAKES.length];
+        Vehicle vehicle;
+        switch (n % 4) {
+            case 0:
+                vehicle = new Car(make, "Model" + (n % 7), 2010 + n % 15, 5);
+                break;
+            case 1:
+                vehicle = new Motorcycle(make, "Model" + (n % 7), 2010 + n % 15, n % 2 == 0);
+                break;
+            case 2:
+                vehicle = new Truck(make, "Model" + (n % 7), 2010 + n % 15, 500 + n % 2000);
+                break;
+            default:
+                vehicle = new SportCar(make, "Model" + (n % 7), 2010 + n % 15, 2, 300 + n % 300, n % 2 == 0);
+                break;
+        }
+        vehicle.setLicensePlate(plate(n));
+        return vehicle;
+    }
+
+    public static Customer customer(int id) {
+        return new Customer(id, NAMES[id % NAMES.length] + " " + id);
+    }
+
+    public static List<Vehicle> fleet(int size) {
+        List<Vehicle> fleet = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            fleet.add(vehicle(i));
+        }
+        return fleet;
+    }
+
+    public static List<Customer> customers(int size) {
+        List<Customer> customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(customer(i));
+        }
+        return customers;
+    }
+
+    // Alternating RENT/RETURN records per vehicle, spread over the fleet and a few years
+    public static List<RentalRecord> history(List<Vehicle> fleet, List<Customer> customers, int records, long seed) {
+        Random random = new Random(seed);
+        boolean[] rented = new boolean[fleet.size()];
+        List<RentalRecord> history = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            int v = random.nextInt(fleet.size());
+            Customer customer = customers.get(random.nextInt(customers.size()));
+            LocalDate date = START.plusDays(i * 1500L / Math.max(1, records));
+            String type = rented[v] ? "RETURN" : "RENT";
+            rented[v] = !rented[v];
+            history.add(new RentalRecord(fleet.get(v), customer, date, 20 + random.nextInt(200), type));
+        }
+        return history;
+    }
+
+    // Writes a rental journal with the given sizes into dataDir
+    public static void writeJournal(Path dataDir, int vehicles, int customers, int records) throws IOException {
+        List<Vehicle> fleet = fleet(vehicles);
+        List<Customer> customerList = customers(customers);
+        try (RentalJournal journal = new RentalJournal(dataDir.resolve(RentalSystem.JOURNAL_FILE),
+                RentalJournal.FsyncPolicy.ON_CLOSE, 0)) {
+            for (Vehicle vehicle : fleet) {
+                journal.appendVehicle(vehicle);
+            }
+            for (Customer customer : customerList) {
+                journal.appendCustomer(customer);
+            }
+            List<RentalRecord> batch = new ArrayList<>(1024);
+            for (RentalRecord record : history(fleet, customerList, records, 42)) {
+                batch.add(record);
+                if (batch.size() == 1024) {
+                    journal.appendRecords(batch);
+                    batch.clear();
+                }
+            }
+            journal.appendRecords(batch);
+        }
+    }
+
+    // Writes the history as a legacy rental_records.txt file
+    public static void writeRecordsCsv(Path file, List<RentalRecord> history) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (RentalRecord record : history) {
+                writer.write(record.getVehicle().getLicensePlate() + "," + record.getCustomer().getCustomerId() + ","
+                        + record.getRecordDate() + "," + record.getTotalAmount() + "," + record.getRecordType());
+                writer.newLine();
+            }
+        }
+    }
+
+    public static Path tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+}